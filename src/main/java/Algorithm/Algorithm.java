@@ -35,6 +35,7 @@ import org.jetbrains.annotations.NotNull;
     if (auxiliaryNetwork == null) { //this means that some servers cannot be reached due to insufficient bandwidth
       builder.rejectionReason(Result.Reason.FAILED_TO_CONSTRUCT_AUX_GRAPH); //this generates a no-admittance result
     } else {
+      builder.prunedCandidates(auxiliaryNetwork.getPrunedCandidates());
       ArrayList<Server> path = auxiliaryNetwork.findShortestPath();
       if (path.size() != request.getSC().length + 2) {
         builder.rejectionReason(Result.Reason.NO_PATH_AUX_GRAPH);
@@ -58,6 +59,7 @@ import org.jetbrains.annotations.NotNull;
     if (auxiliaryNetwork == null) { //this means that some servers cannot be reached due to insufficient bandwidth
       builder.rejectionReason(Result.Reason.FAILED_TO_CONSTRUCT_AUX_GRAPH); //this generates a no-admittance result
     } else {
+      builder.prunedCandidates(auxiliaryNetwork.getPrunedCandidates());
       ArrayList<Server> path = auxiliaryNetwork.findDelayAwareShortestPath();
       if (path == null) {
         builder.path(null).pathCost(Double.MAX_VALUE).rejectionReason(Result.Reason.NO_PATH_AUX_GRAPH);
@@ -84,6 +86,7 @@ import org.jetbrains.annotations.NotNull;
     if (auxiliaryNetwork == null) { //this means that some servers cannot be reached due to insufficient bandwidth
       builder.rejectionReason(Result.Reason.FAILED_TO_CONSTRUCT_AUX_GRAPH); //this generates a no-admittance result
     } else {
+      builder.prunedCandidates(auxiliaryNetwork.getPrunedCandidates());
       ArrayList<Server> path = auxiliaryNetwork.findShortestPath();
       if (path.size() != request.getSC().length + 2) {
         builder.rejectionReason(Result.Reason.NO_PATH_AUX_GRAPH);
@@ -114,6 +117,7 @@ import org.jetbrains.annotations.NotNull;
     if (auxiliaryNetwork == null) { //this means that some servers cannot be reached due to insufficient bandwidth
       builder.rejectionReason(Result.Reason.FAILED_TO_CONSTRUCT_AUX_GRAPH); //this generates a no-admittance result
     } else {
+      builder.prunedCandidates(auxiliaryNetwork.getPrunedCandidates());
       ArrayList<Server> path = auxiliaryNetwork.findDelayAwareShortestPath();
       if (path == null) {
         builder.rejectionReason(Result.Reason.NO_PATH_AUX_GRAPH);
@@ -1,25 +1,22 @@
 package Algorithm;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 
 import Network.Link;
 import Network.Network;
 import Network.Request;
 import Network.Server;
+import NetworkGenerator.ShortestPaths.CompactGraph;
+import NetworkGenerator.ShortestPaths.ContractionHierarchy;
 import Simulation.Parameters;
-import org.jgrapht.alg.DijkstraShortestPath;
-import org.jgrapht.graph.DefaultWeightedEdge;
-import org.jgrapht.graph.SimpleWeightedGraph;
 
 public class Benchmark {
 
   private final Network originalNetwork;
   private final Request request;
   private final Parameters parameters;
-  private SimpleWeightedGraph<Server, DefaultWeightedEdge> weightedGraph;
-  private HashMap<DefaultWeightedEdge, Link> linkEdgeMap = new HashMap<DefaultWeightedEdge, Link>();
+  private double[] weights; // the cost of each link of the compact graph for this request, computed on first use
+  private double[] delays;
 
   public Benchmark(Network originalNetwork, Request request, Parameters parameters) {
     this.originalNetwork = originalNetwork;
@@ -72,35 +69,26 @@ public class Benchmark {
       return new ArrayList<Link>();
     }
 
-    if (null == this.weightedGraph) {
-      // build a weighted graph according to network.
-      this.weightedGraph = new SimpleWeightedGraph<Server, DefaultWeightedEdge>(DefaultWeightedEdge.class);
-
-      for (Server server : this.getOriginalNetwork().getServers()) {
-        this.weightedGraph.addVertex(server);
-      }
-
-      for (Link link : this.getOriginalNetwork().getLinks()) {
-        Server s1 = link.getS1();
-        Server s2 = link.getS2();
-        DefaultWeightedEdge edge = this.weightedGraph.addEdge(s1, s2);
-        if (null != edge) {
-        	this.weightedGraph.setEdgeWeight(edge, parameters.costFunc.getCost(link, this.request.getBandwidth(), parameters));
-        	linkEdgeMap.put(edge, link);
-        }
+    if (null == this.weights) {
+      // the hierarchy of the topology is built once per network, only the link costs of this request are set here.
+      CompactGraph graph = this.getOriginalNetwork().getCompactGraph();
+      this.weights = new double[graph.numLinks()];
+      this.delays = new double[graph.numLinks()];
+      for (int e = 0; e < graph.numLinks(); e++) {
+        Link link = graph.getLink(e);
+        this.weights[e] = parameters.costFunc.getCost(link, this.request.getBandwidth(), parameters);
+        this.delays[e] = link.getDelay();
       }
     }
 
-    DijkstraShortestPath<Server, DefaultWeightedEdge> shortestPath =
-        new DijkstraShortestPath<Server, DefaultWeightedEdge>(this.weightedGraph, source, destination);
-    List<DefaultWeightedEdge> sLinks = shortestPath.getPathEdgeList();
-    if (sLinks.isEmpty()) {
-      System.out.println("ERROR 2 : shortest path should exist!");
+    ContractionHierarchy hierarchy = this.getOriginalNetwork().getContractionHierarchy();
+    ArrayList<Link> linksInSPath;
+    synchronized (hierarchy) {
+      hierarchy.customize(this.weights, this.delays); // does nothing unless another request customized it since
+      linksInSPath = hierarchy.getPath(source.getId(), destination.getId());
     }
-
-    ArrayList<Link> linksInSPath = new ArrayList<Link>();
-    for (DefaultWeightedEdge edge : sLinks) {
-      linksInSPath.add(this.linkEdgeMap.get(edge));
+    if (linksInSPath.isEmpty()) {
+      System.out.println("ERROR 2 : shortest path should exist!");
     }
 
     return linksInSPath;
@@ -8,4 +8,11 @@ public interface CostFunction {
   double getCost(Link link, double bandwidth, Parameters parameters);
 
   double getCost(Server server, int nfv, Parameters parameters);
+
+  /**
+   * @return whether getCost(link, bandwidth, parameters) depends on the bandwidth, as opposed to the state of the link only
+   */
+  default boolean linkCostDependsOnBandwidth() {
+    return true;
+  }
 }
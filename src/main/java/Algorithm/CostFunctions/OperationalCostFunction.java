@@ -14,4 +14,8 @@ public class OperationalCostFunction implements CostFunction {
   public double getCost(Server server, int nfv, Parameters parameters) {
     return server.getOperationalCost(nfv);
   }
+
+  @Override public boolean linkCostDependsOnBandwidth() {
+    return false;
+  }
 }
@@ -16,12 +16,14 @@ public class Result {
   private final double pathCost;
   private final boolean admit;
   private final Result.Reason rejectionReason;
+  private final int[] prunedCandidates; // per service layer, null if Parameters.pruneDominatedCandidates is not set or no auxiliary graph was built
 
-  private Result(ArrayList<Server> p, double pc, boolean a, Result.Reason reason) {
+  private Result(ArrayList<Server> p, double pc, boolean a, Result.Reason reason, int[] pruned) {
     path = p;
     pathCost = pc;
     admit = a;
     this.rejectionReason = reason;
+    this.prunedCandidates = pruned;
   }
 
   public ArrayList<Server> getPath() {
@@ -36,11 +38,16 @@ public class Result {
     return pathCost;
   }
 
+  public int[] getPrunedCandidates() {
+    return prunedCandidates;
+  }
+
   static class Builder {
     private ArrayList<Server> path = null;
     private double pathCost = Double.MAX_VALUE;
     private boolean admit = false;
     private Result.Reason rejectionReason = Reason.OK;
+    private int[] prunedCandidates = null;
 
     Builder path(ArrayList<Server> path) {
       this.path = path;
@@ -62,8 +69,13 @@ public class Result {
       return this;
     }
 
+    Builder prunedCandidates(int[] prunedCandidates) {
+      this.prunedCandidates = prunedCandidates;
+      return this;
+    }
+
     Result build() {
-      return new Result(path, pathCost, admit, rejectionReason);
+      return new Result(path, pathCost, admit, rejectionReason, prunedCandidates);
     }
   }
 
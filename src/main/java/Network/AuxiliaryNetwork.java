@@ -1,15 +1,21 @@
 package Network;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import Algorithm.CostFunctions.CostFunction;
+import NetworkGenerator.AuxiliaryGraphBuilder;
+import NetworkGenerator.ShortestPaths.CompactGraph;
+import NetworkGenerator.ShortestPaths.DistanceOracle;
 import Simulation.Parameters;
 import Simulation.Simulation;
 import org.jetbrains.annotations.NotNull;
@@ -28,13 +34,18 @@ import static com.google.common.base.Preconditions.checkState;
  * Each arc has a "weight" and a "delay"
  * <p>
  * This class supports many operations on an auxiliary network, including finding a (delay-aware) shortest path, etc.
+ * <p>
+ * With {@link Parameters#implicitAuxiliaryGraph}, neither the arcs nor the servers of the layers are built: the weight and delay of an arc are read from the
+ * shortest paths when the search relaxes it, and the servers of the paths found are those of the original network.
  */
 @SuppressWarnings("Duplicates") public class AuxiliaryNetwork extends Network {
-
-  @NotNull private final double[][] pathCosts;
-  @NotNull private final double[][] pathDelays;
-  @NotNull private final HashMap<Integer, HashMap<Integer, ArrayList<Link>>> allShortestPaths;
+  @NotNull private final Network originalNetwork;
+  @NotNull private final DistanceOracle shortestPaths; // shortest paths between servers of the original network
   @NotNull private final CostFunction costFunction; // cost function for edges in the original graph
+  // From this many arcs between two layers of the implicit auxiliary graph, their servers are relaxed in parallel
+  static final long PARALLEL_LAYER_MIN_ARCS = 1L << 15;
+  // The relative error tolerated on the lower bounds of branch and bound, for the rounding of the costs and of the sums of arcs
+  static final double BOUND_SLACK = 1e-6;
 
   @NotNull private final Request request;
   @NotNull private final Parameters parameters;
@@ -48,13 +59,24 @@ import static com.google.common.base.Preconditions.checkState;
   // The graph is organized as "layers", where Layer 0 contains source only, each of Layers 1, ..., L contains V_S, and Layer L+1 contains the destination
   @NotNull public final ArrayList<HashSet<Server>> serviceLayers = new ArrayList<>();
 
-  public AuxiliaryNetwork(@NotNull ArrayList<Server> originalServers, @NotNull ArrayList<Link> originalLinks, @NotNull double[][] pathCosts,
-                          @NotNull double[][] pathDelays, @NotNull HashMap<Integer, HashMap<Integer, ArrayList<Link>>> allShortestPaths,
-                          @NotNull Request request, @NotNull Parameters parameters, @NotNull CostFunction costFunction) {
-    super(originalServers, originalLinks);
-    this.pathCosts = pathCosts;
-    this.pathDelays = pathDelays;
-    this.allShortestPaths = allShortestPaths;
+  // Layers 0, ..., L+1 as servers of the original network in the order of its compact graph, and the weight and delay every arc into each server adds on top
+  // of the shortest path it stands for. With Parameters.implicitAuxiliaryGraph, neither the arcs nor the servers of the layers are built from them.
+  private Server[][] layers;
+  private int[][] layerIds;
+  private double[][] layerWeights;
+  private double[][] layerDelays;
+  private double[][] destinationCosts; // the cost from the destination to each server of a layer, read the first time a layer is bounded
+  private long relaxedArcs = 0L;
+  private int[] prunedCandidates; // the number of dominated servers dropped from each of Layers 1, ..., L, if Parameters.pruneDominatedCandidates is set
+
+  /**
+   * @param shortestPaths shortest paths in @originalNetwork, at least among the source, the destination and the servers returned by {@link #getLayerServers}
+   */
+  public AuxiliaryNetwork(@NotNull Network originalNetwork, @NotNull DistanceOracle shortestPaths, @NotNull Request request, @NotNull Parameters parameters,
+                          @NotNull CostFunction costFunction) {
+    super(originalNetwork.getServers(), originalNetwork.getLinks());
+    this.originalNetwork = originalNetwork;
+    this.shortestPaths = shortestPaths;
     this.request = request;
     this.parameters = parameters;
     this.source = request.getSource();
@@ -64,10 +86,29 @@ import static com.google.common.base.Preconditions.checkState;
     generateNetwork();
   }
 
+  /**
+   * @return the servers of @network that may host @nfv in the service layer of @nfv, i.e., the servers that have implemented @nfv and, for offline requests,
+   * the servers that can initialize a VM instance for it
+   */
+  public static @NotNull HashSet<Server> getLayerServers(@NotNull Network network, int nfv, @NotNull Parameters parameters) {
+    HashSet<Server> layer = network.getReusableServers(nfv);
+    if (parameters.offline) {
+      layer.addAll(network.getUnusedServers(nfv));
+    }
+    return layer;
+  }
+
   /**
    * Create network with auxServers and auxLinks
    */
   private void generateNetwork() {
+    generateLayers();
+    if (parameters.pruneDominatedCandidates) {
+      pruneDominatedCandidates();
+    }
+    if (parameters.implicitAuxiliaryGraph) {
+      return;
+    }
     auxServers.add(this.source);
     auxServers.add(this.destination);
 
@@ -77,22 +118,20 @@ import static com.google.common.base.Preconditions.checkState;
 
     int[] SC = request.getSC();
     // Layers 1, ..., L, where each layer contains all servers that either have implemented a given NFV or can initialize a VM instance for a given NFV
-    for (int nfv : SC) {
-      HashSet<Server> origLayer = getReusableServers(nfv);
-      if (this.parameters.offline) {
-        origLayer.addAll(getUnusedServers(nfv));
-      }
-      HashSet<Server> currLayer = cloneServers(origLayer); // we do not want to make changes on the original network
-      for (Server curr : currLayer) {
-        for (Server prev : prevLayer) { // Connect each server in the previous layer to an server in the current layer
+    for (int i = 1; i <= SC.length; i++) {
+      int nfv = SC[i - 1];
+      HashSet<Server> currLayer = cloneServers(Arrays.asList(layers[i])); // we do not want to make changes on the original network
+      Server[] prevServers = inGraphOrder(prevLayer);
+      for (Server curr : inGraphOrder(currLayer)) {
+        for (Server prev : prevServers) { // Connect each server in the previous layer to an server in the current layer
           Link l = new Link(prev, curr);
-          double delay = pathDelays[curr.getId()][prev.getId()] + parameters.nfvProcessingDelays[nfv];
+          double delay = shortestPaths.getDelay(curr.getId(), prev.getId()) + parameters.nfvProcessingDelays[nfv];
           if (!curr.canReuseVM(nfv)) {
             delay += parameters.nfvInitDelays[nfv];
           }
           l.setDelay(delay);
 
-          double pathCost = pathCosts[curr.getId()][prev.getId()];
+          double pathCost = shortestPaths.getCost(curr.getId(), prev.getId());
           if (this.parameters.offline) {
             pathCost += this.costFunction.getCost(curr, nfv, parameters);
           } else {
@@ -108,14 +147,445 @@ import static com.google.common.base.Preconditions.checkState;
     checkState(serviceLayers.size() == SC.length);
     // Now we have added Layer 0 and Layers 1, ..., L, we now need to add the last layer containing the destination only, and link all servers in Layer L to the
     // the destination
-    for (Server prev : prevLayer) { //link this up to destination
+    for (Server prev : inGraphOrder(prevLayer)) { //link this up to destination
       Link l = new Link(prev, destination);
-      l.setDelay(pathDelays[destination.getId()][prev.getId()]); // NOTE: We here set the weight of each edge as the cost of the path between two servers
-      l.setWeight(pathCosts[destination.getId()][prev.getId()]);
+      l.setDelay(shortestPaths.getDelay(destination.getId(), prev.getId())); // NOTE: We here set the weight of each edge as the cost of the path between two servers
+      l.setWeight(shortestPaths.getCost(destination.getId(), prev.getId()));
       this.auxLinks.add(l);
     }
   }
 
+  /**
+   * Collect the servers of each layer, in the order of the compact graph, with what hosting the function of the layer on them adds to the arcs into them.
+   * This is all the implicit auxiliary graph keeps, as it reads its arcs from the shortest paths when searched (see {@link #arcWeight}).
+   */
+  private void generateLayers() {
+    int[] SC = request.getSC();
+    layers = new Server[SC.length + 2][];
+    layerWeights = new double[SC.length + 2][];
+    layerDelays = new double[SC.length + 2][];
+    layers[0] = new Server[]{source};
+    for (int i = 1; i <= SC.length; i++) {
+      int nfv = SC[i - 1];
+      layers[i] = inGraphOrder(getLayerServers(this, nfv, parameters));
+      layerWeights[i] = new double[layers[i].length];
+      layerDelays[i] = new double[layers[i].length];
+      for (int c = 0; c < layers[i].length; c++) {
+        Server curr = layers[i][c];
+        layerWeights[i][c] = parameters.offline ? costFunction.getCost(curr, nfv, parameters) : 0d;
+        layerDelays[i][c] = parameters.nfvProcessingDelays[nfv] + (curr.canReuseVM(nfv) ? 0d : parameters.nfvInitDelays[nfv]);
+      }
+    }
+    layers[SC.length + 1] = new Server[]{destination};
+    layerWeights[SC.length + 1] = new double[1];
+    layerDelays[SC.length + 1] = new double[1];
+    layerIds = new int[layers.length][];
+    for (int i = 0; i < layers.length; i++) {
+      layerIds[i] = Arrays.stream(layers[i]).mapToInt(Server::getId).toArray();
+    }
+  }
+
+  /**
+   * Drop the servers of Layers 1, ..., L that are dominated by another server of their layer: server b dominates server a if the arc from every server of
+   * the previous layer to b weighs and delays no more than the one to a, and so does the arc from b to every server of the next layer, and both have the
+   * same VM reuse status. Any path through a can then go through b instead, for no more weight and no more delay, so dropping a keeps every optimal
+   * weight, every optimal delay and every optimal Lagrangian weight. Among servers with the same arcs, the first one is kept. The layers are pruned in
+   * order, each against the servers left in its neighbours.
+   * <p>
+   * Comparing a pair takes the arcs of both servers, so candidate dominators are first filtered by the sums of their arc weights and delays, which cannot
+   * be higher than those of the servers they dominate, and pairs are compared until the first arc that rules dominance out.
+   */
+  private void pruneDominatedCandidates() {
+    prunedCandidates = new int[layers.length - 2];
+    for (int i = 1; i < layers.length - 1; i++) {
+      int nfv = request.getSC()[i - 1];
+      int k = layers[i].length;
+      int[] prevIds = layerIds[i - 1];
+      int[] nextIds = layerIds[i + 1];
+      double[][] sums = new double[4][k]; // the sums of the weights and delays of the arcs into and out of each server
+      double[] costs = new double[Math.max(prevIds.length, nextIds.length)];
+      double[] delays = new double[costs.length];
+      for (int a = 0; a < k; a++) {
+        shortestPaths.getCostsAndDelays(layerIds[i][a], prevIds, costs, delays);
+        for (int p = 0; p < prevIds.length; p++) {
+          sums[0][a] += costs[p] + layerWeights[i][a];
+          sums[1][a] += delays[p] + layerDelays[i][a];
+        }
+        shortestPaths.getCostsAndDelays(layerIds[i][a], nextIds, costs, delays); // the other way round, which is only off by rounding
+        for (int q = 0; q < nextIds.length; q++) {
+          sums[2][a] += costs[q];
+          sums[3][a] += delays[q];
+        }
+      }
+      boolean[] dominated = new boolean[k];
+      int numDominated = 0;
+      for (int a = 0; a < k; a++) {
+        for (int b = 0; b < k && !dominated[a]; b++) {
+          if (b == a || dominated[b] || layers[i][a].canReuseVM(nfv) != layers[i][b].canReuseVM(nfv)) {
+            continue;
+          }
+          // sums computed the other way round may be off by rounding, so the filter is relaxed accordingly
+          if (sums[0][b] > sums[0][a] || sums[1][b] > sums[1][a] || sums[2][b] > sums[2][a] * (1d + 1e-9) || sums[3][b] > sums[3][a] * (1d + 1e-9)) {
+            continue;
+          }
+          int comparison = compareArcs(i, a, b);
+          if (comparison > 0 || (comparison == 0 && b < a)) {
+            dominated[a] = true;
+            numDominated++;
+          }
+        }
+      }
+      if (numDominated > 0) {
+        int kept = 0;
+        for (int a = 0; a < k; a++) {
+          if (!dominated[a]) {
+            layers[i][kept] = layers[i][a];
+            layerIds[i][kept] = layerIds[i][a];
+            layerWeights[i][kept] = layerWeights[i][a];
+            layerDelays[i][kept++] = layerDelays[i][a];
+          }
+        }
+        layers[i] = Arrays.copyOf(layers[i], kept);
+        layerIds[i] = Arrays.copyOf(layerIds[i], kept);
+        layerWeights[i] = Arrays.copyOf(layerWeights[i], kept);
+        layerDelays[i] = Arrays.copyOf(layerDelays[i], kept);
+      }
+      prunedCandidates[i - 1] = numDominated;
+    }
+    Simulation.getLogger().trace("Dominated candidates pruned per layer: " + Arrays.toString(prunedCandidates));
+  }
+
+  /**
+   * @return 1 if server @b of Layer @layer dominates server @a strictly, 0 if their arcs weigh and delay the same, and -1 if @b does not dominate @a
+   */
+  private int compareArcs(int layer, int a, int b) {
+    boolean strict = false;
+    for (int p = 0; p < layers[layer - 1].length; p++) {
+      double weightA = arcWeight(layer, p, a);
+      double weightB = arcWeight(layer, p, b);
+      double delayA = arcDelay(layer, p, a);
+      double delayB = arcDelay(layer, p, b);
+      if (weightB > weightA || delayB > delayA) {
+        return -1;
+      }
+      strict |= weightB < weightA || delayB < delayA;
+    }
+    for (int q = 0; q < layers[layer + 1].length; q++) {
+      double weightA = arcWeight(layer + 1, a, q);
+      double weightB = arcWeight(layer + 1, b, q);
+      double delayA = arcDelay(layer + 1, a, q);
+      double delayB = arcDelay(layer + 1, b, q);
+      if (weightB > weightA || delayB > delayA) {
+        return -1;
+      }
+      strict |= weightB < weightA || delayB < delayA;
+    }
+    return strict ? 1 : 0;
+  }
+
+  /**
+   * @return the number of dominated servers dropped from each of Layers 1, ..., L, or null if {@link Parameters#pruneDominatedCandidates} is not set
+   */
+  public @Nullable int[] getPrunedCandidates() {
+    return prunedCandidates;
+  }
+
+  /**
+   * @return the number of arcs of the implicit auxiliary graph relaxed by the searches so far
+   */
+  public long getRelaxedArcs() {
+    return relaxedArcs;
+  }
+
+  /**
+   * @return the weight of the arc of the implicit auxiliary graph from server @prev of Layer @layer - 1 to server @curr of Layer @layer, as
+   * {@link #generateNetwork} would set it
+   */
+  private double arcWeight(int layer, int prev, int curr) {
+    return shortestPaths.getCost(layers[layer][curr].getId(), layers[layer - 1][prev].getId()) + layerWeights[layer][curr];
+  }
+
+  private double arcDelay(int layer, int prev, int curr) {
+    return shortestPaths.getDelay(layers[layer][curr].getId(), layers[layer - 1][prev].getId()) + layerDelays[layer][curr];
+  }
+
+  /**
+   * A path through all layers of the implicit auxiliary graph, with its weight and delay
+   */
+  private static class LayeredPath {
+    @NotNull final int[] servers; // the index of the server of each layer
+    final double weight;
+    final double delay;
+
+    LayeredPath(@NotNull int[] servers, double weight, double delay) {
+      this.servers = servers;
+      this.weight = weight;
+      this.delay = delay;
+    }
+  }
+
+  /**
+   * Relax the layers of the implicit auxiliary graph one after the other, with per-layer arrays of path values and predecessors
+   *
+   * @return the path minimizing @weightFactor * weight + @delayFactor * delay, or null if there is none
+   */
+  private @Nullable LayeredPath findLayeredShortestPath(double weightFactor, double delayFactor) {
+    return findLayeredShortestPath(weightFactor, delayFactor, Double.POSITIVE_INFINITY, 0);
+  }
+
+  /**
+   * Same as {@link #findLayeredShortestPath(double, double)}, where the servers whose value plus the lower bound on the rest of the path (see
+   * {@link #lowerBounds}) exceeds @upperBound are not relaxed into the next layer: no path through them is worth at most @upperBound, so the path found is
+   * the same as long as one is.
+   * <p>
+   * With a positive @beamWidth k, only the k servers of each layer with the lowest value plus lower bound are relaxed into the next layer, so each layer
+   * takes O(k |V_S|) arcs instead of O(|V_S|^2), and the path found may not be the shortest one.
+   *
+   * @param upperBound the value of a path known to exist, or the largest value of a path of interest
+   * @return the path minimizing @weightFactor * weight + @delayFactor * delay, or null if there is none worth at most @upperBound
+   */
+  private @Nullable LayeredPath findLayeredShortestPath(double weightFactor, double delayFactor, double upperBound, int beamWidth) {
+    double[] prevValues = {0d};
+    int[] prevServers = {0};
+    int[][] predecessors = new int[layers.length][];
+    double remainingWeight = 0d; // the lowest weight and delay Layers i + 1, ..., L add
+    double remainingDelay = 0d;
+    for (int i = 1; i < layers.length - 1; i++) {
+      remainingWeight += Arrays.stream(layerWeights[i]).min().orElse(0d);
+      remainingDelay += Arrays.stream(layerDelays[i]).min().orElse(0d);
+    }
+    boolean bounded = upperBound != Double.POSITIVE_INFINITY;
+    double maxValue = upperBound + BOUND_SLACK * Math.max(1d, Math.abs(upperBound));
+    for (int i = 1; i < layers.length; i++) {
+      double[] values = new double[layers[i].length];
+      predecessors[i] = new int[layers[i].length];
+      relaxLayer(i, prevValues, prevServers, values, predecessors[i], weightFactor, delayFactor);
+      prevValues = values;
+      if (i < layers.length - 1) {
+        remainingWeight -= Arrays.stream(layerWeights[i]).min().orElse(0d);
+        remainingDelay -= Arrays.stream(layerDelays[i]).min().orElse(0d);
+        prevServers = reachable(values);
+        boolean beam = beamWidth > 0 && beamWidth < prevServers.length;
+        if (bounded || beam) {
+          double[] bounds = lowerBounds(i, weightFactor * Math.max(0d, remainingWeight) + delayFactor * Math.max(0d, remainingDelay), weightFactor);
+          if (bounded) {
+            prevServers = Arrays.stream(prevServers).filter(c -> values[c] + bounds[c] <= maxValue).toArray();
+          }
+          if (beam) {
+            prevServers = beam(prevServers, values, bounds, beamWidth);
+          }
+        }
+      }
+    }
+    if (predecessors[layers.length - 1][0] < 0) {
+      return null;
+    }
+    int[] servers = new int[layers.length];
+    double weight = 0d;
+    double delay = 0d;
+    for (int i = layers.length - 1; i > 0; i--) {
+      servers[i - 1] = predecessors[i][servers[i]];
+      weight += arcWeight(i, servers[i - 1], servers[i]);
+      delay += arcDelay(i, servers[i - 1], servers[i]);
+    }
+    return new LayeredPath(servers, weight, delay);
+  }
+
+  /**
+   * @return the servers of a layer with a value, in order
+   */
+  private static @NotNull int[] reachable(@NotNull double[] values) {
+    return IntStream.range(0, values.length).filter(c -> values[c] != Double.MAX_VALUE).toArray();
+  }
+
+  /**
+   * The weight of the rest of a path is at least the cost of the shortest path from its server in Layer @layer to the destination, plus the lowest weight
+   * each remaining layer adds. Its delay is only bounded by the lowest delay each remaining layer adds, as delays are those of the cheapest paths, which may
+   * be longer than going through other servers.
+   * <p>
+   * The first term relies on the costs of the shortest paths obeying the triangle inequality, as the arcs of the rest of the path are read from the same
+   * shortest paths. It holds for every oracle up to rounding, which {@link #BOUND_SLACK} covers: exact engines may sum the weights of a path in different
+   * orders, and single-precision tables (see Parameters.singlePrecisionDistances) round each cost by at most 2^-24 of it. With bandwidth classes (see
+   * Parameters.numBandwidthClasses), all the costs are those of the same class bandwidth. Landmark estimates (see Parameters.numLandmarks) do not obey
+   * it, but they are within a factor 1 + {@link Parameters#landmarkMaxError} above the exact costs, which do, so the first term is divided by that factor.
+   *
+   * @param remaining the lower bound on what the layers after @layer add to the value of a path
+   * @return the lower bound on the value the rest of a path adds, for each server of Layer @layer
+   */
+  private @NotNull double[] lowerBounds(int layer, double remaining, double weightFactor) {
+    double[] bounds = new double[layers[layer].length];
+    Arrays.fill(bounds, remaining);
+    if (weightFactor == 0d) {
+      return bounds;
+    }
+    if (destinationCosts == null) {
+      destinationCosts = new double[layers.length][];
+    }
+    if (destinationCosts[layer] == null) {
+      destinationCosts[layer] = new double[layers[layer].length];
+      shortestPaths.getCostsAndDelays(destination.getId(), layerIds[layer], destinationCosts[layer], new double[layers[layer].length]);
+    }
+    double scale = (1d - BOUND_SLACK) / (parameters.numLandmarks > 0 ? 1d + parameters.landmarkMaxError : 1d);
+    for (int c = 0; c < bounds.length; c++) {
+      bounds[c] += weightFactor * scale * destinationCosts[layer][c];
+    }
+    return bounds;
+  }
+
+  /**
+   * The servers are selected with a max-heap of @beamWidth servers, whose root is the first to leave the beam, in O(k log @beamWidth) for k candidates.
+   * Ties go to the first server, as with a stable sort.
+   *
+   * @param candidates servers of the layer, in order
+   * @param bounds the lower bound on the rest of a path, for each server of the layer
+   * @return the @beamWidth servers of @candidates with the lowest value plus lower bound on the rest of the path, in order
+   */
+  private static @NotNull int[] beam(@NotNull int[] candidates, @NotNull double[] values, @NotNull double[] bounds, int beamWidth) {
+    if (candidates.length <= beamWidth) {
+      return candidates;
+    }
+    int[] heap = new int[beamWidth];
+    int size = 0;
+    for (int c : candidates) {
+      int i;
+      if (size < beamWidth) {
+        for (i = size++; i > 0 && ranksBefore(heap[(i - 1) / 2], c, values, bounds); i = (i - 1) / 2) {
+          heap[i] = heap[(i - 1) / 2];
+        }
+      } else if (ranksBefore(c, heap[0], values, bounds)) {
+        i = 0;
+        for (int child = 1; child < size; child = 2 * i + 1) {
+          if (child + 1 < size && ranksBefore(heap[child], heap[child + 1], values, bounds)) {
+            child++;
+          }
+          if (!ranksBefore(c, heap[child], values, bounds)) {
+            break;
+          }
+          heap[i] = heap[child];
+          i = child;
+        }
+      } else {
+        continue;
+      }
+      heap[i] = c;
+    }
+    Arrays.sort(heap);
+    return heap;
+  }
+
+  /**
+   * @return whether server @a of a layer goes into a beam before server @b
+   */
+  private static boolean ranksBefore(int a, int b, @NotNull double[] values, @NotNull double[] bounds) {
+    double keyA = values[a] + bounds[a];
+    double keyB = values[b] + bounds[b];
+    return keyA < keyB || (keyA == keyB && a < b);
+  }
+
+  /**
+   * Relax the arcs into Layer @layer: the value of each of its servers is the minimum over the servers of the previous layer of their value plus the arc
+   * value, i.e., one min-plus product of @prevValues with the arcs. Each server reads its row of the shortest paths at once, and the servers are split across
+   * cores if there are at least {@link #PARALLEL_LAYER_MIN_ARCS} arcs. Oracles that compute entries under a lock take it once per row.
+   *
+   * @param prevValues the values of the servers of the previous layer
+   * @param prevServers the servers of the previous layer to relax the arcs of, in order
+   * @param values the values of the servers of @layer, Double.MAX_VALUE for unreachable ones
+   * @param predecessors the server of the previous layer each server of @layer is reached from, or -1
+   */
+  private void relaxLayer(int layer, @NotNull double[] prevValues, @NotNull int[] prevServers, @NotNull double[] values, @NotNull int[] predecessors,
+                          double weightFactor, double delayFactor) {
+    int[] prevIds = Arrays.stream(prevServers).map(p -> layerIds[layer - 1][p]).toArray();
+    double[] weights = layerWeights[layer];
+    double[] delays = layerDelays[layer];
+    relaxedArcs += (long) layers[layer].length * (long) prevIds.length;
+    ThreadLocal<double[][]> rows = ThreadLocal.withInitial(() -> new double[2][prevIds.length]);
+    IntStream servers = IntStream.range(0, layers[layer].length);
+    if ((long) layers[layer].length * (long) prevIds.length >= PARALLEL_LAYER_MIN_ARCS) {
+      servers = servers.parallel();
+    }
+    servers.forEach(c -> {
+      double[][] row = rows.get();
+      double[] pathCosts = row[0];
+      double[] pathDelays = row[1];
+      shortestPaths.getCostsAndDelays(layerIds[layer][c], prevIds, pathCosts, pathDelays);
+      double minValue = Double.MAX_VALUE;
+      int minPrev = -1;
+      for (int j = 0; j < prevIds.length; j++) {
+        double value = prevValues[prevServers[j]];
+        if (weightFactor != 0d) {
+          value += weightFactor * (pathCosts[j] + weights[c]);
+        }
+        if (delayFactor != 0d) {
+          value += delayFactor * (pathDelays[j] + delays[c]);
+        }
+        if (value < minValue) {
+          minValue = value;
+          minPrev = prevServers[j];
+        }
+      }
+      values[c] = minValue;
+      predecessors[c] = minPrev;
+    });
+  }
+
+  private @NotNull ArrayList<Server> toServers(@NotNull LayeredPath path) {
+    ArrayList<Server> servers = new ArrayList<>(layers.length);
+    for (int i = 0; i < layers.length; i++) {
+      servers.add(layers[i][path.servers[i]]);
+    }
+    return servers;
+  }
+
+  /**
+   * Same as {@link #findDelayAwareShortestPath}, on the implicit auxiliary graph: as it is a DAG, the layers are relaxed in order instead of running
+   * Dijkstra, for the costs, the delays and then the Lagrangian costs of LARAC. The searches are exact whatever {@link Parameters#beamWidth}, as LARAC
+   * relies on pathC being the cheapest path, pathD the one with the lowest delay, and each Lagrangian search finding the best path: a beam could make
+   * lambda negative, or keep LARAC from converging.
+   */
+  private @Nullable ArrayList<Server> findImplicitDelayAwareShortestPath() {
+    LayeredPath pathC = findLayeredShortestPath(1d, 0d);
+    if (pathC == null || pathC.weight == Double.POSITIVE_INFINITY) {
+      Simulation.getLogger().trace("Cannot find a shortest path based on the original cost");
+      return null;
+    }
+    if (pathC.delay <= request.getDelayReq()) {
+      Simulation.getLogger().trace("Found a shortest path based on the original cost");
+      return toServers(pathC);
+    }
+
+    // with branch and bound, no path with too large a delay is searched for, and each Lagrangian search only looks for paths worth at most pathC (and pathD)
+    boolean bounded = parameters.branchAndBound;
+    LayeredPath pathD = findLayeredShortestPath(0d, 1d, bounded ? request.getDelayReq() : Double.POSITIVE_INFINITY, 0);
+    if (pathD == null) {
+      Simulation.getLogger().trace("Cannot find a shortest path based on delays");
+      return null;
+    }
+    if (pathD.delay > request.getDelayReq()) {
+      Simulation.getLogger().trace("The shortest path based on delays has too large delay");
+      return null;
+    }
+
+    int iterations = 0;
+    while (true) {
+      iterations += 1;
+      checkState(iterations <= 10000, "It seems that LARAC fails to terminate");
+
+      double lambda = (pathC.weight - pathD.weight) / (pathD.delay - pathC.delay);
+      checkState(lambda >= 0d);
+      LayeredPath pathR = findLayeredShortestPath(1d, lambda, bounded ? pathC.weight + lambda * pathC.delay : Double.POSITIVE_INFINITY, 0);
+      if (pathR == null) {
+        return null;
+      }
+      if (Math.abs(pathR.weight + lambda * pathR.delay - (pathC.weight + lambda * pathC.delay)) < 0.0001) {
+        return toServers(pathD);
+      } else if (pathR.delay <= request.getDelayReq()) {
+        pathD = pathR;
+      } else {
+        pathC = pathR;
+      }
+    }
+  }
+
   /**
    * This is what should be used, for most of the time
    * <p>
@@ -126,6 +596,10 @@ import static com.google.common.base.Preconditions.checkState;
    * @return a shortest path for the request, which was given to the constructor of this class.
    */
   public @NotNull ArrayList<Server> findShortestPath() {
+    if (parameters.implicitAuxiliaryGraph) {
+      LayeredPath path = findLayeredShortestPath(1d, 0d, Double.POSITIVE_INFINITY, parameters.beamWidth);
+      return path == null ? new ArrayList<>() : toServers(path);
+    }
     return findShortestPath(l -> l.getWeight());
   }
 
@@ -238,6 +712,9 @@ import static com.google.common.base.Preconditions.checkState;
   }
 
   public @Nullable ArrayList<Server> findDelayAwareShortestPath() {
+    if (parameters.implicitAuxiliaryGraph) {
+      return findImplicitDelayAwareShortestPath();
+    }
     // PC is the shortest path on the original cost c
     ShortestPathResult pathC = shortestPath(source, destination, l -> l.getWeight());
     if (pathC == null || pathC.dijkstraShortestPath.getPathLength() == Double.POSITIVE_INFINITY) {
@@ -333,26 +810,18 @@ import static com.google.common.base.Preconditions.checkState;
     if (serversOnPath == null || serversOnPath.size() != request.getSC().length + 2) { //No path was found
       return Double.MAX_VALUE;
     }
+    // Only the servers and links on the path are cloned, when first used
     HashMap<Link, Link> clonedLinks = new HashMap<>();
     HashMap<Integer, Server> clonedServers = new HashMap<>();
-    for (Server s : getServers()) {
-      clonedServers.put(s.getId(), new Server(s));
-    }
-
-    for (Link oldLink : getLinks()) {
-      Server newS1 = clonedServers.get(oldLink.getS1().getId());
-      Server newS2 = clonedServers.get(oldLink.getS2().getId());
-      Link clonedLink = new Link(newS1, newS2, oldLink.getBandwidthCapacity(), oldLink.getAllocatedBandwidth(), oldLink.getDelay(),
-                                 oldLink.getOperationalCost());
-      newS1.addLink(clonedLink);
-      newS1.addLink(clonedLink);
-      clonedLinks.put(oldLink, clonedLink);
-    }
+    Function<Server, Server> cloneServer = s -> clonedServers.computeIfAbsent(s.getId(), id -> new Server(s));
+    Function<Link, Link> cloneLink = oldLink -> clonedLinks.computeIfAbsent(oldLink, l -> new Link(cloneServer.apply(l.getS1()), cloneServer.apply(l.getS2()),
+                                                                                                  l.getBandwidthCapacity(), l.getAllocatedBandwidth(),
+                                                                                                  l.getDelay(), l.getOperationalCost()));
 
     double cost = 0d;
     //get server costs
     for (int i = 1; i < serversOnPath.size() - 1; i++) {
-      Server cs = clonedServers.get(serversOnPath.get(i).getId());
+      Server cs = cloneServer.apply(serversOnPath.get(i));
       int nfv = request.getSC()[i - 1];
       cost += costFunction.getCost(cs, nfv, this.parameters);
       if (!cs.canCreateVM(nfv)) {
@@ -366,7 +835,7 @@ import static com.google.common.base.Preconditions.checkState;
       Server s1 = serversOnPath.get(i);
       Server s2 = serversOnPath.get(i + 1);
       for (Link l : getLinkPath(s1, s2)) {
-        Link cl = clonedLinks.get(l);
+        Link cl = cloneLink.apply(l);
         if (parameters.offline) {
           cost += request.getBandwidth() * costFunction.getCost(cl, request.getBandwidth(), this.parameters);
         } else {
@@ -385,6 +854,15 @@ import static com.google.common.base.Preconditions.checkState;
     return destination;
   }
 
+  /**
+   * @return the servers of @layer in the order of the compact graph of the original network, which the shortest path tables are indexed in, so that the
+   * lookups between two layers walk along the rows (see {@link Parameters#vertexOrdering})
+   */
+  private @NotNull Server[] inGraphOrder(@NotNull Collection<Server> layer) {
+    CompactGraph graph = originalNetwork.getCompactGraph();
+    return layer.stream().sorted(Comparator.comparingInt(graph::indexOf)).toArray(Server[]::new);
+  }
+
   private HashSet<Server> cloneServers(Collection<Server> svrs) {
     return svrs.stream().map(s -> new Server(s)).collect(Collectors.toCollection(HashSet::new));
   }
@@ -393,7 +871,7 @@ import static com.google.common.base.Preconditions.checkState;
     if (s1.getId() == s2.getId()) {
       return new ArrayList<Link>();
     }
-    return allShortestPaths.get(s1.getId()).get(s2.getId());
+    return shortestPaths.getPath(s1.getId(), s2.getId());
   }
 
   public void admitRequestAndReserveResources(ArrayList<Server> path) {//assign network resources for request
@@ -401,17 +879,20 @@ import static com.google.common.base.Preconditions.checkState;
     for (int i = 0; i < request.getSC().length; i++) { //the first and last server are the source and destination node of the request.
       int nfv = request.getSC()[i];
       Server s = path.get(i + 1);
-      useNFV(s.getId(), nfv);
+      originalNetwork.useNFV(s.getId(), nfv);
     }
 
     //update links
     for (int i = 0; i < path.size() - 1; i++) {
       Server s1 = path.get(i);
       Server s2 = path.get(i + 1);
-      //The links in the allShortestPaths mapping are from the original network.
+      //The links of the shortest paths are from the original network, reserve through it so that its epoch moves on.
       if (s1.getId() != s2.getId()) {
-        allocateBandwidthOnPath(allShortestPaths.get(s1.getId()).get(s2.getId()), request.getBandwidth());
+        originalNetwork.allocateBandwidthOnPath(shortestPaths.getPath(s1.getId(), s2.getId()), request.getBandwidth());
       }
     }
+    if (parameters.backgroundShortestPaths) {
+      AuxiliaryGraphBuilder.refreshShortestPaths(originalNetwork);
+    }
   }
 }
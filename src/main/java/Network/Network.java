@@ -5,6 +5,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.stream.Collectors;
 
+import NetworkGenerator.ShortestPaths.CompactGraph;
+import NetworkGenerator.ShortestPaths.ContractionHierarchy;
+import NetworkGenerator.ShortestPaths.DynamicShortestPaths;
+import NetworkGenerator.ShortestPaths.ShortestPathCache;
+import NetworkGenerator.ShortestPaths.ShortestPathRefresher;
+import NetworkGenerator.ShortestPaths.ShortestPathRowCache;
+import NetworkGenerator.ShortestPaths.TopologyReduction;
+import NetworkGenerator.ShortestPaths.VertexOrdering;
 import org.jetbrains.annotations.NotNull;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -14,11 +22,15 @@ public class Network {
   @NotNull private final ArrayList<Server> servers;
   @NotNull private final HashMap<Integer, Server> serversById;
   @NotNull private ArrayList<Link> links;
-  
-  // used in offline networks
-  private double[][] pathCosts;
-  private double[][] pathDelays;
-  private HashMap<Integer, HashMap<Integer, ArrayList<Link>>> allPairShortestPaths;
+  private CompactGraph compactGraph; // built on first use, the topology does not change afterwards
+  @NotNull private VertexOrdering vertexOrdering = VertexOrdering.NETWORK; // the order of the vertices of the compact graph
+  private DynamicShortestPaths dynamicShortestPaths; // shortest paths maintained across online requests
+  private ShortestPathRowCache shortestPathRowCache; // shortest path rows computed on demand, instead of APSP
+  private ContractionHierarchy contractionHierarchy; // built on first use, customized for the link weights of each query batch
+  private ShortestPathRefresher shortestPathRefresher; // all-pair shortest paths recomputed in the background across online requests
+  private TopologyReduction topologyReduction; // built on first use, the topology and the servers with computing capacity do not change afterwards
+  @NotNull private final ShortestPathCache shortestPathCache = new ShortestPathCache();
+  private long epoch = 0L; // bumped whenever the bandwidth allocated on links changes
 
   public Network(@NotNull ArrayList<Server> servers, @NotNull ArrayList<Link> links) {
     this.servers = servers;
@@ -48,6 +60,7 @@ public class Network {
     }
 
     Network newNetwork = new Network(servers, links);
+    newNetwork.setVertexOrdering(vertexOrdering);
     checkState(newNetwork.getLinks().size() == this.getLinks().size() && newNetwork.getServers().size() == this.getServers().size());
 
     return newNetwork;
@@ -67,6 +80,104 @@ public class Network {
 
   public void setLinks(@NotNull ArrayList<Link> newLinks) {
     links = newLinks;
+    dropCompactGraph();
+  }
+
+  /**
+   * Number the vertices of the compact graph, and thus the rows and columns of shortest path tables, in @ordering from now on. Orderings that depend on the
+   * servers, e.g., on their computing capacity, take them as they are when the compact graph is next built.
+   */
+  public void setVertexOrdering(@NotNull VertexOrdering ordering) {
+    if (ordering != vertexOrdering) {
+      vertexOrdering = ordering;
+      dropCompactGraph();
+    }
+  }
+
+  /**
+   * Drop the compact graph and everything indexed by its vertices or links
+   */
+  private void dropCompactGraph() {
+    compactGraph = null;
+    dynamicShortestPaths = null;
+    shortestPathRowCache = null;
+    contractionHierarchy = null;
+    topologyReduction = null;
+    if (shortestPathRefresher != null) {
+      shortestPathRefresher.shutdown();
+      shortestPathRefresher = null;
+    }
+  }
+
+  /**
+   * @return an int-indexed view of the servers and links of this network for the shortest path engines
+   */
+  @NotNull public CompactGraph getCompactGraph() {
+    if (compactGraph == null) {
+      compactGraph = new CompactGraph(this, vertexOrdering);
+    }
+    return compactGraph;
+  }
+
+  @NotNull public DynamicShortestPaths getDynamicShortestPaths() {
+    if (dynamicShortestPaths == null) {
+      dynamicShortestPaths = new DynamicShortestPaths(getCompactGraph());
+    }
+    return dynamicShortestPaths;
+  }
+
+  /**
+   * @param memoryLimit the bytes the rows may take; a cache with another limit is replaced
+   */
+  @NotNull public ShortestPathRowCache getShortestPathRowCache(long memoryLimit) {
+    if (shortestPathRowCache == null || shortestPathRowCache.getMemoryLimit() != memoryLimit) {
+      shortestPathRowCache = new ShortestPathRowCache(getCompactGraph(), memoryLimit);
+    }
+    return shortestPathRowCache;
+  }
+
+  /**
+   * @return the contraction hierarchy of the topology, to be customized with link weights before querying it
+   */
+  @NotNull public ContractionHierarchy getContractionHierarchy() {
+    if (contractionHierarchy == null) {
+      contractionHierarchy = new ContractionHierarchy(getCompactGraph());
+    }
+    return contractionHierarchy;
+  }
+
+  @NotNull public ShortestPathRefresher getShortestPathRefresher() {
+    if (shortestPathRefresher == null) {
+      shortestPathRefresher = new ShortestPathRefresher(getCompactGraph());
+    }
+    return shortestPathRefresher;
+  }
+
+  /**
+   * @return the topology with its degree-1 trees peeled off and its degree-2 chains merged, keeping every server with computing capacity
+   */
+  @NotNull public TopologyReduction getTopologyReduction() {
+    if (topologyReduction == null) {
+      CompactGraph graph = getCompactGraph();
+      boolean[] terminals = new boolean[graph.size()];
+      for (int v = 0; v < graph.size(); v++) {
+        terminals[v] = graph.getServer(v).getComputingCapacity() > 0d;
+      }
+      topologyReduction = new TopologyReduction(graph, terminals);
+    }
+    return topologyReduction;
+  }
+
+  @NotNull public ShortestPathCache getShortestPathCache() {
+    return shortestPathCache;
+  }
+
+  /**
+   * The epoch changes whenever the residual bandwidth of a link changes through this network (reservations and wipes), so anything derived from link
+   * residuals, e.g., shortest paths, can be keyed by it. Setting link capacities, costs or delays directly does not change the epoch.
+   */
+  public long getEpoch() {
+    return epoch;
   }
 
   public Server getRandomServer() {
@@ -99,6 +210,7 @@ public class Network {
     for (Link l : links) {
       l.wipe();
     }
+    ++epoch;
   }
 
   void allocateBandwidthOnPath(@NotNull ArrayList<Link> path, double bandwidth) {
@@ -106,6 +218,7 @@ public class Network {
     for (Link l : path) {
       l.allocateBandwidth(bandwidth);
     }
+    ++epoch;
   }
 
   void useNFV(int serverId, int nfv) {
@@ -118,29 +231,4 @@ public class Network {
   @Override public String toString() {
     return String.format("Network{servers=%s, links=%s}", servers, links);
   }
-
-public double[][] getPathCosts() {
-	return pathCosts;
-}
-
-public void setPathCosts(double[][] pathCosts) {
-	this.pathCosts = pathCosts;
 }
-
-public double[][] getPathDelays() {
-	return pathDelays;
-}
-
-public void setPathDelays(double[][] pathDelays) {
-	this.pathDelays = pathDelays;
-}
-
-public HashMap<Integer, HashMap<Integer, ArrayList<Link>>> getAllPairShortestPaths() {
-	return allPairShortestPaths;
-}
-
-public void setAllPairShortestPaths(HashMap<Integer, HashMap<Integer, ArrayList<Link>>> allPairShortestPaths) {
-	this.allPairShortestPaths = allPairShortestPaths;
-}
-}
-
@@ -14,9 +14,12 @@ public class Server {
   private double computingCapacity; //some servers have 0 computingCapacity as they are switches
   private final ArrayList<Link> links;
   private HashMap<Integer, VM> NFVs;
+  private double x; // coordinates of the vertex in the topology file, (0, 0) if it has none
+  private double y;
 
   public Server(Server server) {
     this(server.getId(), server.getComputingCapacity(), new ArrayList<>(), copyVMs(server.NFVs));
+    setCoordinates(server.x, server.y);
   }
 
   private Server(int Id, double computingCapacity, ArrayList<Link> links, HashMap<Integer, VM> NFVs) {
@@ -44,6 +47,19 @@ public class Server {
     return id;
   }
 
+  public double getX() {
+    return x;
+  }
+
+  public double getY() {
+    return y;
+  }
+
+  public void setCoordinates(double x, double y) {
+    this.x = x;
+    this.y = y;
+  }
+
   public double getComputingCapacity() {
     return computingCapacity;
   }
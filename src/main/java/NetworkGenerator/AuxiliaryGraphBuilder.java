@@ -1,7 +1,7 @@
 package NetworkGenerator;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Objects;
 
 import Algorithm.CostFunctions.CostFunction;
 import Network.AuxiliaryNetwork;
@@ -9,20 +9,46 @@ import Network.Link;
 import Network.Network;
 import Network.Request;
 import Network.Server;
+import NetworkGenerator.ShortestPaths.AllPairShortestPaths;
+import NetworkGenerator.ShortestPaths.ApspArtifactStore;
+import NetworkGenerator.ShortestPaths.CompactGraph;
+import NetworkGenerator.ShortestPaths.DistanceOracle;
+import NetworkGenerator.ShortestPaths.LandmarkOracle;
+import NetworkGenerator.ShortestPaths.PartitionedShortestPaths;
+import NetworkGenerator.ShortestPaths.ReducedShortestPaths;
+import NetworkGenerator.ShortestPaths.RestrictedShortestPaths;
+import NetworkGenerator.ShortestPaths.ShortestPathCache;
+import NetworkGenerator.ShortestPaths.ShortestPathRefresher;
+import NetworkGenerator.ShortestPaths.ShortestPathRowCache;
 import Simulation.Parameters;
-
-import static com.google.common.base.Preconditions.checkState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Construct an auxiliary network
  * <p>
  * As we need the information of all-pair shortest paths (APSP) to construct an auxiliary graph and putting the APSP procedure in the AuxiliaryNetwork class
- * will make it too long, we put the code here.
+ * will make it too long, we put the code here. The shortest paths themselves are computed by the engines in {@link NetworkGenerator.ShortestPaths}.
  */
-@SuppressWarnings("Duplicates") public class AuxiliaryGraphBuilder {
+public class AuxiliaryGraphBuilder {
 
   /**
-   * Use Dijkstra to get all-pair shortest paths with respect to cost function @costFn. New Link takes the minimum bandwidth in shortest path.
+   * Use Dijkstra to get the shortest paths with respect to cost function @costFn. New Link takes the minimum bandwidth in shortest path.
+   * <p>
+   * If {@link Parameters#numLandmarks} is positive, server-to-server costs are estimated from that many landmark trees, and only the pairs the estimates
+   * are too loose for, or the auxiliary graph routes through, are searched exactly (see {@link LandmarkOracle}). Otherwise, if {@link Parameters#numRegions}
+   * is positive, the servers are split into that many regions and shortest paths are assembled from per-region tables and the overlay of the boundary
+   * vertices (see {@link PartitionedShortestPaths}). Otherwise, if {@link Parameters#reduceTopology} is set, all-pair shortest paths are only computed
+   * between the core vertices of the reduced topology of the network, and assembled with the trees and chains around them (see
+   * {@link ReducedShortestPaths}). Otherwise, if {@link Parameters#shortestPathRowCacheBytes} is positive, shortest paths are computed one source at a time as the auxiliary graph reads them, and
+   * kept in the row cache of the network. Otherwise, if {@link Parameters#backgroundShortestPaths} is set, the all-pair shortest paths recomputed in the
+   * background after the last reservation are used if they are recent enough (see {@link #refreshShortestPaths}), and computed in place otherwise.
+   * Otherwise, if {@link Parameters#targetRestrictedShortestPaths} is set, only the shortest paths among the source,
+   * the destination and the servers of the service layers are computed. Otherwise all-pair shortest paths are computed with {@link Parameters#apspEngine},
+   * incrementally if {@link Parameters#incrementalShortestPaths} is set. {@link Parameters.Builder#build} rejects parameters setting more than one of these.
+   * <p>
+   * If {@link Parameters#numBandwidthClasses} is positive, shortest paths are computed at the bandwidth of the class of the request rather than at its own
+   * (see {@link #routingBandwidth}), so that the requests of a class share them within a network epoch.
    *
    * @param network original network
    * @param request the request to admit
@@ -30,163 +56,242 @@ import static com.google.common.base.Preconditions.checkState;
    * @param parameters parameters
    */
   public static AuxiliaryNetwork buildAuxiliaryGraph(Network network, Request request, CostFunction costFunction, Parameters parameters) {
-    HashMap<Integer, HashMap<Integer, ArrayList<Link>>> allPairShortestPaths = new HashMap<>();
-    double[][] pathCosts = new double[network.size()][network.size()];
-    double[][] pathDelays = new double[network.size()][network.size()];
-
-    // The original code does not implement the Floyd–Warshall algorithm, so we simply find shortest path from @src to every other server in the network
-    for (Server src : network.getServers()) {
-      HashMap<Server, Double> pathCost = new HashMap<>();
-      HashMap<Server, Server> prevNode = new HashMap<>();
-      pathCost.put(src, 0d);
-      ArrayList<Server> queue = new ArrayList<>();
-      ArrayList<Server> searched = new ArrayList<>();
-      queue.add(src);
-      while (!queue.isEmpty()) {
-        //priority queue
-        Server curr = queue.remove(0);
-        for (Server neighbour : curr.getAllNeighbours()) {
-          Link l = curr.getLink(neighbour);
-          //searched nodes and links without enough bandwidth
-          if (searched.contains(neighbour) || l.getResidualBandwidth() < request.getBandwidth() * (double) request.getSC().length) {
-            continue;
-          }
-          Double cost = pathCost.getOrDefault(neighbour, Double.MAX_VALUE);
-          double altCost = pathCost.get(curr) + costFunction.getCost(l, request.getBandwidth(), parameters);
-          if (altCost < cost) {
-            pathCost.put(neighbour, altCost);
-            prevNode.put(neighbour, curr);
-          }
-          //add to priority queue using insertion sort
-          insertSort(queue, neighbour, pathCost);
-        }
-        searched.add(curr);
+    BitSet targets = parameters.targetRestrictedShortestPaths ? targetServers(network, request, parameters) : null;
+    DistanceOracle shortestPaths = shortestPaths(network, request, costFunction, parameters, targets, parameters.backgroundShortestPaths,
+                                                 parameters.incrementalShortestPaths, false);
+    if (shortestPaths == null) { //Auxiliary graph could not be constructed (some destinations are not reachable with current residual bandwidth)
+      return null;
+    }
+    return new AuxiliaryNetwork(network, shortestPaths, request, parameters, costFunction);
+  }
+
+  /**
+   * Same as {@link #buildAuxiliaryGraph}, except that all-pair shortest paths are always computed from scratch, as offline requests do not reserve resources
+   * and almost always hit the cache of the network. If {@link Parameters#apspArtifactDirectory} is set, they are also loaded from and saved to disk, provided
+   * that the link costs of @costFunction do not depend on the bandwidth of the request, or that shortest paths are computed per bandwidth class (see
+   * {@link Parameters#numBandwidthClasses}); otherwise every request would write its own artifact. The landmarks of {@link Parameters#numLandmarks}, the
+   * regions of {@link Parameters#numRegions}, the reduced topology of {@link Parameters#reduceTopology} and the row cache of
+   * {@link Parameters#shortestPathRowCacheBytes} take precedence over both.
+   */
+  public static AuxiliaryNetwork buildAuxiliaryGraphOffline(Network network, Request request, CostFunction costFunction, Parameters parameters) {
+    boolean persistent = parameters.apspArtifactDirectory != null
+        && (!costFunction.linkCostDependsOnBandwidth() || parameters.numBandwidthClasses > 0);
+    DistanceOracle shortestPaths = shortestPaths(network, request, costFunction, parameters, null, false, false, persistent);
+    if (shortestPaths == null) {
+      return null;
+    }
+    return new AuxiliaryNetwork(network, shortestPaths, request, parameters, costFunction);
+  }
+
+  /**
+   * @return the vertices of the compact graph of @network that the auxiliary graph of @request reads shortest paths between
+   */
+  private static @NotNull BitSet targetServers(@NotNull Network network, @NotNull Request request, @NotNull Parameters parameters) {
+    CompactGraph graph = network.getCompactGraph();
+    BitSet targets = new BitSet(graph.size());
+    targets.set(graph.indexOf(request.getSource()));
+    targets.set(graph.indexOf(request.getDestination()));
+    for (int nfv : request.getSC()) {
+      for (Server s : AuxiliaryNetwork.getLayerServers(network, nfv, parameters)) {
+        targets.set(graph.indexOf(s));
       }
+    }
+    return targets;
+  }
 
-      // At this point, the queue is empty and we have calculated the shortest path from @src to every other server in the network.
+  /**
+   * Queue the recomputation of the all-pair shortest paths that requests recently used on @network, now that bandwidth was reserved on it (see
+   * {@link Parameters#backgroundShortestPaths})
+   */
+  public static void refreshShortestPaths(@NotNull Network network) {
+    CompactGraph graph = network.getCompactGraph();
+    network.getShortestPathRefresher().refresh(network.getEpoch(), configuration -> ((RoutingConfiguration) configuration).weights(graph),
+                                               linkDelays(graph));
+  }
 
-      //update shortest paths
-      for (Server dest : network.getServers()) {
-        if (dest == src) {
-          continue;
-        }
-        if (pathCost.get(dest) == null) {//Auxiliary graph could not be constructed (some destinations are not reachable with current residual bandwidth)
-          return null;
-        }
-        Server curr = dest;
-        double delay = 0d;
-        ArrayList<Link> shortestPath = new ArrayList<>();
-        while (prevNode.get(curr) != null) {
-          Link l = curr.getLink(prevNode.get(curr));
-          checkState(l != null);
-          shortestPath.add(0, l);
-          delay += l.getDelay();
-          curr = prevNode.get(curr);
-        }
-        HashMap<Integer, ArrayList<Link>> srcMap = allPairShortestPaths.getOrDefault(src.getId(), new HashMap<>());
-        srcMap.put(dest.getId(), shortestPath);
-        allPairShortestPaths.put(src.getId(), srcMap);
-        pathCosts[src.getId()][dest.getId()] = pathCost.get(dest);
-        pathDelays[src.getId()][dest.getId()] = delay;
+  /**
+   * @param targets the vertices to compute shortest paths between, or null for all-pair shortest paths
+   * @param background whether to use the all-pair shortest paths recomputed in the background on @network
+   * @param incremental whether to update the all-pair shortest paths maintained on @network rather than computing them from scratch
+   * @param persistent whether to load all-pair shortest paths from, and save them to, {@link Parameters#apspArtifactDirectory}
+   * @return the shortest paths of @network with respect to @costFunction, using only links that can carry the request through its whole service chain, or
+   * null if some server cannot reach another one over such links
+   */
+  private static @Nullable DistanceOracle shortestPaths(@NotNull Network network, @NotNull Request request, @NotNull CostFunction costFunction,
+                                                        @NotNull Parameters parameters, @Nullable BitSet targets, boolean background,
+                                                        boolean incremental, boolean persistent) {
+    CompactGraph graph = network.getCompactGraph();
+    double bandwidth = routingBandwidth(request.getBandwidth(), parameters);
+    RoutingConfiguration configuration = new RoutingConfiguration(costFunction, parameters, bandwidth, request.getSC().length);
+    BitSet prunedLinks = configuration.prunedLinks(graph);
+
+    ShortestPathCache cache = network.getShortestPathCache();
+    ShortestPathCache.Key key = new ShortestPathCache.Key(network.getEpoch(), costFunction, parameters, bandwidth, prunedLinks, targets);
+    if (cache.contains(key)) {
+      return cache.get(key);
+    }
+
+    double[] weights = configuration.weights(graph, prunedLinks);
+    double[] delays = linkDelays(graph);
+    double bucketWidth = parameters.deltaSteppingBucketWidth; // for searches split across cores
+    DistanceOracle shortestPaths;
+    if (parameters.numLandmarks > 0) {
+      shortestPaths = LandmarkOracle.compute(graph, weights, delays, parameters.numLandmarks, parameters.landmarkMaxError);
+    } else if (parameters.numRegions > 0) {
+      shortestPaths = PartitionedShortestPaths.compute(graph, weights, delays, parameters.numRegions, parameters.parallelShortestPaths);
+    } else if (parameters.reduceTopology) {
+      shortestPaths = ReducedShortestPaths.compute(network.getTopologyReduction(), weights, delays, parameters.parallelShortestPaths);
+    } else if (parameters.shortestPathRowCacheBytes > 0L) {
+      cache.invalidate(); // the rows are updated in place, so entries referring to them go stale
+      ShortestPathRowCache rows = network.getShortestPathRowCache(parameters.shortestPathRowCacheBytes);
+      shortestPaths = rows.update(weights, delays, parameters.parallelShortestPaths, bucketWidth) ? rows : null;
+    } else if (background) {
+      shortestPaths = backgroundAllPairShortestPaths(network, configuration, weights, delays, parameters);
+    } else if (targets != null) {
+      shortestPaths = RestrictedShortestPaths.compute(graph, targets.stream().toArray(), weights, delays, parameters.parallelShortestPaths,
+                                                      bucketWidth);
+    } else if (incremental) {
+      cache.invalidate(); // the maintained tables are updated in place, so entries referring to them go stale
+      shortestPaths = network.getDynamicShortestPaths().update(weights, delays, parameters.parallelShortestPaths, parameters.apspEngine,
+                                                               parameters.matrixFormat);
+    } else if (persistent) {
+      shortestPaths = persistentAllPairShortestPaths(graph, weights, delays, parameters);
+    } else {
+      shortestPaths = AllPairShortestPaths.compute(graph, weights, delays, parameters.parallelShortestPaths, parameters.apspEngine,
+                                                   parameters.matrixFormat);
+    }
+    cache.put(key, shortestPaths);
+    return shortestPaths;
+  }
+
+  /**
+   * @return the all-pair shortest paths of the last snapshot of @configuration if it is at most {@link Parameters#maxSnapshotLag} reservations behind
+   * @network, or else the ones computed in place for @weights from that snapshot
+   */
+  private static @Nullable AllPairShortestPaths backgroundAllPairShortestPaths(@NotNull Network network, @NotNull RoutingConfiguration configuration,
+                                                                              @NotNull double[] weights, @NotNull double[] delays,
+                                                                              @NotNull Parameters parameters) {
+    ShortestPathRefresher refresher = network.getShortestPathRefresher();
+    ShortestPathRefresher.Snapshot snapshot = refresher.lookup(configuration, network.getEpoch(), parameters.maxSnapshotLag);
+    if (snapshot != null) {
+      return snapshot.getShortestPaths();
+    }
+    return refresher.compute(configuration, network.getEpoch(), weights, delays, parameters.parallelShortestPaths, parameters.apspEngine,
+                             parameters.matrixFormat);
+  }
+
+  private static @NotNull double[] linkDelays(@NotNull CompactGraph graph) {
+    double[] delays = new double[graph.numLinks()];
+    for (int e = 0; e < graph.numLinks(); e++) {
+      delays[e] = graph.getLink(e).getDelay();
+    }
+    return delays;
+  }
+
+  /**
+   * Round @bandwidth up to the upper end of its class: the range [{@link Parameters#reqBWReqMin}, {@link Parameters#reqBWReqMax}] is split into
+   * {@link Parameters#numBandwidthClasses} classes whose ends grow by a factor of rho = (reqBWReqMax / reqBWReqMin)^(1 / numBandwidthClasses), so the
+   * result b' of a bandwidth b satisfies b <= b' <= rho * b. Bandwidths outside the range, or any bandwidth if there are no classes, are returned as is.
+   * <p>
+   * Computing shortest paths at b' rather than at b is approximate in two ways, while everything that is reserved and charged still uses b:
+   * <ul>
+   * <li>Links are pruned if their residual bandwidth is below b' (rather than b) times the length of the service chain. Every path found can therefore carry
+   * the request, but a request whose demand only fits below b' may be rejected where the exact mode admits it.</li>
+   * <li>Link costs are evaluated at b'. As they do not decrease with the bandwidth, if every link costs at most t * w + (t - 1) at b' when it costs w at b,
+   * a path chosen at b' costs at most t * OPT + (t - 1) * h at b, OPT being the cost and h the number of links of the cheapest path at b. For
+   * {@link Algorithm.CostFunctions.ExponentialCostFunction}, t = (beta * networkSize)^((rho - 1) * b / c), c being the smallest link capacity; for
+   * {@link Algorithm.CostFunctions.LinCostFunction}, all links scale alike and the paths are exact.</li>
+   * </ul>
+   */
+  public static double routingBandwidth(double bandwidth, @NotNull Parameters parameters) {
+    int numClasses = parameters.numBandwidthClasses;
+    if (numClasses <= 0 || !(parameters.reqBWReqMin > 0d) || bandwidth < parameters.reqBWReqMin || bandwidth > parameters.reqBWReqMax) {
+      return bandwidth;
+    }
+    double ratio = parameters.reqBWReqMax / parameters.reqBWReqMin;
+    for (int i = 1; i < numClasses; i++) {
+      double upper = parameters.reqBWReqMin * Math.pow(ratio, (double) i / (double) numClasses);
+      if (bandwidth <= upper) {
+        return upper;
       }
     }
-    return new AuxiliaryNetwork(network.getServers(), network.getLinks(), pathCosts, pathDelays, allPairShortestPaths, request, parameters, costFunction);
+    return parameters.reqBWReqMax;
   }
 
-  public static AuxiliaryNetwork buildAuxiliaryGraphOffline(Network network, Request request, CostFunction costFunction, Parameters parameters) {
+  private static @Nullable AllPairShortestPaths persistentAllPairShortestPaths(@NotNull CompactGraph graph, @NotNull double[] weights,
+                                                                              @NotNull double[] delays, @NotNull Parameters parameters) {
+    ApspArtifactStore store = new ApspArtifactStore(parameters.apspArtifactDirectory);
+    String key = ApspArtifactStore.key(graph, weights, delays);
+    AllPairShortestPaths apsp = store.load(graph, key, parameters.matrixFormat);
+    if (apsp == null) {
+      apsp = AllPairShortestPaths.compute(graph, weights, delays, parameters.parallelShortestPaths, parameters.apspEngine, parameters.matrixFormat);
+      if (apsp != null) {
+        store.save(key, apsp);
+      }
+    }
+    return apsp;
+  }
+
+  /**
+   * What the link weights of a request depend on besides the state of the links: requests agreeing on it share shortest paths within a network epoch
+   */
+  private static final class RoutingConfiguration {
+    @NotNull private final CostFunction costFunction;
+    @NotNull private final Parameters parameters;
+    private final double bandwidth; // the bandwidth shortest paths are computed at, see routingBandwidth
+    private final int chainLength;
+
+    RoutingConfiguration(@NotNull CostFunction costFunction, @NotNull Parameters parameters, double bandwidth, int chainLength) {
+      this.costFunction = costFunction;
+      this.parameters = parameters;
+      this.bandwidth = bandwidth;
+      this.chainLength = chainLength;
+    }
+
+    /**
+     * @return the links without enough residual bandwidth to carry the request through its whole service chain
+     */
+    @NotNull BitSet prunedLinks(@NotNull CompactGraph graph) {
+      double requiredBandwidth = bandwidth * (double) chainLength;
+      BitSet prunedLinks = new BitSet(graph.numLinks());
+      for (int e = 0; e < graph.numLinks(); e++) {
+        if (graph.getLink(e).getResidualBandwidth() < requiredBandwidth) {
+          prunedLinks.set(e);
+        }
+      }
+      return prunedLinks;
+    }
 
-		if (null == network.getAllPairShortestPaths()) {
-
-			network.setPathCosts(new double[network.size()][network.size()]);
-			network.setPathDelays(new double[network.size()][network.size()]);
-			network.setAllPairShortestPaths(new HashMap<>());
-
-			// The original code does not implement the Floyd–Warshall
-			// algorithm, so we simply find shortest path from @src to every
-			// other server in the network
-			for (Server src : network.getServers()) {
-				HashMap<Server, Double> pathCost = new HashMap<>();
-				HashMap<Server, Server> prevNode = new HashMap<>();
-				pathCost.put(src, 0d);
-				ArrayList<Server> queue = new ArrayList<>();
-				ArrayList<Server> searched = new ArrayList<>();
-				queue.add(src);
-				while (!queue.isEmpty()) {
-					// priority queue
-					Server curr = queue.remove(0);
-					for (Server neighbour : curr.getAllNeighbours()) {
-						Link l = curr.getLink(neighbour);
-						// searched nodes and links without enough bandwidth
-						if (searched.contains(neighbour) || l.getResidualBandwidth() < request.getBandwidth()
-								* (double) request.getSC().length) {
-							continue;
-						}
-						Double cost = pathCost.getOrDefault(neighbour, Double.MAX_VALUE);
-						double altCost = pathCost.get(curr)
-								+ costFunction.getCost(l, request.getBandwidth(), parameters);
-						if (altCost < cost) {
-							pathCost.put(neighbour, altCost);
-							prevNode.put(neighbour, curr);
-						}
-						// add to priority queue using insertion sort
-						insertSort(queue, neighbour, pathCost);
-					}
-					searched.add(curr);
-				}
-
-				// At this point, the queue is empty and we have calculated the
-				// shortest path from @src to every other server in the network.
-
-				// update shortest paths
-				for (Server dest : network.getServers()) {
-					if (dest == src) {
-						continue;
-					}
-					if (pathCost.get(dest) == null) {// Auxiliary graph could
-														// not be constructed
-														// (some destinations
-														// are not reachable
-														// with current residual
-														// bandwidth)
-						return null;
-					}
-					Server curr = dest;
-					double delay = 0d;
-					ArrayList<Link> shortestPath = new ArrayList<>();
-					while (prevNode.get(curr) != null) {
-						Link l = curr.getLink(prevNode.get(curr));
-						checkState(l != null);
-						shortestPath.add(0, l);
-						delay += l.getDelay();
-						curr = prevNode.get(curr);
-					}
-					HashMap<Integer, ArrayList<Link>> srcMap = network.getAllPairShortestPaths().getOrDefault(src.getId(),
-							new HashMap<>());
-					srcMap.put(dest.getId(), shortestPath);
-					network.getAllPairShortestPaths().put(src.getId(), srcMap);
-					network.getPathCosts()[src.getId()][dest.getId()] = pathCost.get(dest);
-					network.getPathDelays()[src.getId()][dest.getId()] = delay;
-				}
-			}
-		}
-
-		return new AuxiliaryNetwork(network.getServers(), network.getLinks(), network.getPathCosts(), network.getPathDelays(),
-				network.getAllPairShortestPaths(), request, parameters, costFunction);
-	  }
-
-  private static void insertSort(ArrayList<Server> queue, Server s, HashMap<Server, Double> pathCost) {
-    //    if (queue.isEmpty()) {
-    //      queue.add(s);
-    //    }
-    queue.add(s);
-
-    for (int i = 0; i < queue.size(); i++) {
-      Server q = queue.get(i);
-      if (pathCost.get(s) < pathCost.get(q)) {
-        queue.set(i, s);
-        queue.set(queue.size() - 1, q);
-        break;
+    /**
+     * @return the weight of each link, infinite for the links of @prunedLinks
+     */
+    @NotNull double[] weights(@NotNull CompactGraph graph, @NotNull BitSet prunedLinks) {
+      double[] weights = new double[graph.numLinks()];
+      for (int e = 0; e < graph.numLinks(); e++) {
+        Link l = graph.getLink(e);
+        weights[e] = prunedLinks.get(e) ? Double.POSITIVE_INFINITY : costFunction.getCost(l, bandwidth, parameters);
       }
+      return weights;
+    }
+
+    @NotNull double[] weights(@NotNull CompactGraph graph) {
+      return weights(graph, prunedLinks(graph));
+    }
+
+    @Override public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RoutingConfiguration that = (RoutingConfiguration) o;
+      return costFunction == that.costFunction && parameters == that.parameters && Double.compare(bandwidth, that.bandwidth) == 0
+          && chainLength == that.chainLength;
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(System.identityHashCode(costFunction), System.identityHashCode(parameters), bandwidth, chainLength);
     }
   }
 }
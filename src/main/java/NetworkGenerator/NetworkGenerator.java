@@ -56,7 +56,11 @@ public class NetworkGenerator {
           int id = Integer.parseInt(attrs[0]);
           numOfNodeRead++;
 
-          servers.add(new Server(id));
+          Server server = new Server(id);
+          if (attrs.length >= 4) { // the u and v columns locate the vertex
+            server.setCoordinates(Double.parseDouble(attrs[2]), Double.parseDouble(attrs[3]));
+          }
+          servers.add(server);
         }
 
         if (1 == readStatus) {
@@ -2,6 +2,7 @@ package NetworkGenerator;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Random;
 
 import Network.Link;
 import Network.Network;
@@ -15,10 +16,20 @@ import static com.google.common.base.Preconditions.checkState;
 public class NetworkValueSetter { //sets the parameters of a given network
   private final Network network;
   private final Parameters parameters;
+  private final Random linkRandom; // source of the random link values, or null to use Math.random()
 
   public NetworkValueSetter(Network network, Parameters parameters) {
+    this(network, parameters, null);
+  }
+
+  /**
+   * @param linkRandom the source of the random link capacities, costs and delays, e.g., a seeded one so that the same topology always gets the same link
+   * values; all other values are drawn from Math.random() as usual
+   */
+  public NetworkValueSetter(Network network, Parameters parameters, Random linkRandom) {
     this.network = network;
     this.parameters = parameters;
+    this.linkRandom = linkRandom;
   }
 
   private static double getNormal(double mean, double weight) {
@@ -33,6 +44,10 @@ public class NetworkValueSetter { //sets the parameters of a given network
     return low + Math.random() * (high - low);
   }
 
+  private double getLinkUniform(double low, double high) {
+    return linkRandom == null ? getUniform(low, high) : low + linkRandom.nextDouble() * (high - low);
+  }
+
   public Network getNetwork() {
     return network;
   }
@@ -108,13 +123,13 @@ public class NetworkValueSetter { //sets the parameters of a given network
 
   public void setRandomLinkCapacity(double low, double high) {
     for (Link l : network.getLinks()) {
-      l.setBandwidthCapacity(getUniform(low, high));
+      l.setBandwidthCapacity(getLinkUniform(low, high));
     }
   }
   
   public void setRandomLinkCost(double low, double high) {
 	    for (Link l : network.getLinks()) {
-	      l.setOperationalCost(getUniform(low, high));
+	      l.setOperationalCost(getLinkUniform(low, high));
 	    }
   }
 
@@ -132,7 +147,7 @@ public class NetworkValueSetter { //sets the parameters of a given network
 
   public void setRandomLinkDelay(double low, double high) {
     for (Link l : network.getLinks()) {
-      l.setDelay(getUniform(low, high));
+      l.setDelay(getLinkUniform(low, high));
     }
   }
 
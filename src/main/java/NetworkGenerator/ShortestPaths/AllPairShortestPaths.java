@@ -0,0 +1,191 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import Network.Link;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * All-pair shortest paths of a {@link CompactGraph}: path costs and delays indexed by vertex, and a predecessor matrix.
+ * <p>
+ * The shortest path tree of every source is kept as a row of predecessor links. Paths are only rebuilt from it when asked for, which on a 1000-node network
+ * takes 4 MB instead of a million boxed path lists. Rows can also be recomputed one by one when link weights change (see {@link DynamicShortestPaths}).
+ * The tables are kept as given by their {@link MatrixFormat}. With symmetric distances, the path from v to u is always rebuilt as the reverse of the one
+ * from u to v (u < v), so that it is the path whose cost and delay are stored.
+ */
+public class AllPairShortestPaths implements DistanceOracle {
+  @NotNull private final CompactGraph graph;
+  @NotNull private final DistanceMatrix pathCosts;
+  @NotNull private final DistanceMatrix pathDelays;
+  @NotNull private final IntMatrix predecessorLinks; // predecessorLinks[src][v] is the last link on the shortest path from vertex src to vertex v
+
+  AllPairShortestPaths(@NotNull CompactGraph graph, @NotNull DistanceMatrix pathCosts, @NotNull DistanceMatrix pathDelays,
+                       @NotNull IntMatrix predecessorLinks) {
+    this.graph = graph;
+    this.pathCosts = pathCosts;
+    this.pathDelays = pathDelays;
+    this.predecessorLinks = predecessorLinks;
+  }
+
+  AllPairShortestPaths(@NotNull CompactGraph graph, @NotNull MatrixFormat format) {
+    this(graph, format.newDistanceMatrix(graph.size()), format.newDistanceMatrix(graph.size()), format.newIntMatrix(graph.size()));
+  }
+
+  /**
+   * Run one single-source search per source (see {@link SsspEngine}), keeping the tables on the heap
+   *
+   * @param weights the weight of each link, indexed by link; links with an infinite weight cannot be used
+   * @param delays the delay of each link, indexed by link
+   * @param parallel whether the sources may be searched in parallel; small graphs are always searched sequentially
+   * @return the shortest paths, or null if some server cannot reach some other server
+   */
+  public static @Nullable AllPairShortestPaths compute(@NotNull CompactGraph graph, @NotNull double[] weights, @NotNull double[] delays, boolean parallel) {
+    return compute(graph, weights, delays, parallel, ApspEngine.DIJKSTRA, MatrixFormat.DEFAULT);
+  }
+
+  /**
+   * Compute the shortest paths with @engine, keeping the tables in @format
+   *
+   * @see #compute(CompactGraph, double[], double[], boolean)
+   */
+  public static @Nullable AllPairShortestPaths compute(@NotNull CompactGraph graph, @NotNull double[] weights, @NotNull double[] delays, boolean parallel,
+                                                       @NotNull ApspEngine engine, @NotNull MatrixFormat format) {
+    if (engine.resolve(graph) == ApspEngine.FLOYD_WARSHALL) {
+      return FloydWarshall.compute(graph, weights, delays, parallel, format);
+    }
+    int[] sources = new int[graph.size()];
+    for (int v = 0; v < sources.length; v++) {
+      sources[v] = v;
+    }
+    AllPairShortestPaths apsp = new AllPairShortestPaths(graph, format);
+    return apsp.recompute(sources, weights, delays, parallel) ? apsp : null;
+  }
+
+  /**
+   * @param cost the cost of the shortest path from vertex i to vertex j at cost[i * n + j]
+   * @param delay the delays of these paths, laid out as @cost
+   * @param predecessorLink the last links of these paths, laid out as @cost
+   */
+  static @NotNull AllPairShortestPaths fromTables(@NotNull CompactGraph graph, @NotNull double[] cost, @NotNull double[] delay,
+                                                  @NotNull int[] predecessorLink, @NotNull MatrixFormat format) {
+    int n = graph.size();
+    AllPairShortestPaths apsp = new AllPairShortestPaths(graph, format);
+    for (int src = 0; src < n; src++) {
+      apsp.pathCosts.setRow(src, cost, src * n);
+      apsp.pathDelays.setRow(src, delay, src * n);
+      apsp.predecessorLinks.setRow(src, predecessorLink, src * n);
+    }
+    return apsp;
+  }
+
+  /**
+   * @param format the format the tables of this instance are kept in
+   * @return a copy of the tables, which rows can be recomputed in without changing this instance
+   */
+  @NotNull AllPairShortestPaths copy(@NotNull MatrixFormat format) {
+    int n = graph.size();
+    AllPairShortestPaths copy = new AllPairShortestPaths(graph, format);
+    double[] values = new double[n];
+    int[] links = new int[n];
+    for (int src = 0; src < n; src++) {
+      pathCosts.getRow(src, values);
+      copy.pathCosts.setRow(src, values, 0);
+      pathDelays.getRow(src, values);
+      copy.pathDelays.setRow(src, values, 0);
+      predecessorLinks.getRow(src, links);
+      copy.predecessorLinks.setRow(src, links, 0);
+    }
+    return copy;
+  }
+
+  /**
+   * Recompute the rows of @sources in place, leaving all other rows untouched. Each source writes only its own row, so parallel searches need no
+   * synchronization.
+   *
+   * @return false if one of @sources cannot reach some server, in which case the rows of @sources are left in an undefined state
+   */
+  boolean recompute(@NotNull int[] sources, @NotNull double[] weights, @NotNull double[] delays, boolean parallel) {
+    int n = graph.size();
+    return SourceSearch.run(graph, weights, sources.length, parallel, (i, engine, tree) -> {
+      int src = sources[i];
+      engine.search(src, weights, delays, tree);
+      for (int dest = 0; dest < n; dest++) {
+        if (!tree.isReachable(dest)) { // some destinations are not reachable with current residual bandwidth
+          return false;
+        }
+      }
+      pathCosts.setRow(src, tree.cost, 0);
+      pathDelays.setRow(src, tree.delay, 0);
+      predecessorLinks.setRow(src, tree.predecessorLink, 0);
+      return true;
+    });
+  }
+
+  @NotNull CompactGraph getGraph() {
+    return graph;
+  }
+
+  @NotNull DistanceMatrix getPathCosts() {
+    return pathCosts;
+  }
+
+  @NotNull DistanceMatrix getPathDelays() {
+    return pathDelays;
+  }
+
+  @NotNull IntMatrix getPredecessorLinks() {
+    return predecessorLinks;
+  }
+
+  /**
+   * @return the cost of the shortest path between vertices (not server ids) @src and @dest
+   */
+  double costBetween(int src, int dest) {
+    return pathCosts.get(src, dest);
+  }
+
+  double delayBetween(int src, int dest) {
+    return pathDelays.get(src, dest);
+  }
+
+  boolean isSinglePrecision() {
+    return pathCosts.isSinglePrecision();
+  }
+
+  int predecessorLink(int src, int v) {
+    return predecessorLinks.get(src, v);
+  }
+
+  @Override public double getCost(int srcId, int destId) {
+    return pathCosts.get(graph.indexOf(srcId), graph.indexOf(destId));
+  }
+
+  @Override public double getDelay(int srcId, int destId) {
+    return pathDelays.get(graph.indexOf(srcId), graph.indexOf(destId));
+  }
+
+  @Override public void getCostsAndDelays(int srcId, @NotNull int[] destIds, @NotNull double[] costs, @NotNull double[] delays) {
+    int src = graph.indexOf(srcId);
+    for (int i = 0; i < destIds.length; i++) {
+      int dest = graph.indexOf(destIds[i]);
+      costs[i] = pathCosts.get(src, dest);
+      delays[i] = pathDelays.get(src, dest);
+    }
+  }
+
+  @Override public @NotNull ArrayList<Link> getPath(int srcId, int destId) {
+    if (srcId == destId) {
+      return new ArrayList<>();
+    }
+    int src = graph.indexOf(srcId);
+    int dest = graph.indexOf(destId);
+    if (pathCosts.isSymmetric() && dest < src) {
+      ArrayList<Link> path = graph.tracePath(v -> predecessorLinks.get(dest, v), dest, src);
+      Collections.reverse(path);
+      return path;
+    }
+    return graph.tracePath(v -> predecessorLinks.get(src, v), src, dest);
+  }
+}
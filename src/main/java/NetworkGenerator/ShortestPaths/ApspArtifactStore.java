@@ -0,0 +1,215 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import Simulation.Simulation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * All-pair shortest paths persisted on disk, so that later runs (and other experiment threads) load them instead of computing them again.
+ * <p>
+ * An artifact is named after a SHA-256 digest of everything the shortest paths depend on: the topology (servers and the endpoints of every link, in
+ * order), and the weight and delay of every link. The weights already reflect the cost function, the bandwidth it is evaluated at and the pruned links, so
+ * an artifact can never be used for the wrong network, whichever way its link values were drawn. Artifacts only get reused if the link values repeat,
+ * e.g., with a link value seed (see Parameters.linkValueSeed).
+ * <p>
+ * The file holds a header (magic, version, n and the byte order of the tables, itself always big-endian) followed by the n x n costs, delays and
+ * predecessor links, row by row, in full double precision whatever the {@link MatrixFormat} they were computed with. The tables are written in the native
+ * byte order, and read in the recorded one, so an artifact copied to a machine of the other byte order still loads. It is memory-mapped when loaded, and with {@link MatrixStorage#MAPPED} (and full matrices of doubles) the
+ * loaded shortest paths are served from the mapping without a copy.
+ * Artifacts are written to a temporary file first and then moved in place, so readers never see a partial artifact.
+ */
+public class ApspArtifactStore {
+  private static final int MAGIC = 0x41505350; // "APSP"
+  private static final int VERSION = 3;
+  private static final int HEADER_BYTES = 4 * Integer.BYTES; // magic, version, n and byte order, so that the tables are aligned
+  private static final int BIG_ENDIAN = 0;
+  private static final int LITTLE_ENDIAN = 1;
+  private static final String SUFFIX = ".apsp";
+
+  @NotNull private final Path directory;
+
+  public ApspArtifactStore(@NotNull String directory) {
+    this.directory = Paths.get(directory);
+  }
+
+  /**
+   * @return the name of the artifact of the shortest paths of @graph under @weights and @delays
+   */
+  public static @NotNull String key(@NotNull CompactGraph graph, @NotNull double[] weights, @NotNull double[] delays) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every Java platform implements SHA-256
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * (2 + graph.size() + 2 * graph.numLinks()) + Double.BYTES * 2 * graph.numLinks());
+    buffer.putInt(graph.size()).putInt(graph.numLinks());
+    for (int v = 0; v < graph.size(); v++) {
+      buffer.putInt(graph.getServer(v).getId());
+    }
+    for (int e = 0; e < graph.numLinks(); e++) {
+      buffer.putInt(graph.linkS1(e)).putInt(graph.linkS2(e)).putDouble(weights[e]).putDouble(delays[e]);
+    }
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest(buffer.array())) {
+      key.append(String.format("%02x", b));
+    }
+    return key.toString();
+  }
+
+  /**
+   * @param format how the loaded tables are kept; with {@link MatrixStorage#MAPPED}, full matrices of doubles are read-only mappings of the artifact itself
+   * @return the shortest paths stored under @key, or null if there is no such artifact or it cannot be read
+   */
+  public @Nullable AllPairShortestPaths load(@NotNull CompactGraph graph, @NotNull String key, @NotNull MatrixFormat format) {
+    Path file = directory.resolve(key + SUFFIX);
+    int n = graph.size();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() != fileSize(n)) {
+        Simulation.getLogger().warn(String.format("Ignoring APSP artifact %s of unexpected size %d", file, channel.size()));
+        return null;
+      }
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0L, HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+      if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != n) {
+        Simulation.getLogger().warn(String.format("Ignoring APSP artifact %s with an unexpected header", file));
+        return null;
+      }
+      int byteOrder = header.getInt();
+      if (byteOrder != BIG_ENDIAN && byteOrder != LITTLE_ENDIAN) {
+        Simulation.getLogger().warn(String.format("Ignoring APSP artifact %s with an unknown byte order %d", file, byteOrder));
+        return null;
+      }
+      ByteOrder order = byteOrder == BIG_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+      AllPairShortestPaths mapped = map(graph, channel, FileChannel.MapMode.READ_ONLY, order);
+      if (format.getStorage() == MatrixStorage.MAPPED && !format.isSymmetric() && !format.isSinglePrecision() && order == ByteOrder.nativeOrder()) {
+        return mapped;
+      }
+      AllPairShortestPaths copy = new AllPairShortestPaths(graph, format);
+      copyRows(mapped, copy);
+      return copy;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      Simulation.getLogger().warn(String.format("Cannot read APSP artifact %s: %s", file, e));
+      return null;
+    }
+  }
+
+  /**
+   * Store @apsp under @key; failures are logged and otherwise ignored, the artifact is just computed again next time
+   */
+  public void save(@NotNull String key, @NotNull AllPairShortestPaths apsp) {
+    int n = apsp.getGraph().size();
+    Path file = directory.resolve(key + SUFFIX);
+    Path temporary = null;
+    try {
+      Files.createDirectories(directory);
+      temporary = Files.createTempFile(directory, key, ".tmp");
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_BYTES);
+        header.order(ByteOrder.BIG_ENDIAN).putInt(MAGIC).putInt(VERSION).putInt(n)
+              .putInt(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? BIG_ENDIAN : LITTLE_ENDIAN);
+        header.force();
+        copyRows(apsp, map(apsp.getGraph(), channel, FileChannel.MapMode.READ_WRITE, ByteOrder.nativeOrder()));
+        channel.force(false);
+      }
+      try {
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      Simulation.getLogger().warn(String.format("Cannot write APSP artifact %s: %s", file, e));
+      if (temporary != null) {
+        try {
+          Files.deleteIfExists(temporary);
+        } catch (IOException ignored) {
+          // nothing else to do
+        }
+      }
+    }
+  }
+
+  private static void copyRows(@NotNull AllPairShortestPaths from, @NotNull AllPairShortestPaths to) {
+    int n = from.getGraph().size();
+    double[] row = new double[n];
+    int[] intRow = new int[n];
+    for (int src = 0; src < n; src++) {
+      from.getPathCosts().getRow(src, row);
+      to.getPathCosts().setRow(src, row, 0);
+      from.getPathDelays().getRow(src, row);
+      to.getPathDelays().setRow(src, row, 0);
+      from.getPredecessorLinks().getRow(src, intRow);
+      to.getPredecessorLinks().setRow(src, intRow, 0);
+    }
+  }
+
+  /**
+   * @param order the byte order of the tables
+   * @return shortest paths whose tables are mappings of the sections of the artifact open in @channel
+   */
+  private static @NotNull AllPairShortestPaths map(@NotNull CompactGraph graph, @NotNull FileChannel channel, @NotNull FileChannel.MapMode mode,
+                                                   @NotNull ByteOrder order) throws IOException {
+    int n = graph.size();
+    MatrixStorage.Layout doubleLayout = new MatrixStorage.Layout(n, false, Double.BYTES);
+    MatrixStorage.Layout intLayout = new MatrixStorage.Layout(n, false, Integer.BYTES);
+    long position = HEADER_BYTES;
+    ByteBuffer[] costChunks = mapSection(channel, mode, position, doubleLayout, order);
+    position += sectionBytes(n, Double.BYTES);
+    ByteBuffer[] delayChunks = mapSection(channel, mode, position, doubleLayout, order);
+    position += sectionBytes(n, Double.BYTES);
+    ByteBuffer[] predecessorChunks = mapSection(channel, mode, position, intLayout, order);
+
+    DoubleBuffer[] costs = new DoubleBuffer[costChunks.length];
+    DoubleBuffer[] delays = new DoubleBuffer[delayChunks.length];
+    IntBuffer[] predecessorLinks = new IntBuffer[predecessorChunks.length];
+    for (int c = 0; c < costChunks.length; c++) {
+      costs[c] = costChunks[c].asDoubleBuffer();
+      delays[c] = delayChunks[c].asDoubleBuffer();
+    }
+    for (int c = 0; c < predecessorChunks.length; c++) {
+      predecessorLinks[c] = predecessorChunks[c].asIntBuffer();
+    }
+    return new AllPairShortestPaths(graph, new MatrixStorage.BufferDistanceMatrix(doubleLayout, costs),
+                                    new MatrixStorage.BufferDistanceMatrix(doubleLayout, delays),
+                                    new MatrixStorage.BufferIntMatrix(intLayout, predecessorLinks));
+  }
+
+  /**
+   * Map the n x n elements at @position in chunks of whole rows, as @layout lays them out, in byte order @order
+   */
+  private static @NotNull ByteBuffer[] mapSection(@NotNull FileChannel channel, @NotNull FileChannel.MapMode mode, long position,
+                                                  @NotNull MatrixStorage.Layout layout, @NotNull ByteOrder order) throws IOException {
+    ByteBuffer[] chunks = new ByteBuffer[layout.numChunks()];
+    for (int c = 0; c < chunks.length; c++) {
+      chunks[c] = channel.map(mode, position, layout.chunkBytes(c)).order(order);
+      position += layout.chunkBytes(c);
+    }
+    return chunks;
+  }
+
+  private static long sectionBytes(int n, int elementBytes) {
+    return (long) n * (long) n * (long) elementBytes;
+  }
+
+  private static long fileSize(int n) {
+    return (long) HEADER_BYTES + 2L * sectionBytes(n, Double.BYTES) + sectionBytes(n, Integer.BYTES);
+  }
+}
@@ -0,0 +1,34 @@
+package NetworkGenerator.ShortestPaths;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The algorithms all-pair shortest paths can be computed with
+ */
+public enum ApspEngine {
+  AUTO,
+  DIJKSTRA, // one single-source search per source, with the engine SsspEngine selects for the weights, up to O(n m log n)
+  FLOYD_WARSHALL; // cache-blocked Floyd-Warshall, O(n^3) but branch-light
+
+  // Up to this many servers, Floyd-Warshall keeps up with Dijkstra whatever the density
+  static final int FLOYD_WARSHALL_SMALL_SIZE = 64;
+  // Up to this many servers, Floyd-Warshall wins on dense topologies; beyond it, its n^3 work outgrows n Dijkstra runs
+  static final int FLOYD_WARSHALL_MAX_SIZE = 250;
+  // Arcs per vertex pair (2m / n^2) from which a topology counts as dense. The topologies in data/ have about 4 / n.
+  static final double FLOYD_WARSHALL_MIN_DENSITY = 0.12;
+
+  /**
+   * @return the engine to run on @graph, i.e., this engine unless it is AUTO
+   */
+  @NotNull public ApspEngine resolve(@NotNull CompactGraph graph) {
+    if (this != AUTO) {
+      return this;
+    }
+    int n = graph.size();
+    if (n <= FLOYD_WARSHALL_SMALL_SIZE) {
+      return FLOYD_WARSHALL;
+    }
+    double density = (double) graph.numArcs() / ((double) n * (double) n);
+    return n <= FLOYD_WARSHALL_MAX_SIZE && density >= FLOYD_WARSHALL_MIN_DENSITY ? FLOYD_WARSHALL : DIJKSTRA;
+  }
+}
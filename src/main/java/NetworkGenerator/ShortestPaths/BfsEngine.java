@@ -0,0 +1,64 @@
+package NetworkGenerator.ShortestPaths;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Single-source shortest paths by breadth-first search, O(m) per source. Only correct if all usable links have the same positive weight, e.g., with
+ * {@link Algorithm.CostFunctions.LinCostFunction}: the cost of a vertex is then its hop count times that weight.
+ * <p>
+ * Vertices are settled level by level, so every vertex of a level is reached from all of its parents in the previous level before it is settled, and keeps
+ * the one with the lowest delay, as {@link DijkstraEngine} does.
+ */
+class BfsEngine implements ShortestPathEngine {
+  @NotNull private final CompactGraph graph;
+  @NotNull private final int[] queue;
+
+  BfsEngine(@NotNull CompactGraph graph) {
+    this.graph = graph;
+    this.queue = new int[graph.size()];
+  }
+
+  @Override
+  public void search(int source, @NotNull double[] weights, @NotNull double[] delays, @NotNull ShortestPathTree tree, @Nullable boolean[] isTarget,
+                     int numTargets) {
+    int[] offsets = graph.offsets();
+    int[] neighbours = graph.neighbours();
+    int[] arcLinks = graph.arcLinks();
+    double[] cost = tree.cost;
+    double[] delay = tree.delay;
+    int[] predecessorLink = tree.predecessorLink;
+
+    tree.reset(source);
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = source;
+    int unsettledTargets = numTargets;
+    while (head < tail) {
+      int u = queue[head++];
+      if (isTarget != null && isTarget[u] && --unsettledTargets == 0) {
+        break;
+      }
+      double costU = cost[u];
+      for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+        int e = arcLinks[arc];
+        double w = weights[e];
+        if (w == Double.POSITIVE_INFINITY) {
+          continue;
+        }
+        int v = neighbours[arc];
+        double alt = costU + w;
+        if (cost[v] == Double.POSITIVE_INFINITY) {
+          cost[v] = alt;
+          delay[v] = delay[u] + delays[e];
+          predecessorLink[v] = e;
+          queue[tail++] = v;
+        } else if (alt == cost[v] && delay[u] + delays[e] < delay[v]) { // another parent in the previous level
+          delay[v] = delay[u] + delays[e];
+          predecessorLink[v] = e;
+        }
+      }
+    }
+    SsspEngine.BFS.countSearch();
+  }
+}
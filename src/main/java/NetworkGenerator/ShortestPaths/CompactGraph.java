@@ -0,0 +1,228 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.function.IntUnaryOperator;
+
+import Network.Link;
+import Network.Network;
+import Network.Server;
+import org.jetbrains.annotations.NotNull;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * An int-indexed, compressed sparse row (CSR) view of the physical topology of a {@link Network}
+ * <p>
+ * Servers are numbered 0, ..., n - 1 in the order of the network or in a {@link VertexOrdering}, and links 0, ..., m - 1 in the order of the network. The
+ * arcs leaving vertex v are stored in neighbours[offsets[v]], ..., neighbours[offsets[v + 1] - 1], and arcLinks holds the index of the link each arc runs
+ * over. The view is built once per topology, all per-request state (weights, pruning) is passed to the engines as arrays indexed by link.
+ */
+public class CompactGraph {
+  @NotNull private final Server[] servers;
+  @NotNull private final HashMap<Integer, Integer> indexById = new HashMap<>();
+  @NotNull private final Link[] links;
+  @NotNull private final int[] linkS1; // vertex index of the first endpoint of each link
+  @NotNull private final int[] linkS2;
+  @NotNull private final boolean[] routable; // false for self-loops and parallel links, which have no arcs
+  @NotNull private final int[] offsets;
+  @NotNull private final int[] neighbours;
+  @NotNull private final int[] arcLinks;
+
+  public CompactGraph(@NotNull Network network) {
+    this(network.getServers().toArray(new Server[0]), network.getLinks());
+  }
+
+  /**
+   * @param ordering the order to number the servers in
+   */
+  public CompactGraph(@NotNull Network network, @NotNull VertexOrdering ordering) {
+    this(orderedServers(network, ordering), network.getLinks());
+  }
+
+  private CompactGraph(@NotNull Server[] servers, @NotNull ArrayList<Link> linkList) {
+    this.servers = servers;
+    links = linkList.toArray(new Link[linkList.size()]);
+
+    IdentityHashMap<Server, Integer> indexOf = new IdentityHashMap<>();
+    for (int v = 0; v < servers.length; v++) {
+      indexOf.put(servers[v], v);
+      indexById.put(servers[v].getId(), v);
+    }
+
+    // Servers only keep the first link towards a given neighbour (see Server.addLink), so parallel links are skipped in the same way here.
+    int[] degree = new int[servers.length];
+    routable = new boolean[links.length];
+    linkS1 = new int[links.length];
+    linkS2 = new int[links.length];
+    HashSet<Long> seenPairs = new HashSet<>();
+    for (int e = 0; e < links.length; e++) {
+      Integer u = indexOf.get(links[e].getS1());
+      Integer v = indexOf.get(links[e].getS2());
+      checkState(u != null && v != null, "Link %s is not attached to servers of this network", links[e]);
+      linkS1[e] = u;
+      linkS2[e] = v;
+      if (u.equals(v) || !seenPairs.add(pairKey(u, v))) {
+        continue;
+      }
+      routable[e] = true;
+      degree[u]++;
+      degree[v]++;
+    }
+
+    offsets = new int[servers.length + 1];
+    for (int v = 0; v < servers.length; v++) {
+      offsets[v + 1] = offsets[v] + degree[v];
+    }
+    neighbours = new int[offsets[servers.length]];
+    arcLinks = new int[offsets[servers.length]];
+    int[] next = new int[servers.length];
+    System.arraycopy(offsets, 0, next, 0, servers.length);
+    for (int e = 0; e < links.length; e++) {
+      if (!routable[e]) {
+        continue;
+      }
+      neighbours[next[linkS1[e]]] = linkS2[e];
+      arcLinks[next[linkS1[e]]++] = e;
+      neighbours[next[linkS2[e]]] = linkS1[e];
+      arcLinks[next[linkS2[e]]++] = e;
+    }
+  }
+
+  private static @NotNull Server[] orderedServers(@NotNull Network network, @NotNull VertexOrdering ordering) {
+    ArrayList<Server> serverList = network.getServers();
+    if (ordering == VertexOrdering.NETWORK) {
+      return serverList.toArray(new Server[serverList.size()]);
+    }
+    CompactGraph graph = new CompactGraph(network);
+    Server[] servers = new Server[serverList.size()];
+    int[] order = ordering.order(graph);
+    for (int i = 0; i < order.length; i++) {
+      servers[i] = graph.getServer(order[i]);
+    }
+    return servers;
+  }
+
+  private static long pairKey(int u, int v) {
+    return ((long) Math.min(u, v) << 32) | (long) Math.max(u, v);
+  }
+
+  /**
+   * @return the number of vertices
+   */
+  public int size() {
+    return servers.length;
+  }
+
+  public int numLinks() {
+    return links.length;
+  }
+
+  public int numArcs() {
+    return neighbours.length;
+  }
+
+  @NotNull public Server getServer(int index) {
+    return servers[index];
+  }
+
+  @NotNull public Link getLink(int index) {
+    return links[index];
+  }
+
+  /**
+   * @return the vertex index of the server with id @serverId
+   */
+  public int indexOf(int serverId) {
+    Integer index = indexById.get(serverId);
+    checkArgument(index != null, "Unknown server id %s", serverId);
+    return index;
+  }
+
+  public int indexOf(@NotNull Server server) {
+    return indexOf(server.getId());
+  }
+
+  /**
+   * @return whether link @link is part of the adjacency, i.e., it is neither a self-loop nor parallel to an earlier link
+   */
+  public boolean isRoutable(int link) {
+    return routable[link];
+  }
+
+  /**
+   * @param weights the weight of each link, indexed by link; links with an infinite weight cannot be used
+   * @return whether every vertex can reach every other vertex over usable links
+   */
+  public boolean isConnected(@NotNull double[] weights) {
+    if (servers.length == 0) {
+      return true;
+    }
+    boolean[] reached = new boolean[servers.length];
+    int[] queue = new int[servers.length];
+    int head = 0;
+    int tail = 0;
+    reached[0] = true;
+    queue[tail++] = 0;
+    while (head < tail) {
+      int u = queue[head++];
+      for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+        int v = neighbours[arc];
+        if (!reached[v] && weights[arcLinks[arc]] != Double.POSITIVE_INFINITY) {
+          reached[v] = true;
+          queue[tail++] = v;
+        }
+      }
+    }
+    return tail == servers.length;
+  }
+
+  /**
+   * Follow the predecessor links of a single-source search back from @target
+   *
+   * @param predecessorLink the last link on the shortest path from @source to each vertex
+   * @return the links of the shortest path from @source to @target, in order
+   */
+  @NotNull ArrayList<Link> tracePath(@NotNull IntUnaryOperator predecessorLink, int source, int target) {
+    int hops = 0;
+    for (int v = target; v != source; v = otherEnd(predecessorLink.applyAsInt(v), v)) {
+      hops++;
+    }
+    Link[] path = new Link[hops];
+    for (int v = target; v != source; v = otherEnd(predecessorLink.applyAsInt(v), v)) {
+      path[--hops] = links[predecessorLink.applyAsInt(v)];
+    }
+    return new ArrayList<>(Arrays.asList(path));
+  }
+
+  int linkS1(int link) {
+    return linkS1[link];
+  }
+
+  int linkS2(int link) {
+    return linkS2[link];
+  }
+
+  /**
+   * @return the vertex at the other end of link @link, seen from vertex @v
+   */
+  public int otherEnd(int link, int v) {
+    return linkS1[link] == v ? linkS2[link] : linkS1[link];
+  }
+
+  @NotNull int[] offsets() {
+    return offsets;
+  }
+
+  @NotNull int[] neighbours() {
+    return neighbours;
+  }
+
+  @NotNull int[] arcLinks() {
+    return arcLinks;
+  }
+}
@@ -0,0 +1,480 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.TreeSet;
+
+import Network.Link;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A customizable contraction hierarchy (CCH) of the topology, for many point-to-point queries under the same link weights.
+ * <p>
+ * The hierarchy only depends on the topology and is built once: vertices are eliminated by minimum degree, and eliminating a vertex connects all of its
+ * remaining neighbours. Each vertex thus keeps arcs to the neighbours eliminated after it (its upward arcs), which are all ancestors of the vertex in the
+ * elimination tree. {@link #customize} then gives every arc the shortest path cost between its ends for a set of link weights, in O(sum of the squared upward
+ * degrees), by relaxing each arc (v, w) through every lower vertex u with upward arcs to both, then through every higher vertex, so that every arc costs
+ * exactly its shortest path. A query from s to t runs two upward Dijkstra searches, from s and from t, which only reach ancestors of s and of t; both
+ * stop once they cannot improve on the best meeting vertex found so far, which leaves most of the dense top of the hierarchy unvisited.
+ * <p>
+ * Arcs whose exact cost goes through a higher vertex are never needed by a query, and are left out of the arcs the searches scan.
+ * <p>
+ * Customization keeps the lower delay between paths of equal cost through an arc, and a query between meeting vertices of equal cost, so that the path a
+ * query returns has the lowest delay among shortest paths, as long as links weigh more than zero. The cost of a shortcut is the sum of its two halves,
+ * which may round differently from the sum {@link DijkstraEngine} accumulates along the same path.
+ */
+public class ContractionHierarchy implements DistanceOracle {
+  @NotNull private final CompactGraph graph;
+  @NotNull private final int[] rank; // position of each vertex in the elimination order
+  @NotNull private final int[] upOffsets; // the upward arcs of vertex v are upOffsets[v], ..., upOffsets[v + 1] - 1
+  @NotNull private final int[] upHeads; // by increasing rank
+  @NotNull private final int[] arcTails;
+  @NotNull private final double[] arcCost;
+  @NotNull private final double[] arcDelay;
+  @NotNull private final int[] arcLink; // the link an arc stands for, or -1 for a shortcut
+  @NotNull private final int[] arcVia; // the vertex a shortcut goes through (lower or higher than its ends), or -1
+  // the upward arcs queries search, i.e., without those whose shortest path goes through a higher vertex: the arcs of vertex v are searchOffsets[v], ...,
+  // searchOffsets[v + 1] - 1 in searchArcs
+  @NotNull private final int[] searchOffsets;
+  @NotNull private final int[] searchArcs;
+  @Nullable private double[] weights; // the link weights of the last customization
+  @Nullable private double[] delays;
+
+  @NotNull private final UpwardSearch forward;
+  @NotNull private final UpwardSearch backward;
+
+  // the last query, as an auxiliary graph reads the cost, the delay and the path of the same pair one after the other
+  private int lastSrc = -1;
+  private int lastDest = -1;
+  private double lastCost;
+  private double lastDelay;
+  @NotNull private int[] lastHops = new int[0]; // the vertices of the path in the hierarchy, from src through the meeting vertex to dest, or none
+
+  private long customizations = 0;
+  private long queries = 0;
+
+  public ContractionHierarchy(@NotNull CompactGraph graph) {
+    this.graph = graph;
+    int n = graph.size();
+    ArrayList<HashSet<Integer>> adjacency = new ArrayList<>(n);
+    for (int v = 0; v < n; v++) {
+      adjacency.add(new HashSet<>());
+    }
+    int[] offsets = graph.offsets();
+    int[] neighbours = graph.neighbours();
+    for (int v = 0; v < n; v++) {
+      for (int arc = offsets[v]; arc < offsets[v + 1]; arc++) {
+        adjacency.get(v).add(neighbours[arc]);
+      }
+    }
+
+    // minimum degree elimination, the fill-in of each step gives the upward arcs
+    rank = new int[n];
+    int[][] up = new int[n][];
+    TreeSet<Long> byDegree = new TreeSet<>();
+    for (int v = 0; v < n; v++) {
+      byDegree.add(degreeKey(adjacency.get(v).size(), v));
+    }
+    for (int r = 0; r < n; r++) {
+      int v = (int) (byDegree.pollFirst() & 0xffffffffL);
+      rank[v] = r;
+      up[v] = adjacency.get(v).stream().mapToInt(Integer::intValue).toArray();
+      for (int a : up[v]) {
+        HashSet<Integer> neighboursOfA = adjacency.get(a);
+        byDegree.remove(degreeKey(neighboursOfA.size(), a));
+        neighboursOfA.remove(v);
+        for (int b : up[v]) {
+          if (b != a) {
+            neighboursOfA.add(b);
+          }
+        }
+        byDegree.add(degreeKey(neighboursOfA.size(), a));
+      }
+      adjacency.set(v, null);
+    }
+
+    upOffsets = new int[n + 1];
+    for (int v = 0; v < n; v++) {
+      upOffsets[v + 1] = upOffsets[v] + up[v].length;
+    }
+    int numArcs = upOffsets[n];
+    upHeads = new int[numArcs];
+    arcTails = new int[numArcs];
+    for (int v = 0; v < n; v++) {
+      Integer[] heads = Arrays.stream(up[v]).boxed().toArray(Integer[]::new);
+      Arrays.sort(heads, (a, b) -> Integer.compare(rank[a], rank[b]));
+      for (int i = 0; i < heads.length; i++) {
+        upHeads[upOffsets[v] + i] = heads[i];
+        arcTails[upOffsets[v] + i] = v;
+      }
+    }
+    arcCost = new double[numArcs];
+    arcDelay = new double[numArcs];
+    arcLink = new int[numArcs];
+    arcVia = new int[numArcs];
+    searchOffsets = new int[n + 1];
+    searchArcs = new int[numArcs];
+
+    forward = new UpwardSearch(n);
+    backward = new UpwardSearch(n);
+  }
+
+  private static long degreeKey(int degree, int v) {
+    return ((long) degree << 32) | (long) v;
+  }
+
+  /**
+   * @return the number of arcs of the hierarchy, i.e., the routable links plus the shortcuts
+   */
+  public int numArcs() {
+    return upHeads.length;
+  }
+
+  /**
+   * @return the number of times the arc costs were recomputed
+   */
+  public synchronized long getCustomizations() {
+    return customizations;
+  }
+
+  public synchronized long getQueries() {
+    return queries;
+  }
+
+  /**
+   * Give every arc the cost of the shortest path between its ends. Does nothing if the weights and delays are those of the last customization.
+   *
+   * @param newWeights the weight of each link, indexed by link; links with an infinite weight cannot be used
+   * @param newDelays the delay of each link, indexed by link
+   */
+  public synchronized void customize(@NotNull double[] newWeights, @NotNull double[] newDelays) {
+    checkArgument(newWeights.length == graph.numLinks() && newDelays.length == graph.numLinks(), "Expected %s link weights and delays",
+                  graph.numLinks());
+    if (Arrays.equals(weights, newWeights) && Arrays.equals(delays, newDelays)) {
+      return;
+    }
+    Arrays.fill(arcCost, Double.POSITIVE_INFINITY);
+    Arrays.fill(arcDelay, Double.POSITIVE_INFINITY);
+    Arrays.fill(arcLink, -1);
+    Arrays.fill(arcVia, -1);
+    for (int e = 0; e < graph.numLinks(); e++) {
+      double w = newWeights[e];
+      checkArgument(w >= 0d, "Link weights cannot be negative or NaN: %s", w);
+      if (!graph.isRoutable(e) || w == Double.POSITIVE_INFINITY) {
+        continue;
+      }
+      int arc = arc(graph.linkS1(e), graph.linkS2(e));
+      arcCost[arc] = w;
+      arcDelay[arc] = newDelays[e];
+      arcLink[arc] = e;
+    }
+
+    // in increasing rank, so that the arcs of u are final before they are used
+    int[] order = new int[graph.size()];
+    for (int v = 0; v < graph.size(); v++) {
+      order[rank[v]] = v;
+    }
+    for (int u : order) {
+      for (int i = upOffsets[u]; i < upOffsets[u + 1]; i++) {
+        if (arcCost[i] == Double.POSITIVE_INFINITY) {
+          continue;
+        }
+        for (int j = i + 1; j < upOffsets[u + 1]; j++) {
+          if (arcCost[j] == Double.POSITIVE_INFINITY) {
+            continue;
+          }
+          improve(arc(upHeads[i], upHeads[j]), arcCost[i] + arcCost[j], arcDelay[i] + arcDelay[j], u);
+        }
+      }
+    }
+    // then in decreasing rank, so that the arcs between the upward neighbours of u are exact before they are used: every arc becomes exact, which lets
+    // queries skip most of the top of the hierarchy
+    for (int r = order.length - 1; r >= 0; r--) {
+      int u = order[r];
+      for (int i = upOffsets[u]; i < upOffsets[u + 1]; i++) {
+        for (int j = i + 1; j < upOffsets[u + 1]; j++) {
+          int arc = arc(upHeads[i], upHeads[j]);
+          if (arcCost[arc] == Double.POSITIVE_INFINITY) {
+            continue;
+          }
+          improve(i, arcCost[j] + arcCost[arc], arcDelay[j] + arcDelay[arc], upHeads[j]);
+          improve(j, arcCost[i] + arcCost[arc], arcDelay[i] + arcDelay[arc], upHeads[i]);
+        }
+      }
+    }
+    int numSearched = 0;
+    for (int v = 0; v < graph.size(); v++) {
+      searchOffsets[v] = numSearched;
+      for (int arc = upOffsets[v]; arc < upOffsets[v + 1]; arc++) {
+        if (arcCost[arc] != Double.POSITIVE_INFINITY && (arcVia[arc] == -1 || rank[arcVia[arc]] < rank[v])) {
+          searchArcs[numSearched++] = arc;
+        }
+      }
+    }
+    searchOffsets[graph.size()] = numSearched;
+    weights = newWeights.clone();
+    delays = newDelays.clone();
+    lastSrc = -1;
+    ++customizations;
+  }
+
+  private void improve(int arc, double cost, double delay, int via) {
+    if (cost < arcCost[arc] || (cost == arcCost[arc] && delay < arcDelay[arc])) {
+      arcCost[arc] = cost;
+      arcDelay[arc] = delay;
+      arcLink[arc] = -1;
+      arcVia[arc] = via;
+    }
+  }
+
+  /**
+   * @return the arc between vertices @u and @v, which must be adjacent in the hierarchy
+   */
+  private int arc(int u, int v) {
+    int tail = rank[u] < rank[v] ? u : v;
+    int head = tail == u ? v : u;
+    int low = upOffsets[tail];
+    int high = upOffsets[tail + 1] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = Integer.compare(rank[upHeads[mid]], rank[head]);
+      if (cmp == 0) {
+        return mid;
+      } else if (cmp < 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    throw new IllegalStateException("Vertices " + u + " and " + v + " are not adjacent in the hierarchy");
+  }
+
+  /**
+   * Upward search of one direction of a query
+   */
+  private class UpwardSearch {
+    @NotNull final double[] cost; // infinite for vertices not reached, between queries too
+    @NotNull final double[] delay;
+    @NotNull final int[] predecessorArc;
+    @NotNull final IndexedMinHeap heap;
+    @NotNull final int[] reached;
+    int numReached = 0;
+
+    UpwardSearch(int n) {
+      cost = new double[n];
+      delay = new double[n];
+      predecessorArc = new int[n];
+      heap = new IndexedMinHeap(n);
+      reached = new int[n];
+      Arrays.fill(cost, Double.POSITIVE_INFINITY);
+    }
+
+    void start(int source) {
+      cost[source] = 0d;
+      delay[source] = 0d;
+      predecessorArc[source] = -1;
+      reached[numReached++] = source;
+      heap.insertOrDecrease(source, 0d);
+    }
+
+    /**
+     * Settle the closest vertex and relax its upward arcs
+     *
+     * @return the vertex, or -1 if no vertex is closer than @bound
+     */
+    int step(double bound) {
+      if (heap.isEmpty()) {
+        return -1;
+      }
+      int u = heap.poll();
+      if (cost[u] > bound) {
+        heap.clear();
+        return -1;
+      }
+      for (int i = searchOffsets[u]; i < searchOffsets[u + 1]; i++) {
+        int arc = searchArcs[i];
+        int v = upHeads[arc];
+        double alt = cost[u] + arcCost[arc];
+        if (alt < cost[v]) {
+          if (cost[v] == Double.POSITIVE_INFINITY) {
+            reached[numReached++] = v;
+          }
+          cost[v] = alt;
+          delay[v] = delay[u] + arcDelay[arc];
+          predecessorArc[v] = arc;
+          heap.insertOrDecrease(v, alt);
+        } else if (alt == cost[v] && alt != Double.POSITIVE_INFINITY && delay[u] + arcDelay[arc] < delay[v]) {
+          delay[v] = delay[u] + arcDelay[arc];
+          predecessorArc[v] = arc;
+        }
+      }
+      return u;
+    }
+
+    void clear() {
+      for (int i = 0; i < numReached; i++) {
+        cost[reached[i]] = Double.POSITIVE_INFINITY;
+      }
+      numReached = 0;
+      heap.clear();
+    }
+  }
+
+  /**
+   * Alternate between the upward searches from @src and from @dest, until neither can find a meeting vertex better than the best one so far. As every
+   * arc is exact, both searches meet early and the dense top of the hierarchy is mostly skipped.
+   *
+   * @return the vertex where the shortest path between @src and @dest is the highest, or -1 if @dest cannot be reached
+   */
+  private int meet(int src, int dest) {
+    if (weights == null) {
+      throw new IllegalStateException("The hierarchy has not been customized");
+    }
+    ++queries;
+    forward.start(src);
+    backward.start(dest);
+    int best = -1;
+    double bestCost = Double.POSITIVE_INFINITY;
+    double bestDelay = Double.POSITIVE_INFINITY;
+    boolean forwardDone = false;
+    boolean backwardDone = false;
+    while (!forwardDone || !backwardDone) {
+      for (int direction = 0; direction < 2; direction++) {
+        if (direction == 0 ? forwardDone : backwardDone) {
+          continue;
+        }
+        int u = (direction == 0 ? forward : backward).step(bestCost);
+        if (u == -1) {
+          forwardDone |= direction == 0;
+          backwardDone |= direction == 1;
+          continue;
+        }
+        double cost = forward.cost[u] + backward.cost[u];
+        double delay = forward.delay[u] + backward.delay[u];
+        if (cost < bestCost || (cost == bestCost && cost != Double.POSITIVE_INFINITY && delay < bestDelay)) {
+          best = u;
+          bestCost = cost;
+          bestDelay = delay;
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Run the query between @src and @dest, unless it was the last one, and keep its cost, delay and path in the hierarchy
+   */
+  private void query(int src, int dest) {
+    if (src == lastSrc && dest == lastDest) {
+      return;
+    }
+    int meet = meet(src, dest);
+    if (meet == -1) {
+      lastCost = Double.POSITIVE_INFINITY;
+      lastDelay = Double.POSITIVE_INFINITY;
+      lastHops = new int[0];
+    } else {
+      lastCost = forward.cost[meet] + backward.cost[meet];
+      lastDelay = forward.delay[meet] + backward.delay[meet];
+      int up = 0;
+      for (int v = meet; v != src; v = arcTails[forward.predecessorArc[v]]) {
+        ++up;
+      }
+      int down = 0;
+      for (int v = meet; v != dest; v = arcTails[backward.predecessorArc[v]]) {
+        ++down;
+      }
+      lastHops = new int[up + down + 1];
+      int i = up;
+      for (int v = meet; v != src; v = arcTails[forward.predecessorArc[v]]) {
+        lastHops[i--] = v;
+      }
+      lastHops[0] = src;
+      i = up;
+      for (int v = meet; v != dest; v = arcTails[backward.predecessorArc[v]]) {
+        lastHops[++i] = arcTails[backward.predecessorArc[v]];
+      }
+    }
+    forward.clear();
+    backward.clear();
+    lastSrc = src;
+    lastDest = dest;
+  }
+
+  @Override public synchronized double getCost(int srcId, int destId) {
+    query(graph.indexOf(srcId), graph.indexOf(destId));
+    return lastCost;
+  }
+
+  @Override public synchronized double getDelay(int srcId, int destId) {
+    query(graph.indexOf(srcId), graph.indexOf(destId));
+    return lastDelay;
+  }
+
+  /**
+   * Run the queries from @srcId to all of @destIds under one lock, so that threads reading other rows wait once per row rather than once per entry
+   */
+  @Override public synchronized void getCostsAndDelays(int srcId, @NotNull int[] destIds, @NotNull double[] costs, @NotNull double[] delays) {
+    int src = graph.indexOf(srcId);
+    for (int i = 0; i < destIds.length; i++) {
+      query(src, graph.indexOf(destIds[i]));
+      costs[i] = lastCost;
+      delays[i] = lastDelay;
+    }
+  }
+
+  /**
+   * @return the links of a shortest path from @srcId to @destId, in order, or an empty list if @destId cannot be reached
+   */
+  @Override public synchronized @NotNull ArrayList<Link> getPath(int srcId, int destId) {
+    query(graph.indexOf(srcId), graph.indexOf(destId));
+    ArrayList<Link> path = new ArrayList<>();
+    for (int i = 0; i + 1 < lastHops.length; i++) { // up from src to the meeting vertex, then down to dest
+      unpack(lastHops[i], lastHops[i + 1], path);
+    }
+    return path;
+  }
+
+  /**
+   * Append the links of the arc from @from to @to, in order, to @path
+   */
+  private void unpack(int from, int to, @NotNull ArrayList<Link> path) {
+    int[] stack = new int[64];
+    int size = 0;
+    int expansions = 0; // a simple path of k links unpacks in k - 1 expansions
+    stack[size++] = from;
+    stack[size++] = to;
+    while (size > 0) {
+      int b = stack[--size];
+      int a = stack[--size];
+      int arc = arc(a, b);
+      if (arcLink[arc] != -1) {
+        path.add(graph.getLink(arcLink[arc]));
+        continue;
+      }
+      checkState(arcVia[arc] != -1 && ++expansions < graph.size(), "Arc (%s, %s) has no simple path", a, b);
+      if (size + 4 > stack.length) {
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      }
+      // (a, via) is unpacked before (via, b)
+      stack[size++] = arcVia[arc];
+      stack[size++] = b;
+      stack[size++] = a;
+      stack[size++] = arcVia[arc];
+    }
+  }
+
+  @Override public synchronized String toString() {
+    return "ContractionHierarchy{" +
+        "vertices=" + graph.size() +
+        ", arcs=" + upHeads.length +
+        ", customizations=" + customizations +
+        ", queries=" + queries +
+        '}';
+  }
+}
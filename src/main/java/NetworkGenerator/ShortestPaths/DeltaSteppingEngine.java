@@ -0,0 +1,239 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Single-source shortest paths with delta-stepping (Meyer and Sanders), which splits one search across the cores of a ForkJoin pool. Runs on any
+ * non-negative weights.
+ * <p>
+ * Tentative costs are kept in buckets of width delta. The lowest non-empty bucket is emptied in phases: the light arcs (weight at most delta) of all its
+ * vertices are relaxed together, possibly refilling the bucket, until it stays empty; then the heavy arcs of the vertices it held are relaxed once. The
+ * vertices of a phase are split among tasks, and a relaxation only locks its head vertex. A vertex is pushed again whenever its cost or its delay drops, so
+ * as long as links weigh more than zero it ends with the shortest path with the lowest delay, as {@link DijkstraEngine} does (path costs that only differ
+ * by rounding may break ties differently). Phases with few vertices are relaxed by the calling thread.
+ * <p>
+ * Tentative costs lie within the largest weight plus delta of the lowest bucket, so a ring of buckets covers them; delta is widened if the ring would have
+ * more than {@link #MAX_BUCKETS} buckets.
+ */
+public class DeltaSteppingEngine implements ShortestPathEngine {
+  static final int MAX_BUCKETS = 1 << 16;
+  // Phases with more vertices than this are split among tasks of this many vertices
+  static final int VERTICES_PER_TASK = 256;
+  private static final int LOCK_STRIPES = 1 << 10;
+
+  @NotNull private final CompactGraph graph;
+  private final double bucketWidth;
+  @NotNull private final Object[] locks = new Object[LOCK_STRIPES];
+  @NotNull private final int[] drained; // the id of the last phase that took each vertex out of its bucket
+  @NotNull private final int[] emptied; // the number of the last emptied bucket each vertex was taken out of
+  @NotNull private int[] frontier; // the vertices of the current phase, and their costs and delays when it started
+  @NotNull private double[] frontierCost;
+  @NotNull private double[] frontierDelay;
+
+  /**
+   * @param bucketWidth the width delta of the buckets, or NaN to use the largest link weight divided by the average degree
+   */
+  public DeltaSteppingEngine(@NotNull CompactGraph graph, double bucketWidth) {
+    this.graph = graph;
+    this.bucketWidth = bucketWidth;
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new Object();
+    }
+    this.drained = new int[graph.size()];
+    this.emptied = new int[graph.size()];
+    this.frontier = new int[16];
+    this.frontierCost = new double[16];
+    this.frontierDelay = new double[16];
+  }
+
+  @Override
+  public void search(int source, @NotNull double[] weights, @NotNull double[] delays, @NotNull ShortestPathTree tree, @Nullable boolean[] isTarget,
+                     int numTargets) {
+    double maxWeight = 0d;
+    for (int e = 0; e < weights.length; e++) {
+      if (graph.isRoutable(e) && weights[e] != Double.POSITIVE_INFINITY) {
+        maxWeight = Math.max(maxWeight, weights[e]);
+      }
+    }
+    double delta = Double.isNaN(bucketWidth) ? maxWeight * (double) graph.size() / (double) Math.max(1, graph.numArcs()) : bucketWidth;
+    delta = Math.max(delta, maxWeight / (double) (MAX_BUCKETS - 2));
+    if (!(delta > 0d)) { // every usable link weighs zero
+      delta = 1d;
+    }
+    IntList[] buckets = new IntList[(int) Math.min(MAX_BUCKETS, Math.ceil(maxWeight / delta) + 2d)];
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new IntList();
+    }
+
+    tree.reset(source);
+    Arrays.fill(drained, 0);
+    Arrays.fill(emptied, 0);
+    buckets[0].add(source);
+    long pending = 1L; // entries in all buckets, stale ones included
+    int phase = 0;
+    int numEmptied = 0; // non-empty buckets so far
+    int unsettledTargets = numTargets;
+    IntList settled = new IntList(); // the vertices taken out of the current bucket
+    for (long current = 0L; pending > 0L && (isTarget == null || unsettledTargets > 0); current++) {
+      IntList bucket = buckets[(int) (current % buckets.length)];
+      if (bucket.size == 0) {
+        continue;
+      }
+      settled.size = 0;
+      ++numEmptied;
+      while (bucket.size > 0) {
+        ++phase;
+        int size = 0;
+        for (int i = 0; i < bucket.size; i++) {
+          int v = bucket.data[i];
+          if (bucketOf(tree.cost[v], delta) == current && drained[v] != phase) { // skip the entries of vertices whose cost dropped since
+            drained[v] = phase;
+            size = addToFrontier(v, tree, size);
+            if (emptied[v] != numEmptied) {
+              emptied[v] = numEmptied;
+              settled.add(v);
+            }
+          }
+        }
+        pending -= bucket.size;
+        bucket.size = 0;
+        pending += relax(size, true, delta, weights, delays, tree, buckets);
+      }
+      int size = 0;
+      for (int i = 0; i < settled.size; i++) {
+        size = addToFrontier(settled.data[i], tree, size);
+        if (isTarget != null && isTarget[settled.data[i]]) {
+          --unsettledTargets;
+        }
+      }
+      pending += relax(size, false, delta, weights, delays, tree, buckets);
+    }
+    SsspEngine.DELTA_STEPPING.countSearch();
+  }
+
+  private static long bucketOf(double cost, double delta) {
+    return (long) Math.floor(cost / delta);
+  }
+
+  private int addToFrontier(int v, @NotNull ShortestPathTree tree, int size) {
+    if (size == frontier.length) {
+      frontier = Arrays.copyOf(frontier, 2 * size);
+      frontierCost = Arrays.copyOf(frontierCost, 2 * size);
+      frontierDelay = Arrays.copyOf(frontierDelay, 2 * size);
+    }
+    frontier[size] = v;
+    frontierCost[size] = tree.cost[v];
+    frontierDelay[size] = tree.delay[v];
+    return size + 1;
+  }
+
+  /**
+   * Relax the light or the heavy arcs of the first @size vertices of the frontier, and push the vertices whose cost or delay dropped
+   *
+   * @return the number of entries pushed
+   */
+  private int relax(int size, boolean light, double delta, @NotNull double[] weights, @NotNull double[] delays, @NotNull ShortestPathTree tree,
+                    @NotNull IntList[] buckets) {
+    Relaxation relaxation = new Relaxation(light, delta, weights, delays, tree, 0, size);
+    if (size > VERTICES_PER_TASK) {
+      relaxation.invoke();
+    } else {
+      relaxation.relaxRange();
+    }
+    IntList improved = relaxation.improved;
+    for (int i = 0; i < improved.size; i++) {
+      int v = improved.data[i];
+      buckets[(int) (bucketOf(tree.cost[v], delta) % buckets.length)].add(v);
+    }
+    return improved.size;
+  }
+
+  private class Relaxation extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean light;
+    private final double delta;
+    @NotNull private final double[] weights;
+    @NotNull private final double[] delays;
+    @NotNull private final ShortestPathTree tree;
+    private final int from;
+    private final int to;
+    @NotNull final IntList improved = new IntList(); // may hold a vertex more than once
+
+    Relaxation(boolean light, double delta, @NotNull double[] weights, @NotNull double[] delays, @NotNull ShortestPathTree tree, int from, int to) {
+      this.light = light;
+      this.delta = delta;
+      this.weights = weights;
+      this.delays = delays;
+      this.tree = tree;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override protected void compute() {
+      if (to - from <= VERTICES_PER_TASK) {
+        relaxRange();
+      } else {
+        int mid = (from + to) >>> 1;
+        Relaxation left = new Relaxation(light, delta, weights, delays, tree, from, mid);
+        Relaxation right = new Relaxation(light, delta, weights, delays, tree, mid, to);
+        invokeAll(left, right);
+        improved.addAll(left.improved);
+        improved.addAll(right.improved);
+      }
+    }
+
+    void relaxRange() {
+      int[] offsets = graph.offsets();
+      int[] neighbours = graph.neighbours();
+      int[] arcLinks = graph.arcLinks();
+      for (int i = from; i < to; i++) {
+        int u = frontier[i];
+        for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+          int e = arcLinks[arc];
+          double w = weights[e];
+          if (w == Double.POSITIVE_INFINITY || (w <= delta) != light) {
+            continue;
+          }
+          int v = neighbours[arc];
+          double alt = frontierCost[i] + w;
+          double altDelay = frontierDelay[i] + delays[e];
+          synchronized (locks[v & (LOCK_STRIPES - 1)]) {
+            if (alt < tree.cost[v] || (alt == tree.cost[v] && altDelay < tree.delay[v])) {
+              tree.cost[v] = alt;
+              tree.delay[v] = altDelay;
+              tree.predecessorLink[v] = e;
+            } else {
+              continue;
+            }
+          }
+          improved.add(v);
+        }
+      }
+    }
+  }
+
+  private static class IntList {
+    @NotNull int[] data = new int[8];
+    int size = 0;
+
+    void add(int value) {
+      if (size == data.length) {
+        data = Arrays.copyOf(data, 2 * size);
+      }
+      data[size++] = value;
+    }
+
+    void addAll(@NotNull IntList other) {
+      if (size + other.size > data.length) {
+        data = Arrays.copyOf(data, Math.max(2 * data.length, size + other.size));
+      }
+      System.arraycopy(other.data, 0, data, size, other.size);
+      size += other.size;
+    }
+  }
+}
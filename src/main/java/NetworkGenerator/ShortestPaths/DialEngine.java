@@ -0,0 +1,100 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Single-source shortest paths with Dial's buckets, O(m + D) per source where D is the largest cost in quanta. Only correct if every usable link weight is
+ * a multiple k * quantum of a power-of-two quantum with 1 <= k <= maxMultiple: path costs are then sums of such multiples, which doubles hold exactly, so
+ * the vertices are settled in exactly the order of their costs.
+ * <p>
+ * Tentative costs lie within maxMultiple quanta of the smallest unsettled one, so maxMultiple + 1 buckets, used as a ring, hold all of them. A vertex is
+ * pushed again whenever its cost drops and the stale entries are skipped. As every link spans at least one quantum, all parents of a vertex are settled
+ * before it, so it keeps the shortest path with the lowest delay, as {@link DijkstraEngine} does.
+ */
+class DialEngine implements ShortestPathEngine {
+  @NotNull private final CompactGraph graph;
+  private final double quantum;
+  @NotNull private final int[] bucketHead; // the last entry pushed into each bucket, or -1
+  @NotNull private final int[] entryVertex; // entries are pushed at most once per arc, plus the source
+  @NotNull private final int[] entryNext;
+  @NotNull private final boolean[] settled;
+
+  /**
+   * @param quantum a power of two that divides every usable link weight
+   * @param maxMultiple the largest weight in quanta
+   */
+  DialEngine(@NotNull CompactGraph graph, double quantum, int maxMultiple) {
+    this.graph = graph;
+    this.quantum = quantum;
+    this.bucketHead = new int[maxMultiple + 1];
+    this.entryVertex = new int[graph.numArcs() + 1];
+    this.entryNext = new int[graph.numArcs() + 1];
+    this.settled = new boolean[graph.size()];
+  }
+
+  @Override
+  public void search(int source, @NotNull double[] weights, @NotNull double[] delays, @NotNull ShortestPathTree tree, @Nullable boolean[] isTarget,
+                     int numTargets) {
+    int[] offsets = graph.offsets();
+    int[] neighbours = graph.neighbours();
+    int[] arcLinks = graph.arcLinks();
+    double[] cost = tree.cost;
+    double[] delay = tree.delay;
+    int[] predecessorLink = tree.predecessorLink;
+    int numBuckets = bucketHead.length;
+
+    tree.reset(source);
+    Arrays.fill(bucketHead, -1);
+    Arrays.fill(settled, false);
+    int numEntries = 0;
+    entryVertex[numEntries] = source;
+    entryNext[numEntries] = -1;
+    bucketHead[0] = numEntries++;
+    int pending = 1;
+    int unsettledTargets = numTargets;
+    search:
+    for (long level = 0L; pending > 0; level++) {
+      int bucket = (int) (level % numBuckets);
+      double levelCost = (double) level * quantum;
+      while (bucketHead[bucket] != -1) {
+        int entry = bucketHead[bucket];
+        bucketHead[bucket] = entryNext[entry];
+        --pending;
+        int u = entryVertex[entry];
+        if (settled[u] || cost[u] != levelCost) { // stale entry, u was pushed again with a lower cost
+          continue;
+        }
+        settled[u] = true;
+        if (isTarget != null && isTarget[u] && --unsettledTargets == 0) {
+          break search;
+        }
+        for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+          int e = arcLinks[arc];
+          double w = weights[e];
+          if (w == Double.POSITIVE_INFINITY) {
+            continue;
+          }
+          int v = neighbours[arc];
+          double alt = levelCost + w;
+          if (alt < cost[v]) {
+            cost[v] = alt;
+            delay[v] = delay[u] + delays[e];
+            predecessorLink[v] = e;
+            int target = (int) ((long) (alt / quantum) % numBuckets);
+            entryVertex[numEntries] = v;
+            entryNext[numEntries] = bucketHead[target];
+            bucketHead[target] = numEntries++;
+            ++pending;
+          } else if (alt == cost[v] && delay[u] + delays[e] < delay[v]) { // as fast, but with a lower delay
+            delay[v] = delay[u] + delays[e];
+            predecessorLink[v] = e;
+          }
+        }
+      }
+    }
+    SsspEngine.DIAL.countSearch();
+  }
+}
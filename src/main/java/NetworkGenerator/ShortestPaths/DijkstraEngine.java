@@ -0,0 +1,59 @@
+package NetworkGenerator.ShortestPaths;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Single-source shortest paths with a binary heap over a {@link CompactGraph}, O(m log n) per source. Runs on any non-negative weights.
+ */
+public class DijkstraEngine implements ShortestPathEngine {
+  @NotNull private final CompactGraph graph;
+  @NotNull private final IndexedMinHeap heap;
+
+  public DijkstraEngine(@NotNull CompactGraph graph) {
+    this.graph = graph;
+    this.heap = new IndexedMinHeap(graph.size());
+  }
+
+  @Override
+  public void search(int source, @NotNull double[] weights, @NotNull double[] delays, @NotNull ShortestPathTree tree, @Nullable boolean[] isTarget,
+                     int numTargets) {
+    int[] offsets = graph.offsets();
+    int[] neighbours = graph.neighbours();
+    int[] arcLinks = graph.arcLinks();
+    double[] cost = tree.cost;
+    double[] delay = tree.delay;
+    int[] predecessorLink = tree.predecessorLink;
+
+    tree.reset(source);
+    heap.clear();
+    heap.insertOrDecrease(source, 0d);
+    int unsettledTargets = numTargets;
+    while (!heap.isEmpty()) {
+      int u = heap.poll();
+      if (isTarget != null && isTarget[u] && --unsettledTargets == 0) {
+        break;
+      }
+      double costU = cost[u];
+      for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+        int e = arcLinks[arc];
+        double w = weights[e];
+        if (w == Double.POSITIVE_INFINITY) {
+          continue;
+        }
+        int v = neighbours[arc];
+        double alt = costU + w;
+        if (alt < cost[v]) {
+          cost[v] = alt;
+          delay[v] = delay[u] + delays[e];
+          predecessorLink[v] = e;
+          heap.insertOrDecrease(v, alt);
+        } else if (alt == cost[v] && delay[u] + delays[e] < delay[v]) { // as fast, but with a lower delay
+          delay[v] = delay[u] + delays[e];
+          predecessorLink[v] = e;
+        }
+      }
+    }
+    SsspEngine.DIJKSTRA.countSearch();
+  }
+}
@@ -0,0 +1,34 @@
+package NetworkGenerator.ShortestPaths;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An n x n matrix of path costs or delays between vertices. Rows are written as a whole, once per source search, and may be written concurrently as long as
+ * no two threads write the same row.
+ * <p>
+ * A symmetric matrix only stores the upper triangle: setRow(i, ...) keeps columns i, ..., n - 1, and get(j, i) with j > i reads row i.
+ *
+ * @see MatrixFormat
+ */
+public interface DistanceMatrix {
+  int size();
+
+  boolean isSymmetric();
+
+  /**
+   * @return whether values are stored as floats, within {@link MatrixFormat#SINGLE_PRECISION_ERROR} of the values they were set to
+   */
+  boolean isSinglePrecision();
+
+  double get(int row, int col);
+
+  /**
+   * Copy row @row into @into[0], ..., @into[n - 1]
+   */
+  void getRow(int row, @NotNull double[] into);
+
+  /**
+   * Overwrite row @row with @values[offset], ..., @values[offset + n - 1]; a symmetric matrix ignores the values left of the diagonal
+   */
+  void setRow(int row, @NotNull double[] values, int offset);
+}
@@ -0,0 +1,38 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.ArrayList;
+
+import Network.Link;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Shortest path costs, delays and paths between servers of the physical network, addressed by server id. This is all an auxiliary network needs to know
+ * about the physical network, so the tables behind it may cover all pairs or only the pairs a request can use.
+ */
+public interface DistanceOracle {
+  /**
+   * @return the cost of a shortest path between servers @srcId and @destId
+   */
+  double getCost(int srcId, int destId);
+
+  /**
+   * @return the delay along the shortest path returned by {@link #getPath}
+   */
+  double getDelay(int srcId, int destId);
+
+  /**
+   * Read the costs and delays from server @srcId to every server of @destIds at once, into @costs and @delays at the same positions. Tables kept per source
+   * are read along one row.
+   */
+  default void getCostsAndDelays(int srcId, @NotNull int[] destIds, @NotNull double[] costs, @NotNull double[] delays) {
+    for (int i = 0; i < destIds.length; i++) {
+      costs[i] = getCost(srcId, destIds[i]);
+      delays[i] = getDelay(srcId, destIds[i]);
+    }
+  }
+
+  /**
+   * @return the links of a shortest path from server @srcId to server @destId, in order
+   */
+  @NotNull ArrayList<Link> getPath(int srcId, int destId);
+}
@@ -0,0 +1,174 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Maintains the all-pair shortest paths of one network across requests.
+ * <p>
+ * Admitting a request only changes the allocated bandwidth of the links on its path, so the link weights seen by the next request usually differ from the
+ * previous ones on a handful of links (a link may also appear or disappear under the bandwidth pruning threshold). Instead of running n searches again, the
+ * maintainer compares the new weights with the ones the current trees were built with and searches again only from the sources whose tree may have changed:
+ * <ul>
+ * <li>a changed link that is an edge of the source's tree, or</li>
+ * <li>a link whose weight dropped and now gives a shorter path to one of its endpoints (or one as short with a lower delay).</li>
+ * </ul>
+ * For every other source the old distances still satisfy d(v) <= d(u) + w(u, v) on all links and are realized by an unchanged tree, so they are still
+ * shortest. Note that with a bandwidth-dependent cost function (e.g., {@link Algorithm.CostFunctions.ExponentialCostFunction}) two requests with different
+ * demands change the weight of every link, in which case everything is recomputed.
+ */
+public class DynamicShortestPaths {
+  // Once this share of the links changed weight, checking every source costs more than it saves
+  static final double FULL_RECOMPUTATION_RATIO = 0.25;
+
+  @NotNull private final CompactGraph graph;
+  @Nullable private AllPairShortestPaths apsp;
+  @Nullable private double[] weights; // the link weights apsp currently reflects
+  @Nullable private double[] delays;
+
+  private long fullRecomputations = 0;
+  private long incrementalUpdates = 0;
+  private long recomputedSources = 0;
+  private long reusedSources = 0;
+
+  public DynamicShortestPaths(@NotNull CompactGraph graph) {
+    this.graph = graph;
+  }
+
+  /**
+   * Bring the shortest paths up to date with new link weights
+   *
+   * @param newWeights the weight of each link, indexed by link; links with an infinite weight cannot be used
+   * @param newDelays the delay of each link, indexed by link
+   * @param parallel whether sources may be searched in parallel
+   * @param engine the engine full recomputations run with; incremental updates always search from the affected sources
+   * @param format how the tables of a full recomputation are kept
+   * @return the shortest paths, or null if some server cannot reach some other server. The returned tables are updated in place by later calls.
+   */
+  public @Nullable AllPairShortestPaths update(@NotNull double[] newWeights, @NotNull double[] newDelays, boolean parallel, @NotNull ApspEngine engine,
+                                               @NotNull MatrixFormat format) {
+    if (apsp == null || !Arrays.equals(delays, newDelays)) {
+      return recomputeAll(newWeights, newDelays, parallel, engine, format);
+    }
+    int[] changedLinks = changedLinks(graph, weights, newWeights);
+    if (changedLinks.length > FULL_RECOMPUTATION_RATIO * (double) graph.numLinks()) {
+      return recomputeAll(newWeights, newDelays, parallel, engine, format);
+    }
+
+    int[] sources = affectedSources(graph, apsp, weights, delays, changedLinks, newWeights);
+    ++incrementalUpdates;
+    recomputedSources += sources.length;
+    reusedSources += graph.size() - sources.length;
+    if (sources.length > 0 && !apsp.recompute(sources, newWeights, newDelays, parallel)) {
+      invalidate();
+      return null;
+    }
+    weights = newWeights.clone();
+    return apsp;
+  }
+
+  /**
+   * Forget the maintained paths, the next update recomputes everything
+   */
+  public void invalidate() {
+    apsp = null;
+    weights = null;
+    delays = null;
+  }
+
+  private @Nullable AllPairShortestPaths recomputeAll(@NotNull double[] newWeights, @NotNull double[] newDelays, boolean parallel,
+                                                     @NotNull ApspEngine engine, @NotNull MatrixFormat format) {
+    ++fullRecomputations;
+    recomputedSources += graph.size();
+    apsp = AllPairShortestPaths.compute(graph, newWeights, newDelays, parallel, engine, format);
+    if (apsp == null) {
+      invalidate();
+      return null;
+    }
+    weights = newWeights.clone();
+    delays = newDelays.clone();
+    return apsp;
+  }
+
+  /**
+   * @return the routable links whose weight differs between @oldWeights and @newWeights
+   */
+  static @NotNull int[] changedLinks(@NotNull CompactGraph graph, @NotNull double[] oldWeights, @NotNull double[] newWeights) {
+    int[] changed = new int[newWeights.length];
+    int count = 0;
+    for (int e = 0; e < newWeights.length; e++) {
+      if (graph.isRoutable(e) && Double.compare(oldWeights[e], newWeights[e]) != 0) {
+        changed[count++] = e;
+      }
+    }
+    return Arrays.copyOf(changed, count);
+  }
+
+  /**
+   * @param apsp the shortest paths for @oldWeights and @delays
+   * @return the sources of @apsp whose tree may change when the links of @changedLinks take the weights of @newWeights
+   */
+  static @NotNull int[] affectedSources(@NotNull CompactGraph graph, @NotNull AllPairShortestPaths apsp, @NotNull double[] oldWeights,
+                                        @NotNull double[] delays, @NotNull int[] changedLinks, @NotNull double[] newWeights) {
+    int n = graph.size();
+    int[] affected = new int[n];
+    int count = 0;
+    for (int src = 0; src < n; src++) {
+      for (int e : changedLinks) {
+        int u = graph.linkS1(e);
+        int v = graph.linkS2(e);
+        if (apsp.predecessorLink(src, u) == e || apsp.predecessorLink(src, v) == e) { // a tree edge changed
+          affected[count++] = src;
+          break;
+        }
+        double w = newWeights[e];
+        if (w < oldWeights[e]) { // a non-tree edge became cheaper, which only matters if it shortens the path to one of its endpoints
+          double du = apsp.costBetween(src, u);
+          double dv = apsp.costBetween(src, v);
+          // rounded costs may hide a shorter path by up to their rounding errors, so single precision errs on the side of recomputing
+          double slack = apsp.isSinglePrecision() ? 2.0 * MatrixFormat.SINGLE_PRECISION_ERROR * (du + dv) : 0.0;
+          double delayU = apsp.delayBetween(src, u);
+          double delayV = apsp.delayBetween(src, v);
+          if (improves(du, delayU, w, delays[e], dv, delayV, slack) || improves(dv, delayV, w, delays[e], du, delayU, slack)) {
+            affected[count++] = src;
+            break;
+          }
+        }
+      }
+    }
+    return Arrays.copyOf(affected, count);
+  }
+
+  /**
+   * @return whether going through link (u, v) of weight @w and delay @d gives v a shorter path, or one as short with a lower delay, as the engines prefer
+   * (see {@link ShortestPathEngine})
+   */
+  static boolean improves(double costU, double delayU, double w, double d, double costV, double delayV, double slack) {
+    double alt = costU + w;
+    return alt < costV + slack || (alt == costV && delayU + d < delayV);
+  }
+
+  public long getFullRecomputations() {
+    return fullRecomputations;
+  }
+
+  public long getIncrementalUpdates() {
+    return incrementalUpdates;
+  }
+
+  /**
+   * @return the number of single-source searches run so far, including full recomputations
+   */
+  public long getRecomputedSources() {
+    return recomputedSources;
+  }
+
+  /**
+   * @return the number of source trees kept without a search by incremental updates
+   */
+  public long getReusedSources() {
+    return reusedSources;
+  }
+}
@@ -0,0 +1,131 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * All-pair shortest paths by a cache-blocked (tiled) Floyd-Warshall over flat n x n tables.
+ * <p>
+ * The tables are split into BLOCK x BLOCK tiles. For every diagonal tile k, the tile itself is relaxed first, then the tiles in its row and column, and
+ * finally all remaining tiles, which only read the row and column of k and can be relaxed in parallel. Every relaxation runs on three tiles that fit in the
+ * L1/L2 cache together. Along with the costs, the delay of the current path and the last link on it (the predecessor link) are carried over whenever a
+ * path gets cheaper, or as cheap with a lower delay, so the outputs have the same meaning as those of the Dijkstra engine: the shortest path with the
+ * lowest delay. Shortest paths with the same cost and delay may still differ between the two engines, and costs may differ in the last bits as they are
+ * summed in a different order.
+ */
+class FloydWarshall {
+  static final int BLOCK = 32;
+
+  @NotNull private final CompactGraph graph;
+  private final int n;
+  @NotNull private final double[] cost; // cost[i * n + j] is the cost of the current path from vertex i to vertex j
+  @NotNull private final double[] delay;
+  @NotNull private final int[] predecessorLink;
+
+  private FloydWarshall(@NotNull CompactGraph graph) {
+    this.graph = graph;
+    this.n = graph.size();
+    this.cost = new double[n * n];
+    this.delay = new double[n * n];
+    this.predecessorLink = new int[n * n];
+  }
+
+  /**
+   * @param weights the weight of each link, indexed by link; links with an infinite weight cannot be used
+   * @param delays the delay of each link, indexed by link
+   * @param parallel whether tiles may be relaxed in parallel
+   * @param format how the resulting tables are kept; the working tables are always full n x n double arrays on the heap
+   * @return the shortest paths, or null if some server cannot reach some other server
+   */
+  static @Nullable AllPairShortestPaths compute(@NotNull CompactGraph graph, @NotNull double[] weights, @NotNull double[] delays, boolean parallel,
+                                                @NotNull MatrixFormat format) {
+    FloydWarshall fw = new FloydWarshall(graph);
+    fw.initialize(weights, delays);
+    fw.run(parallel && Runtime.getRuntime().availableProcessors() > 1);
+    for (double c : fw.cost) {
+      if (c == Double.POSITIVE_INFINITY) { // some destinations are not reachable with current residual bandwidth
+        return null;
+      }
+    }
+    return AllPairShortestPaths.fromTables(graph, fw.cost, fw.delay, fw.predecessorLink, format);
+  }
+
+  private void initialize(@NotNull double[] weights, @NotNull double[] delays) {
+    Arrays.fill(cost, Double.POSITIVE_INFINITY);
+    Arrays.fill(predecessorLink, -1);
+    for (int v = 0; v < n; v++) {
+      cost[v * n + v] = 0d;
+    }
+    for (int e = 0; e < graph.numLinks(); e++) {
+      if (!graph.isRoutable(e) || weights[e] == Double.POSITIVE_INFINITY) {
+        continue;
+      }
+      int u = graph.linkS1(e);
+      int v = graph.linkS2(e);
+      if (weights[e] > cost[u * n + v] || (weights[e] == cost[u * n + v] && delays[e] >= delay[u * n + v])) { // a better parallel link
+        continue;
+      }
+      cost[u * n + v] = cost[v * n + u] = weights[e];
+      delay[u * n + v] = delay[v * n + u] = delays[e];
+      predecessorLink[u * n + v] = predecessorLink[v * n + u] = e;
+    }
+  }
+
+  private void run(boolean parallel) {
+    int blocks = (n + BLOCK - 1) / BLOCK;
+    for (int kb = 0; kb < blocks; kb++) {
+      final int k = kb;
+      relax(k, k, k);
+      for (int b = 0; b < blocks; b++) {
+        if (b != k) {
+          relax(k, b, k);
+          relax(b, k, k);
+        }
+      }
+      IntStream rows = IntStream.range(0, blocks).filter(ib -> ib != k);
+      (parallel ? rows.parallel() : rows).forEach(ib -> {
+        for (int jb = 0; jb < blocks; jb++) {
+          if (jb != k) {
+            relax(ib, jb, k);
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Relax the paths of tile (@ib, @jb) through the intermediate vertices of diagonal tile @kb
+   */
+  private void relax(int ib, int jb, int kb) {
+    int iEnd = Math.min(n, (ib + 1) * BLOCK);
+    int jStart = jb * BLOCK;
+    int jEnd = Math.min(n, jStart + BLOCK);
+    int kEnd = Math.min(n, (kb + 1) * BLOCK);
+    for (int k = kb * BLOCK; k < kEnd; k++) {
+      int rowK = k * n;
+      for (int i = ib * BLOCK; i < iEnd; i++) {
+        int rowI = i * n;
+        double costIK = cost[rowI + k];
+        if (costIK == Double.POSITIVE_INFINITY) {
+          continue;
+        }
+        double delayIK = delay[rowI + k];
+        for (int j = jStart; j < jEnd; j++) {
+          double alt = costIK + cost[rowK + j];
+          if (alt > cost[rowI + j]) {
+            continue;
+          }
+          double altDelay = delayIK + delay[rowK + j];
+          if (alt < cost[rowI + j] || altDelay < delay[rowI + j]) {
+            cost[rowI + j] = alt;
+            delay[rowI + j] = altDelay;
+            predecessorLink[rowI + j] = predecessorLink[rowK + j];
+          }
+        }
+      }
+    }
+  }
+}
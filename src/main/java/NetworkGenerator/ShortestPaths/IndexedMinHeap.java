@@ -0,0 +1,107 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A binary min-heap over the integers 0, ..., n - 1 with decrease-key, which is what Dijkstra needs and java.util.PriorityQueue does not offer.
+ */
+class IndexedMinHeap {
+  private final int[] heap; // heap[i] is the element stored at slot i
+  private final int[] position; // position[v] is the slot of element v, or -1 if v is not in the heap
+  private final double[] keys;
+  private int size = 0;
+
+  IndexedMinHeap(int capacity) {
+    heap = new int[capacity];
+    position = new int[capacity];
+    keys = new double[capacity];
+    Arrays.fill(position, -1);
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  boolean contains(int v) {
+    return position[v] >= 0;
+  }
+
+  double keyOf(int v) {
+    return keys[v];
+  }
+
+  /**
+   * Insert @v with key @key, or lower the key of @v if it is already in the heap
+   */
+  void insertOrDecrease(int v, double key) {
+    if (position[v] < 0) {
+      heap[size] = v;
+      position[v] = size;
+      keys[v] = key;
+      siftUp(size++);
+    } else if (key < keys[v]) {
+      keys[v] = key;
+      siftUp(position[v]);
+    }
+  }
+
+  int poll() {
+    checkState(size > 0);
+    int min = heap[0];
+    position[min] = -1;
+    if (--size > 0) {
+      heap[0] = heap[size];
+      position[heap[0]] = 0;
+      siftDown(0);
+    }
+    return min;
+  }
+
+  void clear() {
+    for (int i = 0; i < size; i++) {
+      position[heap[i]] = -1;
+    }
+    size = 0;
+  }
+
+  private void siftUp(int slot) {
+    int v = heap[slot];
+    double key = keys[v];
+    while (slot > 0) {
+      int parent = (slot - 1) >>> 1;
+      int p = heap[parent];
+      if (keys[p] <= key) {
+        break;
+      }
+      heap[slot] = p;
+      position[p] = slot;
+      slot = parent;
+    }
+    heap[slot] = v;
+    position[v] = slot;
+  }
+
+  private void siftDown(int slot) {
+    int v = heap[slot];
+    double key = keys[v];
+    int half = size >>> 1;
+    while (slot < half) {
+      int child = 2 * slot + 1;
+      int right = child + 1;
+      if (right < size && keys[heap[right]] < keys[heap[child]]) {
+        child = right;
+      }
+      int c = heap[child];
+      if (key <= keys[c]) {
+        break;
+      }
+      heap[slot] = c;
+      position[c] = slot;
+      slot = child;
+    }
+    heap[slot] = v;
+    position[v] = slot;
+  }
+}
@@ -0,0 +1,16 @@
+package NetworkGenerator.ShortestPaths;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An n x n matrix of ints, e.g., the predecessor links of all shortest path trees. Rows are written as in {@link DistanceMatrix}.
+ */
+public interface IntMatrix {
+  int size();
+
+  int get(int row, int col);
+
+  void getRow(int row, @NotNull int[] into);
+
+  void setRow(int row, @NotNull int[] values, int offset);
+}
@@ -0,0 +1,335 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import Network.Link;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Approximate shortest paths from k landmark trees (ALT), for topologies where even target-restricted searches are too slow.
+ * <p>
+ * The shortest path trees of k landmarks are computed once; the landmarks are picked one after the other as the vertex farthest from those already picked.
+ * As links are undirected, for every landmark l and vertices s and t, |d(l, s) - d(l, t)| <= d(s, t) <= d(s, l) + d(l, t). The cost of (s, t) is the best
+ * upper bound, i.e., the cost of going through the best landmark, and its delay is the delay of that path. Whenever the upper bound exceeds the lower bound
+ * by more than maxError times the lower bound, (s, t) is refined instead: its exact shortest path (with the lowest delay among the cheapest ones) is
+ * searched with A* guided by the landmark lower bounds, and its cost and delay are used. Every cost is thus within a factor 1 + maxError of the exact one,
+ * and never below it.
+ * <p>
+ * The cost and delay of a pair are settled together on first use and never change afterwards, so the values read do not depend on the order of the calls.
+ * Paths are only built for the pairs the auxiliary graph actually routes through. For an estimated pair, the exact shortest path is searched then, and kept
+ * unless its delay exceeds the estimated one, in which case the path through the landmark (without the loops it may have) is returned. In both cases the
+ * returned path costs and delays at most what {@link #getCost} and {@link #getDelay} said, so admission decisions made on the estimates stay feasible.
+ */
+public class LandmarkOracle implements DistanceOracle {
+  @NotNull private final CompactGraph graph;
+  @NotNull private final double[] weights;
+  @NotNull private final double[] delays;
+  @NotNull private final ShortestPathTree[] landmarks;
+  private final double maxError;
+  @NotNull private final HashMap<Long, Pair> pairs = new HashMap<>(); // the pairs looked up so far, by vertex pair
+  @NotNull private final IndexedMinHeap heap;
+  @NotNull private final double[] cost; // A* working memory
+  @NotNull private final double[] delay;
+  @NotNull private final int[] predecessorLink;
+
+  private long estimates = 0;
+  private long refinedPairs = 0;
+
+  private LandmarkOracle(@NotNull CompactGraph graph, @NotNull double[] weights, @NotNull double[] delays, @NotNull ShortestPathTree[] landmarks,
+                         double maxError) {
+    this.graph = graph;
+    this.weights = weights;
+    this.delays = delays;
+    this.landmarks = landmarks;
+    this.maxError = maxError;
+    this.heap = new IndexedMinHeap(graph.size());
+    this.cost = new double[graph.size()];
+    this.delay = new double[graph.size()];
+    this.predecessorLink = new int[graph.size()];
+  }
+
+  /**
+   * @param weights the weight of each link, indexed by link; links with an infinite weight cannot be used
+   * @param delays the delay of each link, indexed by link
+   * @param numLandmarks the number of landmark trees to compute
+   * @param maxError the largest relative error of a cost, beyond which the pair is searched exactly
+   * @return the oracle, or null if some server cannot reach some other server
+   */
+  public static @Nullable LandmarkOracle compute(@NotNull CompactGraph graph, @NotNull double[] weights, @NotNull double[] delays, int numLandmarks,
+                                                 double maxError) {
+    checkArgument(numLandmarks > 0, "At least one landmark is needed: %s", numLandmarks);
+    checkArgument(maxError >= 0d, "The error bound cannot be negative: %s", maxError);
+    if (graph.size() == 0 || !graph.isConnected(weights)) {
+      return null;
+    }
+    ShortestPathEngine engine = SsspEngine.engines(graph, weights).get();
+    ShortestPathTree[] landmarks = new ShortestPathTree[Math.min(numLandmarks, graph.size())];
+    double[] distanceToLandmarks = new double[graph.size()];
+    Arrays.fill(distanceToLandmarks, Double.POSITIVE_INFINITY);
+    ShortestPathTree start = new ShortestPathTree(graph.size());
+    engine.search(0, weights, delays, start);
+    int next = farthest(start.cost);
+    for (int i = 0; i < landmarks.length; i++) {
+      landmarks[i] = new ShortestPathTree(graph.size());
+      engine.search(next, weights, delays, landmarks[i]);
+      for (int v = 0; v < graph.size(); v++) {
+        distanceToLandmarks[v] = Math.min(distanceToLandmarks[v], landmarks[i].cost[v]);
+      }
+      next = farthest(distanceToLandmarks);
+    }
+    return new LandmarkOracle(graph, weights.clone(), delays.clone(), landmarks, maxError);
+  }
+
+  private static int farthest(@NotNull double[] distance) {
+    int farthest = 0;
+    for (int v = 1; v < distance.length; v++) {
+      if (distance[v] > distance[farthest]) {
+        farthest = v;
+      }
+    }
+    return farthest;
+  }
+
+  public int getNumLandmarks() {
+    return landmarks.length;
+  }
+
+  /**
+   * @return the number of pairs whose cost was estimated from the landmarks
+   */
+  public synchronized long getEstimates() {
+    return estimates;
+  }
+
+  /**
+   * @return the number of pairs that were searched exactly
+   */
+  public synchronized long getRefinedPairs() {
+    return refinedPairs;
+  }
+
+  @Override public synchronized double getCost(int srcId, int destId) {
+    int src = graph.indexOf(srcId);
+    int dest = graph.indexOf(destId);
+    return src == dest ? 0d : lookup(src, dest).cost;
+  }
+
+  @Override public synchronized double getDelay(int srcId, int destId) {
+    int src = graph.indexOf(srcId);
+    int dest = graph.indexOf(destId);
+    return src == dest ? 0d : lookup(src, dest).delay;
+  }
+
+  @Override public synchronized void getCostsAndDelays(int srcId, @NotNull int[] destIds, @NotNull double[] costs, @NotNull double[] delays) {
+    int src = graph.indexOf(srcId);
+    for (int i = 0; i < destIds.length; i++) {
+      int dest = graph.indexOf(destIds[i]);
+      if (src == dest) {
+        costs[i] = 0d;
+        delays[i] = 0d;
+        continue;
+      }
+      Pair pair = lookup(src, dest);
+      costs[i] = pair.cost;
+      delays[i] = pair.delay;
+    }
+  }
+
+  @Override public synchronized @NotNull ArrayList<Link> getPath(int srcId, int destId) {
+    int src = graph.indexOf(srcId);
+    int dest = graph.indexOf(destId);
+    if (src == dest) {
+      return new ArrayList<>();
+    }
+    Pair pair = lookup(src, dest);
+    if (pair.links == null) { // an estimated pair
+      int from = Math.min(src, dest);
+      int to = Math.max(src, dest);
+      int[] exact = search(from, to);
+      // the exact path never costs more than the estimate, but it may be slower: keep going through the landmark then
+      pair.links = delay[to] <= pair.delay ? exact : landmarkPath(landmarks[pair.landmark], from, to);
+    }
+    int[] path = pair.links;
+    if (src > dest) { // paths are stored from the smaller vertex to the larger one
+      path = path.clone();
+      for (int i = 0, j = path.length - 1; i < j; i++, j--) {
+        int link = path[i];
+        path[i] = path[j];
+        path[j] = link;
+      }
+    }
+    return toLinks(path);
+  }
+
+  /**
+   * @return the cost and delay of the pair (@src, @dest), estimated from the landmarks if their bounds are tight enough and searched exactly otherwise
+   */
+  private @NotNull Pair lookup(int src, int dest) {
+    long key = pairKey(src, dest);
+    Pair pair = pairs.get(key);
+    if (pair != null) {
+      return pair;
+    }
+    int landmark = bestLandmark(src, dest);
+    if (landmark >= 0) {
+      ++estimates;
+      ShortestPathTree tree = landmarks[landmark];
+      pair = new Pair(tree.cost[src] + tree.cost[dest], tree.delay[src] + tree.delay[dest], landmark, null);
+    } else {
+      int from = Math.min(src, dest);
+      int to = Math.max(src, dest);
+      int[] links = search(from, to);
+      pair = new Pair(cost[to], delay[to], -1, links);
+    }
+    pairs.put(key, pair);
+    return pair;
+  }
+
+  /**
+   * @return the landmark giving the lowest upper bound on the cost between @src and @dest, or -1 if the bounds are too far apart
+   */
+  private int bestLandmark(int src, int dest) {
+    double lower = 0d;
+    double upper = Double.POSITIVE_INFINITY;
+    int best = -1;
+    for (int i = 0; i < landmarks.length; i++) {
+      double[] c = landmarks[i].cost;
+      lower = Math.max(lower, Math.abs(c[src] - c[dest]));
+      if (c[src] + c[dest] < upper) {
+        upper = c[src] + c[dest];
+        best = i;
+      }
+    }
+    return upper - lower <= maxError * lower ? best : -1;
+  }
+
+  /**
+   * A* from @src to @dest, with the landmark lower bounds as potentials
+   *
+   * @return the links of the shortest path with the lowest delay among the cheapest ones, in order
+   */
+  private @NotNull int[] search(int src, int dest) {
+    ++refinedPairs;
+    int[] offsets = graph.offsets();
+    int[] neighbours = graph.neighbours();
+    int[] arcLinks = graph.arcLinks();
+    Arrays.fill(cost, Double.POSITIVE_INFINITY);
+    Arrays.fill(predecessorLink, -1);
+    cost[src] = 0d;
+    delay[src] = 0d;
+    heap.clear();
+    heap.insertOrDecrease(src, lowerBound(src, dest));
+    while (!heap.isEmpty()) {
+      int u = heap.poll();
+      if (heap.keyOf(u) > cost[dest]) { // any other path to dest costs more; until then, one as cheap may have a lower delay
+        break;
+      }
+      for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+        int e = arcLinks[arc];
+        double w = weights[e];
+        if (w == Double.POSITIVE_INFINITY) {
+          continue;
+        }
+        int v = neighbours[arc];
+        double alt = cost[u] + w;
+        if (alt < cost[v]) {
+          cost[v] = alt;
+          delay[v] = delay[u] + delays[e];
+          predecessorLink[v] = e;
+          heap.insertOrDecrease(v, alt + lowerBound(v, dest));
+        } else if (alt == cost[v] && delay[u] + delays[e] < delay[v]) { // as cheap, but with a lower delay
+          delay[v] = delay[u] + delays[e];
+          predecessorLink[v] = e;
+        }
+      }
+    }
+    int hops = 0;
+    for (int v = dest; v != src; v = graph.otherEnd(predecessorLink[v], v)) {
+      hops++;
+    }
+    int[] links = new int[hops];
+    for (int v = dest; v != src; v = graph.otherEnd(predecessorLink[v], v)) {
+      links[--hops] = predecessorLink[v];
+    }
+    return links;
+  }
+
+  private double lowerBound(int v, int dest) {
+    double bound = 0d;
+    for (ShortestPathTree landmark : landmarks) {
+      bound = Math.max(bound, Math.abs(landmark.cost[v] - landmark.cost[dest]));
+    }
+    return bound;
+  }
+
+  /**
+   * @return the links from @src to @dest through the root of @landmark, without the loops where both halves overlap
+   */
+  private @NotNull int[] landmarkPath(@NotNull ShortestPathTree landmark, int src, int dest) {
+    ArrayList<Integer> vertices = new ArrayList<>();
+    ArrayList<Integer> links = new ArrayList<>();
+    HashMap<Integer, Integer> position = new HashMap<>(); // of each vertex on the path so far
+    vertices.add(src);
+    position.put(src, 0);
+    // up from src to the landmark, then down from the landmark to dest
+    for (int v = src; v != landmark.source; v = graph.otherEnd(landmark.predecessorLink[v], v)) {
+      append(vertices, links, position, landmark.predecessorLink[v], graph.otherEnd(landmark.predecessorLink[v], v));
+    }
+    ArrayList<Integer> down = new ArrayList<>();
+    for (int v = dest; v != landmark.source; v = graph.otherEnd(landmark.predecessorLink[v], v)) {
+      down.add(landmark.predecessorLink[v]);
+    }
+    for (int i = down.size() - 1; i >= 0; i--) {
+      int link = down.get(i);
+      int last = vertices.get(vertices.size() - 1);
+      append(vertices, links, position, link, graph.otherEnd(link, last));
+    }
+    return links.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private static void append(@NotNull ArrayList<Integer> vertices, @NotNull ArrayList<Integer> links, @NotNull HashMap<Integer, Integer> position,
+                             int link, int next) {
+    Integer seen = position.get(next);
+    if (seen != null) { // cut the loop back to the first visit of next
+      while (vertices.size() > seen + 1) {
+        position.remove(vertices.remove(vertices.size() - 1));
+        links.remove(links.size() - 1);
+      }
+      return;
+    }
+    links.add(link);
+    vertices.add(next);
+    position.put(next, vertices.size() - 1);
+  }
+
+  private @NotNull ArrayList<Link> toLinks(@NotNull int[] path) {
+    ArrayList<Link> links = new ArrayList<>(path.length);
+    for (int link : path) {
+      links.add(graph.getLink(link));
+    }
+    return links;
+  }
+
+  private static long pairKey(int u, int v) {
+    return ((long) Math.min(u, v) << 32) | (long) Math.max(u, v);
+  }
+
+  private static class Pair {
+    final double cost;
+    final double delay;
+    final int landmark; // the landmark the cost and delay were estimated through, or -1 if they are exact
+    @Nullable int[] links; // a path from the smaller vertex of the pair to the larger one, costing and delaying at most cost and delay; null until built
+
+    Pair(double cost, double delay, int landmark, @Nullable int[] links) {
+      this.cost = cost;
+      this.delay = delay;
+      this.landmark = landmark;
+      this.links = links;
+    }
+  }
+}
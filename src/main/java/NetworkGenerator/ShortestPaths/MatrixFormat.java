@@ -0,0 +1,57 @@
+package NetworkGenerator.ShortestPaths;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * How the tables of all-pair shortest paths are kept: where they live, and how the costs and delays are stored.
+ * <p>
+ * As links are undirected, the shortest path from v to u is the one from u to v reversed, and symmetric distance matrices only store the upper triangle,
+ * i.e., half of the costs and delays. The predecessor links stay n x n, as they are not symmetric.
+ * <p>
+ * In single precision, costs and delays are computed in double precision and rounded to the nearest float when stored. Every stored value x' then satisfies
+ * |x' - x| <= {@link #SINGLE_PRECISION_ERROR} * |x| (as long as x stays below Float.MAX_VALUE), and since link costs and delays are not negative, so does any
+ * sum of stored values, e.g., the cost of a path of the auxiliary graph. Comparisons between values closer than this, e.g., a path delay that is within
+ * 6e-8 of the delay requirement of a request, may therefore come out differently than in double precision.
+ */
+public final class MatrixFormat {
+  /**
+   * The relative rounding error of single precision, 2^-24
+   */
+  public static final double SINGLE_PRECISION_ERROR = 0x1p-24;
+
+  public static final MatrixFormat DEFAULT = new MatrixFormat(MatrixStorage.HEAP, false, false);
+
+  @NotNull private final MatrixStorage storage;
+  private final boolean symmetric;
+  private final boolean singlePrecision;
+
+  public MatrixFormat(@NotNull MatrixStorage storage, boolean symmetric, boolean singlePrecision) {
+    this.storage = storage;
+    this.symmetric = symmetric;
+    this.singlePrecision = singlePrecision;
+  }
+
+  @NotNull public MatrixStorage getStorage() {
+    return storage;
+  }
+
+  public boolean isSymmetric() {
+    return symmetric;
+  }
+
+  public boolean isSinglePrecision() {
+    return singlePrecision;
+  }
+
+  @NotNull DistanceMatrix newDistanceMatrix(int n) {
+    return storage.newDistanceMatrix(n, symmetric, singlePrecision);
+  }
+
+  @NotNull IntMatrix newIntMatrix(int n) {
+    return storage.newIntMatrix(n);
+  }
+
+  @Override public String toString() {
+    return storage + (symmetric ? ", symmetric" : "") + (singlePrecision ? ", single precision" : "");
+  }
+}
@@ -0,0 +1,407 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Where the n x n tables of all-pair shortest paths live.
+ * <p>
+ * On the 3967-node topology, the costs, delays and predecessor links take 315 MB. On the heap, that is a few huge arrays per APSP that the GC has to copy or
+ * at least scan. Off the heap, the tables are direct buffers that the GC does not touch; they count against -XX:MaxDirectMemorySize and are released when
+ * their APSP is collected. Mapped tables are backed by a deleted temporary file, so the OS can page them out, and several large topologies fit in one JVM
+ * whatever its heap and direct memory limits.
+ * <p>
+ * Independently of where they live, distance matrices may be symmetric (only the upper triangle is stored) and single-precision, see {@link MatrixFormat}.
+ */
+public enum MatrixStorage {
+  HEAP,
+  OFF_HEAP,
+  MAPPED;
+
+  // A buffer holds whole rows and at most this many bytes, as buffers are indexed by int
+  private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+  /**
+   * @param symmetric whether to only store the upper triangle, for distances that do not depend on the direction
+   * @param singlePrecision whether to store floats rather than doubles
+   */
+  @NotNull public DistanceMatrix newDistanceMatrix(int n, boolean symmetric, boolean singlePrecision) {
+    if (this == HEAP) {
+      if (singlePrecision) {
+        float[][] rows = new float[n][];
+        for (int i = 0; i < n; i++) {
+          rows[i] = new float[symmetric ? n - i : n];
+        }
+        return new HeapFloatDistanceMatrix(rows, symmetric);
+      }
+      double[][] rows = new double[n][];
+      for (int i = 0; i < n; i++) {
+        rows[i] = new double[symmetric ? n - i : n];
+      }
+      return new HeapDistanceMatrix(rows, symmetric);
+    }
+    Layout layout = new Layout(n, symmetric, singlePrecision ? Float.BYTES : Double.BYTES);
+    ByteBuffer[] chunks = allocate(layout);
+    if (singlePrecision) {
+      FloatBuffer[] floats = new FloatBuffer[chunks.length];
+      for (int c = 0; c < chunks.length; c++) {
+        floats[c] = chunks[c].asFloatBuffer();
+      }
+      return new BufferFloatDistanceMatrix(layout, floats);
+    }
+    DoubleBuffer[] doubles = new DoubleBuffer[chunks.length];
+    for (int c = 0; c < chunks.length; c++) {
+      doubles[c] = chunks[c].asDoubleBuffer();
+    }
+    return new BufferDistanceMatrix(layout, doubles);
+  }
+
+  @NotNull public IntMatrix newIntMatrix(int n) {
+    if (this == HEAP) {
+      return new HeapIntMatrix(n);
+    }
+    Layout layout = new Layout(n, false, Integer.BYTES);
+    ByteBuffer[] chunks = allocate(layout);
+    IntBuffer[] ints = new IntBuffer[chunks.length];
+    for (int c = 0; c < chunks.length; c++) {
+      ints[c] = chunks[c].asIntBuffer();
+    }
+    return new BufferIntMatrix(layout, ints);
+  }
+
+  private @NotNull ByteBuffer[] allocate(@NotNull Layout layout) {
+    ByteBuffer[] chunks = new ByteBuffer[layout.numChunks()];
+    if (this == OFF_HEAP) {
+      for (int c = 0; c < chunks.length; c++) {
+        chunks[c] = ByteBuffer.allocateDirect(layout.chunkBytes(c)).order(ByteOrder.nativeOrder());
+      }
+      return chunks;
+    }
+    try {
+      Path file = Files.createTempFile("apsp", ".matrix");
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        long position = 0L;
+        for (int c = 0; c < chunks.length; c++) {
+          chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, position, layout.chunkBytes(c)).order(ByteOrder.nativeOrder());
+          position += layout.chunkBytes(c);
+        }
+      } finally {
+        // the mappings stay valid after the file is deleted (on Windows it cannot be deleted while mapped, so it goes on exit)
+        if (!file.toFile().delete()) {
+          file.toFile().deleteOnExit();
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot create a file-backed matrix", e);
+    }
+    return chunks;
+  }
+
+  /**
+   * How the rows of a matrix are packed into buffers: each buffer holds whole rows and at most MAX_CHUNK_BYTES. A symmetric matrix only stores columns
+   * row, ..., n - 1 of each row.
+   */
+  static class Layout {
+    final int n;
+    final boolean symmetric;
+    private final int elementBytes;
+    @NotNull private final int[] rowChunk; // the buffer holding each row
+    @NotNull private final int[] rowStart; // the index of the first element of each row in its buffer
+    @NotNull private final int[] chunkElements;
+
+    Layout(int n, boolean symmetric, int elementBytes) {
+      this.n = n;
+      this.symmetric = symmetric;
+      this.elementBytes = elementBytes;
+      this.rowChunk = new int[n];
+      this.rowStart = new int[n];
+      int[] elements = new int[n];
+      int chunk = 0;
+      long used = 0L;
+      for (int i = 0; i < n; i++) {
+        long rowElements = rowLength(i);
+        if (used > 0L && (used + rowElements) * elementBytes > MAX_CHUNK_BYTES) {
+          elements[chunk++] = (int) used;
+          used = 0L;
+        }
+        rowChunk[i] = chunk;
+        rowStart[i] = (int) used;
+        used += rowElements;
+      }
+      if (n > 0) {
+        elements[chunk++] = (int) used;
+      }
+      this.chunkElements = java.util.Arrays.copyOf(elements, chunk);
+    }
+
+    int rowLength(int row) {
+      return symmetric ? n - row : n;
+    }
+
+    int numChunks() {
+      return chunkElements.length;
+    }
+
+    int chunkBytes(int chunk) {
+      return chunkElements[chunk] * elementBytes;
+    }
+
+    int chunkOf(int row) {
+      return rowChunk[row];
+    }
+
+    /**
+     * @return the index of element (@row, @col) in its buffer, with @col >= @row for symmetric matrices
+     */
+    int indexOf(int row, int col) {
+      return rowStart[row] + (symmetric ? col - row : col);
+    }
+  }
+
+  private static class HeapDistanceMatrix implements DistanceMatrix {
+    @NotNull private final double[][] rows; // a symmetric matrix only keeps columns i, ..., n - 1 in rows[i]
+    private final boolean symmetric;
+
+    HeapDistanceMatrix(@NotNull double[][] rows, boolean symmetric) {
+      this.rows = rows;
+      this.symmetric = symmetric;
+    }
+
+    @Override public int size() {
+      return rows.length;
+    }
+
+    @Override public boolean isSymmetric() {
+      return symmetric;
+    }
+
+    @Override public boolean isSinglePrecision() {
+      return false;
+    }
+
+    @Override public double get(int row, int col) {
+      if (!symmetric) {
+        return rows[row][col];
+      }
+      return row <= col ? rows[row][col - row] : rows[col][row - col];
+    }
+
+    @Override public void getRow(int row, @NotNull double[] into) {
+      if (!symmetric) {
+        System.arraycopy(rows[row], 0, into, 0, rows.length);
+        return;
+      }
+      for (int col = 0; col < row; col++) {
+        into[col] = rows[col][row - col];
+      }
+      System.arraycopy(rows[row], 0, into, row, rows.length - row);
+    }
+
+    @Override public void setRow(int row, @NotNull double[] values, int offset) {
+      int from = symmetric ? row : 0;
+      System.arraycopy(values, offset + from, rows[row], 0, rows.length - from);
+    }
+  }
+
+  private static class HeapFloatDistanceMatrix implements DistanceMatrix {
+    @NotNull private final float[][] rows;
+    private final boolean symmetric;
+
+    HeapFloatDistanceMatrix(@NotNull float[][] rows, boolean symmetric) {
+      this.rows = rows;
+      this.symmetric = symmetric;
+    }
+
+    @Override public int size() {
+      return rows.length;
+    }
+
+    @Override public boolean isSymmetric() {
+      return symmetric;
+    }
+
+    @Override public boolean isSinglePrecision() {
+      return true;
+    }
+
+    @Override public double get(int row, int col) {
+      if (!symmetric) {
+        return rows[row][col];
+      }
+      return row <= col ? rows[row][col - row] : rows[col][row - col];
+    }
+
+    @Override public void getRow(int row, @NotNull double[] into) {
+      for (int col = 0; col < rows.length; col++) {
+        into[col] = get(row, col);
+      }
+    }
+
+    @Override public void setRow(int row, @NotNull double[] values, int offset) {
+      float[] target = rows[row];
+      int from = symmetric ? row : 0;
+      for (int col = from; col < rows.length; col++) {
+        target[col - from] = (float) values[offset + col];
+      }
+    }
+  }
+
+  private static class HeapIntMatrix implements IntMatrix {
+    @NotNull private final int[][] rows;
+
+    HeapIntMatrix(int n) {
+      rows = new int[n][n];
+    }
+
+    @Override public int size() {
+      return rows.length;
+    }
+
+    @Override public int get(int row, int col) {
+      return rows[row][col];
+    }
+
+    @Override public void getRow(int row, @NotNull int[] into) {
+      System.arraycopy(rows[row], 0, into, 0, rows.length);
+    }
+
+    @Override public void setRow(int row, @NotNull int[] values, int offset) {
+      System.arraycopy(values, offset, rows[row], 0, rows.length);
+    }
+  }
+
+  /**
+   * A matrix held by buffers as given by its {@link Layout}. Bulk transfers go through duplicates, so that threads writing different rows do not share a
+   * position.
+   */
+  static class BufferDistanceMatrix implements DistanceMatrix {
+    @NotNull private final Layout layout;
+    @NotNull private final DoubleBuffer[] chunks;
+
+    BufferDistanceMatrix(@NotNull Layout layout, @NotNull DoubleBuffer[] chunks) {
+      this.layout = layout;
+      this.chunks = chunks;
+    }
+
+    @Override public int size() {
+      return layout.n;
+    }
+
+    @Override public boolean isSymmetric() {
+      return layout.symmetric;
+    }
+
+    @Override public boolean isSinglePrecision() {
+      return false;
+    }
+
+    @Override public double get(int row, int col) {
+      if (layout.symmetric && col < row) {
+        return chunks[layout.chunkOf(col)].get(layout.indexOf(col, row));
+      }
+      return chunks[layout.chunkOf(row)].get(layout.indexOf(row, col));
+    }
+
+    @Override public void getRow(int row, @NotNull double[] into) {
+      int from = layout.symmetric ? row : 0;
+      for (int col = 0; col < from; col++) {
+        into[col] = get(row, col);
+      }
+      DoubleBuffer chunk = chunks[layout.chunkOf(row)].duplicate();
+      chunk.position(layout.indexOf(row, from));
+      chunk.get(into, from, layout.n - from);
+    }
+
+    @Override public void setRow(int row, @NotNull double[] values, int offset) {
+      int from = layout.symmetric ? row : 0;
+      DoubleBuffer chunk = chunks[layout.chunkOf(row)].duplicate();
+      chunk.position(layout.indexOf(row, from));
+      chunk.put(values, offset + from, layout.n - from);
+    }
+  }
+
+  static class BufferFloatDistanceMatrix implements DistanceMatrix {
+    @NotNull private final Layout layout;
+    @NotNull private final FloatBuffer[] chunks;
+
+    BufferFloatDistanceMatrix(@NotNull Layout layout, @NotNull FloatBuffer[] chunks) {
+      this.layout = layout;
+      this.chunks = chunks;
+    }
+
+    @Override public int size() {
+      return layout.n;
+    }
+
+    @Override public boolean isSymmetric() {
+      return layout.symmetric;
+    }
+
+    @Override public boolean isSinglePrecision() {
+      return true;
+    }
+
+    @Override public double get(int row, int col) {
+      if (layout.symmetric && col < row) {
+        return chunks[layout.chunkOf(col)].get(layout.indexOf(col, row));
+      }
+      return chunks[layout.chunkOf(row)].get(layout.indexOf(row, col));
+    }
+
+    @Override public void getRow(int row, @NotNull double[] into) {
+      for (int col = 0; col < layout.n; col++) {
+        into[col] = get(row, col);
+      }
+    }
+
+    @Override public void setRow(int row, @NotNull double[] values, int offset) {
+      int from = layout.symmetric ? row : 0;
+      FloatBuffer chunk = chunks[layout.chunkOf(row)];
+      int start = layout.indexOf(row, from);
+      for (int col = from; col < layout.n; col++) {
+        chunk.put(start + col - from, (float) values[offset + col]);
+      }
+    }
+  }
+
+  static class BufferIntMatrix implements IntMatrix {
+    @NotNull private final Layout layout;
+    @NotNull private final IntBuffer[] chunks;
+
+    BufferIntMatrix(@NotNull Layout layout, @NotNull IntBuffer[] chunks) {
+      this.layout = layout;
+      this.chunks = chunks;
+    }
+
+    @Override public int size() {
+      return layout.n;
+    }
+
+    @Override public int get(int row, int col) {
+      return chunks[layout.chunkOf(row)].get(layout.indexOf(row, col));
+    }
+
+    @Override public void getRow(int row, @NotNull int[] into) {
+      IntBuffer chunk = chunks[layout.chunkOf(row)].duplicate();
+      chunk.position(layout.indexOf(row, 0));
+      chunk.get(into, 0, layout.n);
+    }
+
+    @Override public void setRow(int row, @NotNull int[] values, int offset) {
+      IntBuffer chunk = chunks[layout.chunkOf(row)].duplicate();
+      chunk.position(layout.indexOf(row, 0));
+      chunk.put(values, offset, layout.n);
+    }
+  }
+}
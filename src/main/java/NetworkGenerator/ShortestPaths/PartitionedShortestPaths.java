@@ -0,0 +1,471 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import Network.Link;
+import Network.Server;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Exact two-level shortest paths, for topologies too large for n x n tables.
+ * <p>
+ * The servers are split into regions by their coordinates (see {@link Server#getX()}), by recursive bisection along the wider side of the bounding box, so
+ * regions have the same size up to one server. A boundary vertex has a usable link to another region. Each region keeps the shortest paths among its own
+ * vertices that stay inside it, and the overlay keeps the shortest paths among all boundary vertices, over a graph made of the inter-region links and of one
+ * arc between every two boundary vertices of a region (the cost of the intra-region path between them). A shortest path from s to t leaves the region of s
+ * at a boundary vertex and enters the region of t for the last time at a boundary vertex, so its cost is the best of the intra-region path (if s and t share
+ * a region) and of d(s, b1) + D(b1, b2) + d(b2, t) over the boundary vertices b1 of the region of s and b2 of the region of t.
+ * <p>
+ * With r regions of n / r vertices and B boundary vertices, the tables take O(n^2 / r + B^2) entries instead of n^2, and a query scans the boundary
+ * vertices of two regions. Paths are rebuilt from the predecessors kept in the tables.
+ */
+public class PartitionedShortestPaths implements DistanceOracle {
+  @NotNull private final CompactGraph graph;
+  @NotNull private final int[] regionOf; // region of each vertex
+  @NotNull private final int[] localIndex; // index of each vertex within its region
+  @NotNull private final Region[] regions;
+  @NotNull private final int[] boundary; // the vertex of each overlay vertex
+  @NotNull private final int[] overlayIndex; // the overlay vertex of each vertex, or -1 if it is not a boundary vertex
+  @NotNull private final Table overlay; // shortest paths among the boundary vertices, over the whole graph
+
+  private long queries = 0;
+
+  private PartitionedShortestPaths(@NotNull CompactGraph graph, @NotNull int[] regionOf, @NotNull int[] localIndex, @NotNull Region[] regions,
+                                   @NotNull int[] boundary, @NotNull int[] overlayIndex, @NotNull Table overlay) {
+    this.graph = graph;
+    this.regionOf = regionOf;
+    this.localIndex = localIndex;
+    this.regions = regions;
+    this.boundary = boundary;
+    this.overlayIndex = overlayIndex;
+    this.overlay = overlay;
+  }
+
+  /**
+   * @param weights the weight of each link, indexed by link; links with an infinite weight cannot be used
+   * @param delays the delay of each link, indexed by link
+   * @param numRegions the number of regions to split the servers into
+   * @param parallel whether regions and overlay sources may be searched in parallel
+   * @return the shortest paths, or null if some server cannot reach some other server
+   */
+  public static @Nullable PartitionedShortestPaths compute(@NotNull CompactGraph graph, @NotNull double[] weights, @NotNull double[] delays,
+                                                           int numRegions, boolean parallel) {
+    checkArgument(numRegions > 0, "At least one region is needed: %s", numRegions);
+    if (!graph.isConnected(weights)) {
+      return null;
+    }
+    int n = graph.size();
+    int[] regionOf = new int[n];
+    Integer[] vertices = new Integer[n];
+    for (int v = 0; v < n; v++) {
+      vertices[v] = v;
+    }
+    bisect(graph, vertices, 0, n, Math.max(1, Math.min(numRegions, n)), 0, regionOf);
+
+    int numRegionsUsed = n == 0 ? 0 : Arrays.stream(regionOf).max().getAsInt() + 1;
+    int[] regionSize = new int[numRegionsUsed];
+    int[] localIndex = new int[n];
+    for (int v = 0; v < n; v++) {
+      localIndex[v] = regionSize[regionOf[v]]++;
+    }
+    int[] offsets = graph.offsets();
+    int[] neighbours = graph.neighbours();
+    int[] arcLinks = graph.arcLinks();
+    boolean[] isBoundary = new boolean[n];
+    for (int u = 0; u < n; u++) {
+      for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+        if (regionOf[neighbours[arc]] != regionOf[u] && weights[arcLinks[arc]] != Double.POSITIVE_INFINITY) {
+          isBoundary[u] = true;
+        }
+      }
+    }
+
+    Region[] regions = new Region[numRegionsUsed];
+    for (int r = 0; r < numRegionsUsed; r++) {
+      regions[r] = new Region(new int[regionSize[r]]);
+    }
+    int[] overlayIndex = new int[n];
+    int numBoundary = 0;
+    for (int v = 0; v < n; v++) {
+      regions[regionOf[v]].vertices[localIndex[v]] = v;
+      overlayIndex[v] = isBoundary[v] ? numBoundary++ : -1;
+    }
+    checkArgument((long) numBoundary * (long) numBoundary <= Integer.MAX_VALUE, "Too many boundary vertices for the overlay: %s", numBoundary);
+    int[] boundary = new int[numBoundary];
+    for (int v = 0; v < n; v++) {
+      if (isBoundary[v]) {
+        boundary[overlayIndex[v]] = v;
+      }
+    }
+
+    // intra-region shortest paths, over the links between vertices of the same region
+    IntStream regionIds = IntStream.range(0, numRegionsUsed);
+    (parallel ? regionIds.parallel() : regionIds).forEach(r -> {
+      Region region = regions[r];
+      Csr local = new Csr(region.vertices.length);
+      for (int pass = 0; pass < 2; pass++) {
+        for (int i = 0; i < region.vertices.length; i++) {
+          int u = region.vertices[i];
+          for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+            int e = arcLinks[arc];
+            if (regionOf[neighbours[arc]] == r && weights[e] != Double.POSITIVE_INFINITY) {
+              local.add(pass, i, localIndex[neighbours[arc]], weights[e], delays[e], e);
+            }
+          }
+        }
+        local.endPass(pass);
+      }
+      region.table = local.searchAll(false);
+      region.boundary = Arrays.stream(region.vertices).filter(v -> isBoundary[v]).toArray();
+    });
+
+    // the overlay: the inter-region links, and the intra-region paths between boundary vertices of the same region
+    Csr overlayGraph = new Csr(numBoundary);
+    for (int pass = 0; pass < 2; pass++) {
+      for (int i = 0; i < numBoundary; i++) {
+        int u = boundary[i];
+        for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+          int e = arcLinks[arc];
+          int v = neighbours[arc];
+          if (regionOf[v] != regionOf[u] && weights[e] != Double.POSITIVE_INFINITY) {
+            overlayGraph.add(pass, i, overlayIndex[v], weights[e], delays[e], e);
+          }
+        }
+        Region region = regions[regionOf[u]];
+        for (int v : region.boundary) {
+          int slot = region.table.slot(localIndex[u], localIndex[v]);
+          if (v != u && region.table.cost[slot] != Double.POSITIVE_INFINITY) {
+            overlayGraph.add(pass, i, overlayIndex[v], region.table.cost[slot], region.table.delay[slot], -1);
+          }
+        }
+      }
+      overlayGraph.endPass(pass);
+    }
+    return new PartitionedShortestPaths(graph, regionOf, localIndex, regions, boundary, overlayIndex, overlayGraph.searchAll(parallel));
+  }
+
+  /**
+   * Split @vertices[@from, @to) into @numRegions regions numbered from @firstRegion, halving the wider side of their bounding box each time
+   */
+  private static void bisect(@NotNull CompactGraph graph, @NotNull Integer[] vertices, int from, int to, int numRegions, int firstRegion,
+                             @NotNull int[] regionOf) {
+    if (numRegions == 1) {
+      for (int i = from; i < to; i++) {
+        regionOf[vertices[i]] = firstRegion;
+      }
+      return;
+    }
+    double minX = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (int i = from; i < to; i++) {
+      Server server = graph.getServer(vertices[i]);
+      minX = Math.min(minX, server.getX());
+      maxX = Math.max(maxX, server.getX());
+      minY = Math.min(minY, server.getY());
+      maxY = Math.max(maxY, server.getY());
+    }
+    // vertices at the same coordinates (e.g., topologies without any) are split by index
+    Comparator<Integer> byX = Comparator.comparingDouble(v -> graph.getServer(v).getX());
+    Comparator<Integer> byY = Comparator.comparingDouble(v -> graph.getServer(v).getY());
+    Arrays.sort(vertices, from, to, (maxX - minX >= maxY - minY ? byX : byY).thenComparingInt(v -> v));
+    int left = numRegions / 2;
+    int mid = from + (int) ((long) (to - from) * (long) left / (long) numRegions);
+    bisect(graph, vertices, from, mid, left, firstRegion, regionOf);
+    bisect(graph, vertices, mid, to, numRegions - left, firstRegion + left, regionOf);
+  }
+
+  public int getNumRegions() {
+    return regions.length;
+  }
+
+  public int getNumBoundaryVertices() {
+    return boundary.length;
+  }
+
+  /**
+   * @return the number of entries of the region and overlay tables, against n^2 for all-pair shortest paths
+   */
+  public long getTableEntries() {
+    long entries = overlay.cost.length;
+    for (Region region : regions) {
+      entries += region.table.cost.length;
+    }
+    return entries;
+  }
+
+  public synchronized long getQueries() {
+    return queries;
+  }
+
+  @Override public double getCost(int srcId, int destId) {
+    return route(graph.indexOf(srcId), graph.indexOf(destId)).cost;
+  }
+
+  @Override public double getDelay(int srcId, int destId) {
+    return route(graph.indexOf(srcId), graph.indexOf(destId)).delay;
+  }
+
+  @Override public @NotNull ArrayList<Link> getPath(int srcId, int destId) {
+    int src = graph.indexOf(srcId);
+    int dest = graph.indexOf(destId);
+    Route route = route(src, dest);
+    ArrayList<Link> path = new ArrayList<>();
+    if (route.exit == -1) {
+      appendLocal(regionOf[src], src, dest, path);
+    } else {
+      appendLocal(regionOf[src], src, boundary[route.exit], path);
+      appendOverlay(route.exit, route.entry, path);
+      appendLocal(regionOf[dest], boundary[route.entry], dest, path);
+    }
+    return path;
+  }
+
+  /**
+   * @return the best way from @src to @dest: inside their region, or through the overlay
+   */
+  private @NotNull Route route(int src, int dest) {
+    synchronized (this) {
+      ++queries;
+    }
+    Route best = new Route();
+    if (src == dest) {
+      best.cost = 0d;
+      best.delay = 0d;
+      return best;
+    }
+    Region from = regions[regionOf[src]];
+    Region to = regions[regionOf[dest]];
+    int s = localIndex[src];
+    int t = localIndex[dest];
+    if (from == to) {
+      best.offer(from.table.cost[from.table.slot(s, t)], from.table.delay[from.table.slot(s, t)], -1, -1);
+    }
+    for (int b1 : from.boundary) {
+      int slot1 = from.table.slot(s, localIndex[b1]);
+      double cost1 = from.table.cost[slot1];
+      if (cost1 == Double.POSITIVE_INFINITY) {
+        continue;
+      }
+      int exit = overlayIndex[b1];
+      for (int b2 : to.boundary) {
+        int slot2 = to.table.slot(t, localIndex[b2]); // links are undirected, so d(b2, t) = d(t, b2)
+        int entry = overlayIndex[b2];
+        int slot = overlay.slot(exit, entry);
+        best.offer(cost1 + overlay.cost[slot] + to.table.cost[slot2], from.table.delay[slot1] + overlay.delay[slot] + to.table.delay[slot2], exit,
+                   entry);
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Append the links of the intra-region shortest path from @from to @to, in order, to @path
+   */
+  private void appendLocal(int r, int from, int to, @NotNull ArrayList<Link> path) {
+    Table table = regions[r].table;
+    int source = localIndex[from];
+    int size = path.size();
+    for (int v = localIndex[to]; v != source; ) {
+      int arc = table.predecessorArc[table.slot(source, v)];
+      path.add(graph.getLink(table.graph.link[arc]));
+      v = table.graph.tail(arc);
+    }
+    reverse(path, size);
+  }
+
+  /**
+   * Append the links of the shortest path between overlay vertices @from and @to, in order, to @path
+   */
+  private void appendOverlay(int from, int to, @NotNull ArrayList<Link> path) {
+    ArrayList<Integer> arcs = new ArrayList<>();
+    for (int v = to; v != from; ) {
+      int arc = overlay.predecessorArc[overlay.slot(from, v)];
+      arcs.add(arc);
+      v = overlay.graph.tail(arc);
+    }
+    for (int i = arcs.size() - 1; i >= 0; i--) {
+      int arc = arcs.get(i);
+      int link = overlay.graph.link[arc];
+      if (link != -1) {
+        path.add(graph.getLink(link));
+      } else {
+        int u = boundary[overlay.graph.tail(arc)];
+        appendLocal(regionOf[u], u, boundary[overlay.graph.heads[arc]], path);
+      }
+    }
+  }
+
+  private static void reverse(@NotNull ArrayList<Link> path, int from) {
+    for (int i = from, j = path.size() - 1; i < j; i++, j--) {
+      Link link = path.get(i);
+      path.set(i, path.get(j));
+      path.set(j, link);
+    }
+  }
+
+  @Override public synchronized String toString() {
+    return "PartitionedShortestPaths{" +
+        "vertices=" + graph.size() +
+        ", regions=" + regions.length +
+        ", boundaryVertices=" + boundary.length +
+        ", tableEntries=" + getTableEntries() +
+        ", queries=" + queries +
+        '}';
+  }
+
+  private static class Region {
+    @NotNull final int[] vertices; // by local index
+    int[] boundary; // the boundary vertices of the region
+    Table table; // shortest paths among the vertices, inside the region
+
+    Region(@NotNull int[] vertices) {
+      this.vertices = vertices;
+    }
+  }
+
+  /**
+   * The best route of a query so far
+   */
+  private static class Route {
+    double cost = Double.POSITIVE_INFINITY;
+    double delay = Double.POSITIVE_INFINITY;
+    int exit = -1; // the overlay vertex where the path leaves the region of the source, or -1 if it stays in the region
+    int entry = -1; // the overlay vertex where the path enters the region of the destination for the last time
+
+    void offer(double cost, double delay, int exit, int entry) {
+      if (cost < this.cost || (cost == this.cost && delay < this.delay)) {
+        this.cost = cost;
+        this.delay = delay;
+        this.exit = exit;
+        this.entry = entry;
+      }
+    }
+  }
+
+  /**
+   * A small weighted graph, filled in two passes over its arcs: the first one counts the arcs of each vertex, the second one stores them
+   */
+  private static class Csr {
+    @NotNull final int[] offsets;
+    int[] heads;
+    int[] tails;
+    double[] cost;
+    double[] delay;
+    int[] link; // the link each arc runs over, or -1 for an overlay arc standing for an intra-region path
+    private int[] next;
+
+    Csr(int size) {
+      offsets = new int[size + 1];
+    }
+
+    int size() {
+      return offsets.length - 1;
+    }
+
+    void add(int pass, int u, int v, double w, double d, int e) {
+      if (pass == 0) {
+        offsets[u + 1]++;
+        return;
+      }
+      int arc = next[u]++;
+      heads[arc] = v;
+      tails[arc] = u;
+      cost[arc] = w;
+      delay[arc] = d;
+      link[arc] = e;
+    }
+
+    void endPass(int pass) {
+      if (pass == 0) {
+        for (int v = 0; v < size(); v++) {
+          offsets[v + 1] += offsets[v];
+        }
+        int numArcs = offsets[size()];
+        heads = new int[numArcs];
+        tails = new int[numArcs];
+        cost = new double[numArcs];
+        delay = new double[numArcs];
+        link = new int[numArcs];
+        next = Arrays.copyOf(offsets, size());
+      } else {
+        next = null;
+      }
+    }
+
+    int tail(int arc) {
+      return tails[arc];
+    }
+
+    /**
+     * @return the shortest paths between all vertices, with a Dijkstra search from each of them
+     */
+    @NotNull Table searchAll(boolean parallel) {
+      Table table = new Table(this);
+      ThreadLocal<IndexedMinHeap> heaps = ThreadLocal.withInitial(() -> new IndexedMinHeap(size()));
+      IntStream sources = IntStream.range(0, size());
+      (parallel ? sources.parallel() : sources).forEach(source -> search(source, table, heaps.get()));
+      return table;
+    }
+
+    private void search(int source, @NotNull Table table, @NotNull IndexedMinHeap heap) {
+      int row = table.slot(source, 0);
+      double[] pathCost = table.cost;
+      double[] pathDelay = table.delay;
+      int[] predecessorArc = table.predecessorArc;
+      Arrays.fill(pathCost, row, row + size(), Double.POSITIVE_INFINITY);
+      Arrays.fill(pathDelay, row, row + size(), Double.POSITIVE_INFINITY);
+      Arrays.fill(predecessorArc, row, row + size(), -1);
+      pathCost[row + source] = 0d;
+      pathDelay[row + source] = 0d;
+      heap.clear();
+      heap.insertOrDecrease(source, 0d);
+      while (!heap.isEmpty()) {
+        int u = heap.poll();
+        for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+          int v = heads[arc];
+          double alt = pathCost[row + u] + cost[arc];
+          double altDelay = pathDelay[row + u] + delay[arc];
+          if (alt < pathCost[row + v]) {
+            pathCost[row + v] = alt;
+            pathDelay[row + v] = altDelay;
+            predecessorArc[row + v] = arc;
+            heap.insertOrDecrease(v, alt);
+          } else if (alt == pathCost[row + v] && altDelay < pathDelay[row + v]) { // as fast, but with a lower delay
+            pathDelay[row + v] = altDelay;
+            predecessorArc[row + v] = arc;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Shortest paths between all vertices of a {@link Csr}, row by row
+   */
+  private static class Table {
+    @NotNull final Csr graph;
+    @NotNull final double[] cost;
+    @NotNull final double[] delay;
+    @NotNull final int[] predecessorArc; // the last arc on the shortest path from the source of the row, or -1
+
+    Table(@NotNull Csr graph) {
+      int entries = graph.size() * graph.size();
+      this.graph = graph;
+      this.cost = new double[entries];
+      this.delay = new double[entries];
+      this.predecessorArc = new int[entries];
+    }
+
+    int slot(int source, int target) {
+      return source * graph.size() + target;
+    }
+  }
+}
@@ -0,0 +1,367 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import Network.Link;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Shortest paths between all servers, computed on the core of a {@link TopologyReduction} only.
+ * <p>
+ * Every super-edge costs the sum of the weights of its links, and is unusable if one of them is (e.g., if it lacks residual bandwidth); all-pair shortest
+ * paths are then only computed between the core vertices. Every other vertex reaches the core through at most two exits: the root of its tree, through
+ * the ends of the chain the root is inside of if it is not a core vertex. A query combines the path up the tree, to each exit, between the exits, and down
+ * to the target, except that vertices of the same tree are joined through their lowest common ancestor, and vertices inside the same chain may also be
+ * joined along it. Paths through super-edges and trees are only expanded into links when asked for.
+ * <p>
+ * Between two combinations of equal cost, a query keeps the one with the lower delay, and so do the all-pair shortest paths of the core. A cost is the sum
+ * of the tree, chain and core parts of its path, each summed on its own, which may round differently from the sum {@link DijkstraEngine} accumulates link
+ * by link.
+ */
+public class ReducedShortestPaths implements DistanceOracle {
+  @NotNull private final TopologyReduction reduction;
+  @NotNull private final CompactGraph graph;
+  @NotNull private final double[] weights;
+  @NotNull private final double[] delays;
+  @NotNull private final double[] upCost; // the cost of the path from a vertex to its root, 0 if it is not peeled
+  @NotNull private final double[] upDelay;
+  // the cost of the links of a chain up to link j included, and from link j included, with j indexing TopologyReduction.chainLinks
+  @NotNull private final double[] prefixCost;
+  @NotNull private final double[] prefixDelay;
+  @NotNull private final double[] suffixCost;
+  @NotNull private final double[] suffixDelay;
+  // the shortest paths between core vertices i and j at slot i * k + j, k being the number of core vertices
+  @NotNull private final double[] coreCost;
+  @NotNull private final double[] coreDelay;
+  @NotNull private final int[] corePredecessorArc; // the last super-edge arc on the shortest path, or -1
+
+  private ReducedShortestPaths(@NotNull TopologyReduction reduction, @NotNull double[] weights, @NotNull double[] delays) {
+    this.reduction = reduction;
+    this.graph = reduction.graph;
+    this.weights = weights;
+    this.delays = delays;
+    int n = graph.size();
+    this.upCost = new double[n];
+    this.upDelay = new double[n];
+    for (int v : reduction.peeled) { // parents first
+      int e = reduction.parentLink[v];
+      int parent = graph.otherEnd(e, v);
+      upCost[v] = upCost[parent] + weights[e];
+      upDelay[v] = upDelay[parent] + delays[e];
+    }
+    int numChainLinks = reduction.chainLinks.length;
+    this.prefixCost = new double[numChainLinks];
+    this.prefixDelay = new double[numChainLinks];
+    this.suffixCost = new double[numChainLinks];
+    this.suffixDelay = new double[numChainLinks];
+    for (int c = 0; c < reduction.numChains(); c++) {
+      int from = reduction.chainOffsets[c];
+      int to = reduction.chainOffsets[c + 1];
+      double cost = 0d;
+      double delay = 0d;
+      for (int j = from; j < to; j++) {
+        cost += weights[reduction.chainLinks[j]];
+        delay += delays[reduction.chainLinks[j]];
+        prefixCost[j] = cost;
+        prefixDelay[j] = delay;
+      }
+      cost = 0d;
+      delay = 0d;
+      for (int j = to - 1; j >= from; j--) {
+        cost += weights[reduction.chainLinks[j]];
+        delay += delays[reduction.chainLinks[j]];
+        suffixCost[j] = cost;
+        suffixDelay[j] = delay;
+      }
+    }
+    int k = reduction.numCoreVertices();
+    this.coreCost = new double[k * k];
+    this.coreDelay = new double[k * k];
+    this.corePredecessorArc = new int[k * k];
+  }
+
+  /**
+   * @param weights the weight of each link, indexed by link; links with an infinite weight cannot be used
+   * @param delays the delay of each link, indexed by link
+   * @param parallel whether the core vertices may be searched from in parallel
+   * @return the shortest paths, or null if some server cannot reach some other server
+   */
+  public static @Nullable ReducedShortestPaths compute(@NotNull TopologyReduction reduction, @NotNull double[] weights, @NotNull double[] delays,
+                                                       boolean parallel) {
+    if (!reduction.graph.isConnected(weights)) {
+      return null;
+    }
+    ReducedShortestPaths paths = new ReducedShortestPaths(reduction, weights.clone(), delays.clone());
+    int k = reduction.numCoreVertices();
+    ThreadLocal<IndexedMinHeap> heaps = ThreadLocal.withInitial(() -> new IndexedMinHeap(k));
+    IntStream sources = IntStream.range(0, k);
+    (parallel ? sources.parallel() : sources).forEach(source -> paths.searchCore(source, heaps.get()));
+    return paths;
+  }
+
+  private double chainCost(int chain) {
+    return prefixCost[reduction.chainOffsets[chain + 1] - 1];
+  }
+
+  private double chainDelay(int chain) {
+    return prefixDelay[reduction.chainOffsets[chain + 1] - 1];
+  }
+
+  private void searchCore(int source, @NotNull IndexedMinHeap heap) {
+    int k = reduction.numCoreVertices();
+    int row = source * k;
+    Arrays.fill(coreCost, row, row + k, Double.POSITIVE_INFINITY);
+    Arrays.fill(coreDelay, row, row + k, Double.POSITIVE_INFINITY);
+    Arrays.fill(corePredecessorArc, row, row + k, -1);
+    coreCost[row + source] = 0d;
+    coreDelay[row + source] = 0d;
+    heap.clear();
+    heap.insertOrDecrease(source, 0d);
+    while (!heap.isEmpty()) {
+      int u = heap.poll();
+      for (int arc = reduction.coreOffsets[u]; arc < reduction.coreOffsets[u + 1]; arc++) {
+        int chain = reduction.coreArcChains[arc] >= 0 ? reduction.coreArcChains[arc] : ~reduction.coreArcChains[arc];
+        double w = chainCost(chain);
+        if (w == Double.POSITIVE_INFINITY) {
+          continue;
+        }
+        int v = reduction.coreHeads[arc];
+        double alt = coreCost[row + u] + w;
+        double altDelay = coreDelay[row + u] + chainDelay(chain);
+        if (alt < coreCost[row + v]) {
+          coreCost[row + v] = alt;
+          coreDelay[row + v] = altDelay;
+          corePredecessorArc[row + v] = arc;
+          heap.insertOrDecrease(v, alt);
+        } else if (alt == coreCost[row + v] && altDelay < coreDelay[row + v]) { // as fast, but with a lower delay
+          coreDelay[row + v] = altDelay;
+          corePredecessorArc[row + v] = arc;
+        }
+      }
+    }
+  }
+
+  @Override public double getCost(int srcId, int destId) {
+    return route(graph.indexOf(srcId), graph.indexOf(destId)).cost;
+  }
+
+  @Override public double getDelay(int srcId, int destId) {
+    return route(graph.indexOf(srcId), graph.indexOf(destId)).delay;
+  }
+
+  @Override public @NotNull ArrayList<Link> getPath(int srcId, int destId) {
+    int s = graph.indexOf(srcId);
+    int t = graph.indexOf(destId);
+    Route route = route(s, t);
+    ArrayList<Link> path = new ArrayList<>();
+    if (route.lowestCommonAncestor >= 0) {
+      appendUp(path, s, route.lowestCommonAncestor);
+      appendDown(path, route.lowestCommonAncestor, t);
+      return path;
+    }
+    int rootS = reduction.root[s];
+    int rootT = reduction.root[t];
+    appendUp(path, s, rootS);
+    if (route.alongChain) {
+      appendChain(path, rootS, rootT);
+    } else {
+      appendToExit(path, rootS, route.sideS);
+      appendCore(path, exit(rootS, route.sideS), exit(rootT, route.sideT));
+      appendFromExit(path, route.sideT, rootT);
+    }
+    appendDown(path, rootT, t);
+    return path;
+  }
+
+  /**
+   * The shortest path between two vertices, as how it crosses the reduction
+   */
+  private static class Route {
+    double cost = Double.POSITIVE_INFINITY;
+    double delay = Double.POSITIVE_INFINITY;
+    int lowestCommonAncestor = -1; // if the vertices hang from the same root, the vertex their path turns at
+    boolean alongChain = false; // whether the roots of the vertices are inside the same chain and joined along it
+    int sideS = 0; // otherwise, the exits the path enters and leaves the core through (see exit)
+    int sideT = 0;
+
+    boolean offer(double cost, double delay) {
+      if (cost < this.cost || (cost == this.cost && delay < this.delay)) {
+        this.cost = cost;
+        this.delay = delay;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  private @NotNull Route route(int s, int t) {
+    Route route = new Route();
+    int rootS = reduction.root[s];
+    int rootT = reduction.root[t];
+    if (rootS == rootT) {
+      int a = s;
+      int b = t;
+      double cost = 0d;
+      double delay = 0d;
+      while (a != b) {
+        int e;
+        if (reduction.depth[a] >= reduction.depth[b]) {
+          e = reduction.parentLink[a];
+          a = graph.otherEnd(e, a);
+        } else {
+          e = reduction.parentLink[b];
+          b = graph.otherEnd(e, b);
+        }
+        cost += weights[e];
+        delay += delays[e];
+      }
+      route.cost = cost;
+      route.delay = delay;
+      route.lowestCommonAncestor = a;
+      return route;
+    }
+
+    int chainS = reduction.chainOf[rootS];
+    int chainT = reduction.chainOf[rootT];
+    if (chainS >= 0 && chainS == chainT) {
+      int from = reduction.chainOffsets[chainS] + Math.min(reduction.positionInChain[rootS], reduction.positionInChain[rootT]) + 1;
+      int to = reduction.chainOffsets[chainS] + Math.max(reduction.positionInChain[rootS], reduction.positionInChain[rootT]) + 1;
+      double cost = upCost[s];
+      double delay = upDelay[s];
+      for (int j = from; j < to; j++) {
+        cost += weights[reduction.chainLinks[j]];
+        delay += delays[reduction.chainLinks[j]];
+      }
+      route.offer(cost + upCost[t], delay + upDelay[t]);
+      route.alongChain = true;
+    }
+    int k = reduction.numCoreVertices();
+    for (int sideS = 0; sideS < (chainS >= 0 ? 2 : 1); sideS++) {
+      int exitS = exit(rootS, sideS);
+      double costS = upCost[s] + exitCost(rootS, sideS, prefixCost, suffixCost);
+      double delayS = upDelay[s] + exitCost(rootS, sideS, prefixDelay, suffixDelay);
+      for (int sideT = 0; sideT < (chainT >= 0 ? 2 : 1); sideT++) {
+        int exitT = exit(rootT, sideT);
+        int slot = reduction.coreIndex[exitS] * k + reduction.coreIndex[exitT];
+        double cost = costS + coreCost[slot] + exitCost(rootT, sideT, prefixCost, suffixCost) + upCost[t];
+        double delay = delayS + coreDelay[slot] + exitCost(rootT, sideT, prefixDelay, suffixDelay) + upDelay[t];
+        if (route.offer(cost, delay)) {
+          route.alongChain = false;
+          route.sideS = sideS;
+          route.sideT = sideT;
+        }
+      }
+    }
+    return route;
+  }
+
+  /**
+   * @return the core vertex @v leaves its chain through towards its start (@side 0) or its end (@side 1), or @v itself if it is a core vertex
+   */
+  private int exit(int v, int side) {
+    int chain = reduction.chainOf[v];
+    return chain < 0 ? v : reduction.chainEnds[2 * chain + side];
+  }
+
+  /**
+   * @return the cost (or delay, with the delay sums) of the path from @v to its exit on @side
+   */
+  private double exitCost(int v, int side, @NotNull double[] prefix, @NotNull double[] suffix) {
+    int chain = reduction.chainOf[v];
+    if (chain < 0) {
+      return 0d;
+    }
+    int j = reduction.chainOffsets[chain] + reduction.positionInChain[v];
+    return side == 0 ? prefix[j] : suffix[j + 1];
+  }
+
+  private void appendUp(@NotNull ArrayList<Link> path, int v, int ancestor) {
+    for (; v != ancestor; v = graph.otherEnd(reduction.parentLink[v], v)) {
+      path.add(graph.getLink(reduction.parentLink[v]));
+    }
+  }
+
+  private void appendDown(@NotNull ArrayList<Link> path, int ancestor, int v) {
+    int from = path.size();
+    appendUp(path, v, ancestor);
+    reverse(path, from);
+  }
+
+  /**
+   * Append the links of the chain between @u and @v, which are inside the same chain
+   */
+  private void appendChain(@NotNull ArrayList<Link> path, int u, int v) {
+    int start = reduction.chainOffsets[reduction.chainOf[u]];
+    int i = reduction.positionInChain[u];
+    int j = reduction.positionInChain[v];
+    if (i < j) {
+      for (int l = start + i + 1; l <= start + j; l++) {
+        path.add(graph.getLink(reduction.chainLinks[l]));
+      }
+    } else {
+      for (int l = start + i; l > start + j; l--) {
+        path.add(graph.getLink(reduction.chainLinks[l]));
+      }
+    }
+  }
+
+  /**
+   * Append the links from @v to its exit on @side
+   */
+  private void appendToExit(@NotNull ArrayList<Link> path, int v, int side) {
+    int chain = reduction.chainOf[v];
+    if (chain < 0) {
+      return;
+    }
+    int start = reduction.chainOffsets[chain];
+    int j = start + reduction.positionInChain[v];
+    if (side == 0) {
+      for (int l = j; l >= start; l--) {
+        path.add(graph.getLink(reduction.chainLinks[l]));
+      }
+    } else {
+      for (int l = j + 1; l < reduction.chainOffsets[chain + 1]; l++) {
+        path.add(graph.getLink(reduction.chainLinks[l]));
+      }
+    }
+  }
+
+  private void appendFromExit(@NotNull ArrayList<Link> path, int side, int v) {
+    int from = path.size();
+    appendToExit(path, v, side);
+    reverse(path, from);
+  }
+
+  private void appendCore(@NotNull ArrayList<Link> path, int exitS, int exitT) {
+    int k = reduction.numCoreVertices();
+    int row = reduction.coreIndex[exitS] * k;
+    int from = path.size();
+    for (int v = reduction.coreIndex[exitT]; corePredecessorArc[row + v] >= 0; ) {
+      int arc = corePredecessorArc[row + v];
+      int chain = reduction.coreArcChains[arc];
+      if (chain >= 0) { // the arc runs forwards over the chain, and the links are appended backwards
+        for (int l = reduction.chainOffsets[chain + 1] - 1; l >= reduction.chainOffsets[chain]; l--) {
+          path.add(graph.getLink(reduction.chainLinks[l]));
+        }
+        v = reduction.coreIndex[reduction.chainEnds[2 * chain]];
+      } else {
+        for (int l = reduction.chainOffsets[~chain]; l < reduction.chainOffsets[~chain + 1]; l++) {
+          path.add(graph.getLink(reduction.chainLinks[l]));
+        }
+        v = reduction.coreIndex[reduction.chainEnds[2 * ~chain + 1]];
+      }
+    }
+    reverse(path, from);
+  }
+
+  private static void reverse(@NotNull ArrayList<Link> path, int from) {
+    for (int i = from, j = path.size() - 1; i < j; i++, j--) {
+      Link link = path.get(i);
+      path.set(i, path.get(j));
+      path.set(j, link);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import Network.Link;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Shortest paths among a few vertices of a {@link CompactGraph} only.
+ * <p>
+ * An auxiliary network only reads the shortest paths between the source, the destination and the servers of its service layers. Instead of n searches over
+ * the whole graph, one search is run from each of these k vertices, and each search stops as soon as all k vertices are settled. Costs and delays are kept
+ * in k x k tables, and paths are rebuilt from the predecessor links of the searches when asked for. A pair involving another vertex is served by a full
+ * search from its source, run on first use.
+ */
+public class RestrictedShortestPaths implements DistanceOracle {
+  @NotNull private final CompactGraph graph;
+  @NotNull private final int[] vertices; // the vertices paths are known between; vertices[i] has slot i in the tables
+  @NotNull private final int[] slotOf; // slotOf[v] is the slot of vertex v, or -1 if v is not one of the vertices
+  @NotNull private final double[][] pathCosts;
+  @NotNull private final double[][] pathDelays;
+  @NotNull private final int[][] predecessorLinks; // predecessorLinks[i][v] is the last link on the shortest path from vertices[i] to v, if v is settled
+  @NotNull private final double[] weights;
+  @NotNull private final double[] delays;
+  private final boolean parallel;
+  private final double bucketWidth;
+  @NotNull private final HashMap<Integer, ShortestPathTree> fullTrees = new HashMap<>(); // full searches run for other pairs, by source vertex
+
+  private RestrictedShortestPaths(@NotNull CompactGraph graph, @NotNull int[] vertices, @NotNull int[] slotOf, @NotNull double[] weights,
+                                  @NotNull double[] delays, boolean parallel, double bucketWidth) {
+    int k = vertices.length;
+    this.graph = graph;
+    this.vertices = vertices;
+    this.slotOf = slotOf;
+    this.weights = weights;
+    this.delays = delays;
+    this.parallel = parallel;
+    this.bucketWidth = bucketWidth;
+    this.pathCosts = new double[k][k];
+    this.pathDelays = new double[k][k];
+    this.predecessorLinks = new int[k][];
+  }
+
+  /**
+   * Run one single-source search from each of @vertices, stopping once all of @vertices are settled
+   *
+   * @param vertices distinct vertex indices
+   * @param weights the weight of each link, indexed by link; links with an infinite weight cannot be used
+   * @param delays the delay of each link, indexed by link
+   * @param parallel whether the sources may be searched in parallel, or each search split across cores if there are too few sources
+   * @param bucketWidth the bucket width of delta-stepping, or NaN to derive it from @weights
+   * @return the shortest paths among @vertices, or null if some server of the graph cannot reach some other server. The whole graph is checked, so that a
+   * request is rejected exactly when {@link AllPairShortestPaths#compute} would reject it.
+   */
+  public static @Nullable RestrictedShortestPaths compute(@NotNull CompactGraph graph, @NotNull int[] vertices, @NotNull double[] weights,
+                                                          @NotNull double[] delays, boolean parallel, double bucketWidth) {
+    if (!graph.isConnected(weights)) {
+      return null;
+    }
+    int[] slotOf = new int[graph.size()];
+    Arrays.fill(slotOf, -1);
+    boolean[] isTarget = new boolean[graph.size()];
+    for (int i = 0; i < vertices.length; i++) {
+      checkArgument(slotOf[vertices[i]] == -1, "Vertex %s is given twice", vertices[i]);
+      slotOf[vertices[i]] = i;
+      isTarget[vertices[i]] = true;
+    }
+
+    RestrictedShortestPaths paths = new RestrictedShortestPaths(graph, vertices.clone(), slotOf, weights.clone(), delays.clone(), parallel,
+                                                                 bucketWidth);
+    SourceSearch.run(graph, weights, vertices.length, parallel, bucketWidth, (i, engine, tree) -> {
+      engine.search(vertices[i], weights, delays, tree, isTarget, vertices.length);
+      for (int j = 0; j < vertices.length; j++) {
+        paths.pathCosts[i][j] = tree.getCost(vertices[j]);
+        paths.pathDelays[i][j] = tree.getDelay(vertices[j]);
+      }
+      paths.predecessorLinks[i] = tree.predecessorLink.clone();
+      return true;
+    });
+    return paths;
+  }
+
+  /**
+   * @return the number of vertices paths are known between
+   */
+  public int size() {
+    return vertices.length;
+  }
+
+  /**
+   * @return the full shortest path tree of vertex @src, searched on first use
+   */
+  private synchronized @NotNull ShortestPathTree fullTree(int src) {
+    ShortestPathTree tree = fullTrees.get(src);
+    if (tree == null) {
+      tree = new ShortestPathTree(graph.size());
+      SsspEngine.singleSourceEngines(graph, weights, parallel, bucketWidth).get().search(src, weights, delays, tree);
+      fullTrees.put(src, tree);
+    }
+    return tree;
+  }
+
+  @Override public double getCost(int srcId, int destId) {
+    int src = slotOf[graph.indexOf(srcId)];
+    int dest = slotOf[graph.indexOf(destId)];
+    if (src == -1 || dest == -1) {
+      return fullTree(graph.indexOf(srcId)).getCost(graph.indexOf(destId));
+    }
+    return pathCosts[src][dest];
+  }
+
+  @Override public double getDelay(int srcId, int destId) {
+    int src = slotOf[graph.indexOf(srcId)];
+    int dest = slotOf[graph.indexOf(destId)];
+    if (src == -1 || dest == -1) {
+      return fullTree(graph.indexOf(srcId)).getDelay(graph.indexOf(destId));
+    }
+    return pathDelays[src][dest];
+  }
+
+  @Override public @NotNull ArrayList<Link> getPath(int srcId, int destId) {
+    int src = graph.indexOf(srcId);
+    int dest = graph.indexOf(destId);
+    if (slotOf[src] == -1 || slotOf[dest] == -1) {
+      ArrayList<Link> path = fullTree(src).getPath(graph, dest);
+      checkState(path != null, "Server %s cannot reach server %s", srcId, destId);
+      return path;
+    }
+    int[] predecessorLink = predecessorLinks[slotOf[src]];
+    return graph.tracePath(v -> predecessorLink[v], src, dest);
+  }
+}
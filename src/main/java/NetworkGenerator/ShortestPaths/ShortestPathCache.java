@@ -0,0 +1,133 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import Algorithm.CostFunctions.CostFunction;
+import Simulation.Parameters;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches the shortest paths of one network for the current network epoch.
+ * <p>
+ * The epoch of a network is bumped whenever bandwidth is reserved or released on it. Within an epoch, the shortest paths only depend on the cost function
+ * (and the parameters it reads), on the bandwidth it is evaluated at if the cost function depends on it, and on which links the bandwidth pruning threshold
+ * removes. Two requests agreeing on these, e.g., a request following a rejected one with the same demand, or one in the same bandwidth class if
+ * {@link Parameters#numBandwidthClasses} is set, share one APSP. Target-restricted shortest paths (see {@link RestrictedShortestPaths}) are only shared by
+ * requests that need the same servers. A failed APSP (some server unreachable) is cached as well.
+ */
+public class ShortestPathCache {
+  private static final int MAX_ENTRIES = 16;
+
+  private long epoch = -1L;
+  @NotNull private final LinkedHashMap<Key, DistanceOracle> entries = new LinkedHashMap<Key, DistanceOracle>(MAX_ENTRIES, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override protected boolean removeEldestEntry(Map.Entry<Key, DistanceOracle> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  private long hits = 0;
+  private long misses = 0;
+
+  /**
+   * @return whether the shortest paths for @key are cached; a hit or a miss is counted
+   */
+  public boolean contains(@NotNull Key key) {
+    if (key.epoch != epoch) {
+      invalidate();
+      epoch = key.epoch;
+    }
+    if (entries.containsKey(key)) {
+      ++hits;
+      return true;
+    }
+    ++misses;
+    return false;
+  }
+
+  /**
+   * @return the cached shortest paths for @key, or null if they are cached as unavailable
+   */
+  public @Nullable DistanceOracle get(@NotNull Key key) {
+    return entries.get(key);
+  }
+
+  public void put(@NotNull Key key, @Nullable DistanceOracle paths) {
+    if (key.epoch != epoch) {
+      invalidate();
+      epoch = key.epoch;
+    }
+    entries.put(key, paths);
+  }
+
+  /**
+   * Drop all entries, e.g., because the tables they refer to are about to be updated in place
+   */
+  public void invalidate() {
+    entries.clear();
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  @Override public String toString() {
+    return "ShortestPathCache{" +
+        "epoch=" + epoch +
+        ", entries=" + entries.size() +
+        ", hits=" + hits +
+        ", misses=" + misses +
+        '}';
+  }
+
+  public static class Key {
+    private final long epoch;
+    @NotNull private final CostFunction costFunction;
+    @NotNull private final Parameters parameters;
+    private final double bandwidth;
+    @NotNull private final BitSet prunedLinks;
+    @Nullable private final BitSet targets;
+
+    /**
+     * @param epoch the epoch of the network
+     * @param bandwidth the bandwidth the link costs are evaluated at; ignored if the link costs of @costFunction do not depend on it
+     * @param prunedLinks the links removed by the bandwidth pruning threshold
+     * @param targets the vertices the shortest paths are restricted to, or null for all-pair shortest paths
+     */
+    public Key(long epoch, @NotNull CostFunction costFunction, @NotNull Parameters parameters, double bandwidth, @NotNull BitSet prunedLinks,
+               @Nullable BitSet targets) {
+      this.epoch = epoch;
+      this.costFunction = costFunction;
+      this.parameters = parameters;
+      this.bandwidth = costFunction.linkCostDependsOnBandwidth() ? bandwidth : Double.NaN;
+      this.prunedLinks = prunedLinks;
+      this.targets = targets;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return epoch == key.epoch && costFunction == key.costFunction && parameters == key.parameters
+          && Double.compare(bandwidth, key.bandwidth) == 0 && prunedLinks.equals(key.prunedLinks)
+          && Objects.equals(targets, key.targets);
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(epoch, System.identityHashCode(costFunction), System.identityHashCode(parameters), bandwidth, prunedLinks, targets);
+    }
+  }
+}
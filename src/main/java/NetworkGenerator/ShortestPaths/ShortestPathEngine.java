@@ -0,0 +1,32 @@
+package NetworkGenerator.ShortestPaths;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A single-source shortest path algorithm over a {@link CompactGraph}. {@link SsspEngine} picks one from the structure of the link weights.
+ * <p>
+ * All engines settle ties the same way: among the shortest paths to a vertex, the one with the lowest delay is kept. Given the same weights, every engine
+ * that can run on them therefore yields the same cost and delay for every vertex (only the predecessor link may differ, if two shortest paths also have the
+ * same delay). An engine owns its working memory, so one engine must not be shared between threads.
+ */
+public interface ShortestPathEngine {
+  /**
+   * Fill @tree with the shortest paths from vertex @source
+   *
+   * @param weights the weight of each link, indexed by link; links with an infinite weight cannot be used
+   * @param delays the delay of each link, indexed by link; the delay of a vertex is the delay along its shortest path with respect to @weights
+   */
+  default void search(int source, @NotNull double[] weights, @NotNull double[] delays, @NotNull ShortestPathTree tree) {
+    search(source, weights, delays, tree, null, 0);
+  }
+
+  /**
+   * Same as {@link #search(int, double[], double[], ShortestPathTree)}, except that the search stops as soon as the @numTargets vertices flagged in
+   * @isTarget are settled. Only the entries of settled vertices are final then; other vertices may keep tentative costs.
+   *
+   * @param isTarget flags the vertices whose shortest paths are needed, or null to settle all vertices
+   */
+  void search(int source, @NotNull double[] weights, @NotNull double[] delays, @NotNull ShortestPathTree tree, @Nullable boolean[] isTarget,
+              int numTargets);
+}
@@ -0,0 +1,287 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Recomputes the all-pair shortest paths of one network on a worker thread between online requests, so that admission does not wait for them.
+ * <p>
+ * Besides the state of the links, the link weights depend on a configuration: the cost function, the bandwidth it is evaluated at, and so on. The refresher
+ * keeps one snapshot per configuration, for the {@link #MAX_CONFIGURATIONS} configurations used last. Once bandwidth was reserved on the network,
+ * {@link #refresh} takes the new link weights of each configuration and queues their recomputation. The worker starts from the rows of the last snapshot,
+ * searches again only from the sources whose tree may have changed (see {@link DynamicShortestPaths}), in parallel if the snapshot allows it, and publishes
+ * the rows as a new snapshot tagged with the epoch of the network they reflect. Published snapshots are never written, so readers use them without locking.
+ * A refresh superseded by a later one before it is done is abandoned.
+ * <p>
+ * Readers decide how stale a snapshot they accept (see {@link #lookup}), and otherwise compute the snapshot of the current epoch in place (see
+ * {@link #compute}), which also starts from the last one.
+ */
+public class ShortestPathRefresher {
+  static final int MAX_CONFIGURATIONS = 8;
+
+  @NotNull private final CompactGraph graph;
+  @NotNull private final ThreadPoolExecutor worker;
+  @NotNull private final LinkedHashMap<Object, Snapshot> snapshots = new LinkedHashMap<Object, Snapshot>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override protected boolean removeEldestEntry(Map.Entry<Object, Snapshot> eldest) {
+      return size() > MAX_CONFIGURATIONS;
+    }
+  }; // guarded by this
+  private long requestedEpoch = -1L; // the epoch of the last refresh requested, guarded by this
+
+  @NotNull private final AtomicLong refreshes = new AtomicLong();
+  @NotNull private final AtomicLong abandonedRefreshes = new AtomicLong();
+  @NotNull private final AtomicLong recomputedSources = new AtomicLong();
+  @NotNull private final AtomicLong refreshNanos = new AtomicLong();
+  @NotNull private final AtomicLong maxRefreshNanos = new AtomicLong();
+  private long hits = 0; // guarded by this
+  private long fallbacks = 0; // guarded by this
+  private long lagEpochs = 0; // summed over hits, guarded by this
+
+  public ShortestPathRefresher(@NotNull CompactGraph graph) {
+    this.graph = graph;
+    this.worker = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+      Thread thread = new Thread(runnable, "shortest-path-refresher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.worker.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * @param configuration what the link weights depend on besides the state of the links, compared with equals
+   * @param epoch the epoch of the network now
+   * @param maxLag the number of epochs the snapshot may be behind @epoch
+   * @return the snapshot of @configuration if it is at most @maxLag epochs old, or null if the caller must compute shortest paths itself. A snapshot
+   * without shortest paths (some server was unreachable) is only returned for @epoch itself. A hit or a fallback is counted.
+   */
+  public synchronized @Nullable Snapshot lookup(@NotNull Object configuration, long epoch, long maxLag) {
+    Snapshot snapshot = snapshots.get(configuration);
+    if (snapshot == null || epoch - snapshot.epoch > maxLag || (snapshot.shortestPaths == null && snapshot.epoch != epoch)) {
+      ++fallbacks;
+      return null;
+    }
+    ++hits;
+    lagEpochs += epoch - snapshot.epoch;
+    return snapshot;
+  }
+
+  /**
+   * Compute the shortest paths of @configuration at @epoch on the calling thread, starting from its last snapshot if there is one, and publish them
+   *
+   * @param weights the weight of each link, indexed by link, which must not change afterwards
+   * @param delays the delay of each link, indexed by link, which must not change afterwards
+   * @param parallel whether sources may be searched in parallel, now and by later refreshes
+   * @param engine the engine full recomputations run with
+   * @param format how the tables are kept
+   * @return the shortest paths, or null if some server cannot reach some other server
+   */
+  public @Nullable AllPairShortestPaths compute(@NotNull Object configuration, long epoch, @NotNull double[] weights, @NotNull double[] delays,
+                                                boolean parallel, @NotNull ApspEngine engine, @NotNull MatrixFormat format) {
+    Snapshot previous;
+    synchronized (this) {
+      previous = snapshots.get(configuration);
+    }
+    AllPairShortestPaths shortestPaths = recompute(previous, weights, delays, parallel, engine, format);
+    publish(configuration, new Snapshot(epoch, weights, delays, shortestPaths, parallel, engine, format));
+    return shortestPaths;
+  }
+
+  /**
+   * Keep @snapshot as the one of @configuration, unless a newer one was published already
+   */
+  private synchronized void publish(@NotNull Object configuration, @NotNull Snapshot snapshot) {
+    Snapshot current = snapshots.get(configuration);
+    if (current == null || current.epoch < snapshot.epoch) {
+      snapshots.put(configuration, snapshot);
+    }
+  }
+
+  /**
+   * Queue the recomputation of the shortest paths of every configuration kept, for the link weights at @epoch. Must be called by the thread that changes
+   * the links, as the weights are read on the calling thread.
+   *
+   * @param weightsOf the weight of each link for a configuration, indexed by link
+   * @param delays the delay of each link, indexed by link
+   */
+  public void refresh(long epoch, @NotNull Function<Object, double[]> weightsOf, @NotNull double[] delays) {
+    long requested = System.nanoTime();
+    ArrayList<Object> configurations;
+    synchronized (this) {
+      if (epoch <= requestedEpoch) {
+        return;
+      }
+      requestedEpoch = epoch;
+      configurations = new ArrayList<>(snapshots.keySet());
+    }
+    ArrayList<double[]> weights = new ArrayList<>(configurations.size());
+    for (Object configuration : configurations) {
+      weights.add(weightsOf.apply(configuration));
+    }
+    double[] delaysAtEpoch = delays.clone();
+    worker.execute(() -> run(epoch, configurations, weights, delaysAtEpoch, requested));
+  }
+
+  private void run(long epoch, @NotNull ArrayList<Object> configurations, @NotNull ArrayList<double[]> weights, @NotNull double[] delays, long requested) {
+    for (int i = 0; i < configurations.size(); i++) {
+      Snapshot previous;
+      synchronized (this) {
+        if (requestedEpoch > epoch) {
+          abandonedRefreshes.incrementAndGet();
+          return;
+        }
+        previous = snapshots.get(configurations.get(i));
+      }
+      if (previous == null || previous.epoch >= epoch) { // dropped, or computed by a reader in the meantime
+        continue;
+      }
+      AllPairShortestPaths shortestPaths = recompute(previous, weights.get(i), delays, previous.parallel, previous.engine, previous.format);
+      publish(configurations.get(i), new Snapshot(epoch, weights.get(i), delays, shortestPaths, previous.parallel, previous.engine, previous.format));
+    }
+    long nanos = System.nanoTime() - requested;
+    refreshes.incrementAndGet();
+    refreshNanos.addAndGet(nanos);
+    maxRefreshNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  private @Nullable AllPairShortestPaths recompute(@Nullable Snapshot previous, @NotNull double[] weights, @NotNull double[] delays, boolean parallel,
+                                                   @NotNull ApspEngine engine, @NotNull MatrixFormat format) {
+    if (previous != null && previous.shortestPaths != null && previous.format == format && Arrays.equals(previous.delays, delays)) {
+      int[] changedLinks = DynamicShortestPaths.changedLinks(graph, previous.weights, weights);
+      if (changedLinks.length <= DynamicShortestPaths.FULL_RECOMPUTATION_RATIO * (double) graph.numLinks()) {
+        int[] sources = DynamicShortestPaths.affectedSources(graph, previous.shortestPaths, previous.weights, delays, changedLinks, weights);
+        recomputedSources.addAndGet(sources.length);
+        if (sources.length == 0) {
+          return previous.shortestPaths;
+        }
+        AllPairShortestPaths shortestPaths = previous.shortestPaths.copy(format);
+        return shortestPaths.recompute(sources, weights, delays, parallel) ? shortestPaths : null;
+      }
+    }
+    recomputedSources.addAndGet(graph.size());
+    return AllPairShortestPaths.compute(graph, weights, delays, parallel, engine, format);
+  }
+
+  /**
+   * Drop queued refreshes; the one running, if any, still completes
+   */
+  public void shutdown() {
+    worker.shutdownNow();
+  }
+
+  /**
+   * @return the number of refreshes completed
+   */
+  public long getRefreshes() {
+    return refreshes.get();
+  }
+
+  /**
+   * @return the number of refreshes abandoned because a later one was requested
+   */
+  public long getAbandonedRefreshes() {
+    return abandonedRefreshes.get();
+  }
+
+  /**
+   * @return the number of single-source searches run, by refreshes and in place
+   */
+  public long getRecomputedSources() {
+    return recomputedSources.get();
+  }
+
+  /**
+   * @return the average time from requesting a refresh to publishing its last snapshot, in nanoseconds
+   */
+  public double getAverageRefreshNanos() {
+    long count = refreshes.get();
+    return count == 0L ? 0d : (double) refreshNanos.get() / (double) count;
+  }
+
+  public long getMaxRefreshNanos() {
+    return maxRefreshNanos.get();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return the number of lookups that found no snapshot recent enough, after which the reader computed shortest paths in place
+   */
+  public synchronized long getFallbacks() {
+    return fallbacks;
+  }
+
+  /**
+   * @return the average number of epochs the snapshots returned by lookups were behind the network
+   */
+  public synchronized double getAverageLagEpochs() {
+    return hits == 0L ? 0d : (double) lagEpochs / (double) hits;
+  }
+
+  @Override public synchronized String toString() {
+    return "ShortestPathRefresher{" +
+        "configurations=" + snapshots.size() +
+        ", refreshes=" + refreshes +
+        ", abandonedRefreshes=" + abandonedRefreshes +
+        ", recomputedSources=" + recomputedSources +
+        ", averageRefreshNanos=" + getAverageRefreshNanos() +
+        ", maxRefreshNanos=" + maxRefreshNanos +
+        ", hits=" + hits +
+        ", fallbacks=" + fallbacks +
+        ", averageLagEpochs=" + getAverageLagEpochs() +
+        '}';
+  }
+
+  /**
+   * The shortest paths of one configuration at one epoch of the network, with what later refreshes need to recompute them
+   */
+  public static final class Snapshot {
+    private final long epoch;
+    @NotNull private final double[] weights;
+    @NotNull private final double[] delays;
+    @Nullable private final AllPairShortestPaths shortestPaths;
+    private final boolean parallel;
+    @NotNull private final ApspEngine engine;
+    @NotNull private final MatrixFormat format;
+
+    /**
+     * @param weights the link weights @shortestPaths were computed with, which must not change afterwards
+     * @param delays the link delays @shortestPaths were computed with, which must not change afterwards
+     * @param shortestPaths the shortest paths, or null if some server cannot reach some other server
+     * @param parallel whether refreshes may search sources in parallel
+     * @param engine the engine full recomputations run with
+     * @param format the format of the tables of @shortestPaths
+     */
+    Snapshot(long epoch, @NotNull double[] weights, @NotNull double[] delays, @Nullable AllPairShortestPaths shortestPaths, boolean parallel,
+                    @NotNull ApspEngine engine, @NotNull MatrixFormat format) {
+      this.epoch = epoch;
+      this.weights = weights;
+      this.delays = delays;
+      this.shortestPaths = shortestPaths;
+      this.parallel = parallel;
+      this.engine = engine;
+      this.format = format;
+    }
+
+    public long getEpoch() {
+      return epoch;
+    }
+
+    public @Nullable AllPairShortestPaths getShortestPaths() {
+      return shortestPaths;
+    }
+  }
+}
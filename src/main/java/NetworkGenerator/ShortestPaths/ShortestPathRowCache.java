@@ -0,0 +1,219 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import Network.Link;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Shortest paths computed one source at a time, when first read, for topologies too large for n x n tables.
+ * <p>
+ * Each row is the shortest path tree of one source (costs, delays and predecessor links, 20 bytes per vertex). The most recently used rows are kept up to a
+ * memory limit, the least recently used one is evicted (and its arrays reused) when a new row does not fit. An auxiliary graph only reads rows of the servers
+ * of its service layers, so memory scales with these servers rather than with n^2.
+ * <p>
+ * The rows are kept across requests: {@link #update} is called with the link weights of every request, and only drops the rows the new weights may change,
+ * with the same rules as {@link DynamicShortestPaths}. As a row cache is updated in place, it cannot be shared by two sets of weights at a time.
+ */
+public class ShortestPathRowCache implements DistanceOracle {
+  private static final long ROW_OVERHEAD_BYTES = 64L; // the tree object and the headers of its arrays
+
+  @NotNull private final CompactGraph graph;
+  @Nullable private ShortestPathEngine engine; // selected for the current weights
+  private final long memoryLimit;
+  private final int maxRows;
+  @NotNull private final LinkedHashMap<Integer, ShortestPathTree> rows = new LinkedHashMap<>(16, 0.75f, true); // by source vertex, in access order
+  @Nullable private ShortestPathTree spare; // the arrays of the last evicted row
+  @Nullable private double[] weights; // the link weights the rows reflect, null if they are not usable
+  @Nullable private double[] delays;
+
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+  private long invalidations = 0; // rows dropped because link weights changed
+
+  /**
+   * @param memoryLimit the bytes the rows may take; at least one row is always kept
+   */
+  public ShortestPathRowCache(@NotNull CompactGraph graph, long memoryLimit) {
+    checkArgument(memoryLimit > 0L, "The memory limit must be positive: %s", memoryLimit);
+    this.graph = graph;
+    this.memoryLimit = memoryLimit;
+    this.maxRows = (int) Math.max(1L, Math.min((long) Math.max(graph.size(), 1), memoryLimit / rowBytes(graph.size())));
+  }
+
+  /**
+   * @return the bytes taken by the row of one source in a graph of @n vertices
+   */
+  public static long rowBytes(int n) {
+    return (long) n * (2L * Double.BYTES + Integer.BYTES) + ROW_OVERHEAD_BYTES;
+  }
+
+  /**
+   * Switch to new link weights, dropping the rows they may change. Call this whenever the link weights may have changed, e.g., because link residuals
+   * changed.
+   *
+   * @param newWeights the weight of each link, indexed by link; links with an infinite weight cannot be used
+   * @param newDelays the delay of each link, indexed by link
+   * @param parallel whether each row may be searched on several cores, with delta-stepping
+   * @param bucketWidth the bucket width of delta-stepping, or NaN to derive it from @newWeights
+   * @return false if some server cannot reach some other server, in which case no rows can be read until the next successful update
+   */
+  public synchronized boolean update(@NotNull double[] newWeights, @NotNull double[] newDelays, boolean parallel, double bucketWidth) {
+    if (weights == null || !Arrays.equals(delays, newDelays)) {
+      invalidate();
+    } else {
+      dropAffectedRows(newWeights);
+    }
+    if (!graph.isConnected(newWeights)) {
+      invalidate();
+      return false;
+    }
+    if (engine == null || !Arrays.equals(weights, newWeights)) {
+      engine = SsspEngine.singleSourceEngines(graph, newWeights, parallel, bucketWidth).get();
+    }
+    weights = newWeights.clone();
+    delays = newDelays.clone();
+    return true;
+  }
+
+  /**
+   * Drop all rows, the next update recomputes them when read
+   */
+  public synchronized void invalidate() {
+    invalidations += rows.size();
+    rows.clear();
+    weights = null;
+    delays = null;
+  }
+
+  private void dropAffectedRows(@NotNull double[] newWeights) {
+    assert weights != null && delays != null;
+    int[] changed = DynamicShortestPaths.changedLinks(graph, weights, newWeights);
+    if (changed.length == 0) {
+      return;
+    }
+    if (changed.length > DynamicShortestPaths.FULL_RECOMPUTATION_RATIO * (double) graph.numLinks()) {
+      invalidations += rows.size();
+      rows.clear();
+      return;
+    }
+    Iterator<ShortestPathTree> it = rows.values().iterator();
+    while (it.hasNext()) {
+      ShortestPathTree tree = it.next();
+      for (int e : changed) {
+        int u = graph.linkS1(e);
+        int v = graph.linkS2(e);
+        double w = newWeights[e];
+        if (tree.predecessorLink[u] == e || tree.predecessorLink[v] == e // a tree edge changed
+            || (w < weights[e] && (DynamicShortestPaths.improves(tree.cost[u], tree.delay[u], w, delays[e], tree.cost[v], tree.delay[v], 0d)
+                                   || DynamicShortestPaths.improves(tree.cost[v], tree.delay[v], w, delays[e], tree.cost[u], tree.delay[u], 0d)))) {
+          ++invalidations;
+          it.remove();
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the row of vertex @src, computed if it is not cached
+   */
+  private @NotNull ShortestPathTree row(int src) {
+    if (weights == null || delays == null || engine == null) {
+      throw new IllegalStateException("The shortest path rows are not up to date");
+    }
+    ShortestPathTree tree = rows.get(src);
+    if (tree != null) {
+      ++hits;
+      return tree;
+    }
+    ++misses;
+    if (rows.size() >= maxRows) {
+      Iterator<Map.Entry<Integer, ShortestPathTree>> eldest = rows.entrySet().iterator();
+      spare = eldest.next().getValue();
+      eldest.remove();
+      ++evictions;
+    }
+    tree = spare != null ? spare : new ShortestPathTree(graph.size());
+    spare = null;
+    engine.search(src, weights, delays, tree);
+    rows.put(src, tree);
+    return tree;
+  }
+
+  @Override public synchronized double getCost(int srcId, int destId) {
+    return row(graph.indexOf(srcId)).getCost(graph.indexOf(destId));
+  }
+
+  @Override public synchronized double getDelay(int srcId, int destId) {
+    return row(graph.indexOf(srcId)).getDelay(graph.indexOf(destId));
+  }
+
+  /**
+   * Read the row of @srcId once, under one lock, rather than once per destination
+   */
+  @Override public synchronized void getCostsAndDelays(int srcId, @NotNull int[] destIds, @NotNull double[] costs, @NotNull double[] delays) {
+    ShortestPathTree tree = row(graph.indexOf(srcId));
+    for (int i = 0; i < destIds.length; i++) {
+      int dest = graph.indexOf(destIds[i]);
+      costs[i] = tree.getCost(dest);
+      delays[i] = tree.getDelay(dest);
+    }
+  }
+
+  @Override public synchronized @NotNull ArrayList<Link> getPath(int srcId, int destId) {
+    if (srcId == destId) {
+      return new ArrayList<>();
+    }
+    ArrayList<Link> path = row(graph.indexOf(srcId)).getPath(graph, graph.indexOf(destId));
+    assert path != null; // the graph is connected
+    return path;
+  }
+
+  public long getMemoryLimit() {
+    return memoryLimit;
+  }
+
+  public int getMaxRows() {
+    return maxRows;
+  }
+
+  public synchronized int size() {
+    return rows.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  @Override public synchronized String toString() {
+    return "ShortestPathRowCache{" +
+        "rows=" + rows.size() +
+        ", maxRows=" + maxRows +
+        ", hits=" + hits +
+        ", misses=" + misses +
+        ", evictions=" + evictions +
+        ", invalidations=" + invalidations +
+        '}';
+  }
+}
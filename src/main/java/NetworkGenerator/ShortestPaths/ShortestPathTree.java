@@ -0,0 +1,65 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import Network.Link;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The result of a single-source search on a {@link CompactGraph}: the cost and delay of the shortest path from the source to every vertex, and the link through
+ * which each vertex was reached. Unreachable vertices have an infinite cost and no predecessor link (-1).
+ * <p>
+ * Trees are meant to be reused across searches to avoid allocating three arrays per source.
+ */
+public class ShortestPathTree {
+  @NotNull final double[] cost;
+  @NotNull final double[] delay;
+  @NotNull final int[] predecessorLink;
+  int source = -1;
+
+  public ShortestPathTree(int size) {
+    cost = new double[size];
+    delay = new double[size];
+    predecessorLink = new int[size];
+  }
+
+  void reset(int source) {
+    this.source = source;
+    Arrays.fill(cost, Double.POSITIVE_INFINITY);
+    Arrays.fill(delay, Double.POSITIVE_INFINITY);
+    Arrays.fill(predecessorLink, -1);
+    cost[source] = 0d;
+    delay[source] = 0d;
+  }
+
+  public int getSource() {
+    return source;
+  }
+
+  public double getCost(int v) {
+    return cost[v];
+  }
+
+  public double getDelay(int v) {
+    return delay[v];
+  }
+
+  public int getPredecessorLink(int v) {
+    return predecessorLink[v];
+  }
+
+  public boolean isReachable(int v) {
+    return cost[v] != Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * @return the links of the shortest path from the source to @target, in order, or null if @target is unreachable
+   */
+  public ArrayList<Link> getPath(@NotNull CompactGraph graph, int target) {
+    if (!isReachable(target)) {
+      return null;
+    }
+    return graph.tracePath(v -> predecessorLink[v], source, target);
+  }
+}
@@ -0,0 +1,101 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs a batch of independent single-source searches, on a ForkJoin pool if it is worth it. Every leaf task owns one engine (the one {@link SsspEngine}
+ * selects for the weights of the batch) and one tree, which the body reuses for all sources of the leaf. A batch too small to split across sources is
+ * searched one source at a time, each search being split across cores instead if the graph is large enough (see {@link DeltaSteppingEngine}).
+ */
+class SourceSearch extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  // Below this many arcs times sources, a batch takes less time than forking tasks for it
+  static final long PARALLEL_WORK_THRESHOLD = 1L << 18;
+  // Number of sources searched by a leaf task
+  static final int SOURCES_PER_TASK = 8;
+
+  interface Body {
+    /**
+     * Search the @i-th source of the batch
+     *
+     * @return false to abandon the whole batch
+     */
+    boolean search(int i, @NotNull ShortestPathEngine engine, @NotNull ShortestPathTree tree);
+  }
+
+  @NotNull private final CompactGraph graph;
+  @NotNull private final Supplier<ShortestPathEngine> engines;
+  @NotNull private final Body body;
+  @NotNull private final AtomicBoolean abandoned;
+  private final int from;
+  private final int to;
+
+  private SourceSearch(@NotNull CompactGraph graph, @NotNull Supplier<ShortestPathEngine> engines, @NotNull Body body, @NotNull AtomicBoolean abandoned,
+                       int from, int to) {
+    this.graph = graph;
+    this.engines = engines;
+    this.body = body;
+    this.abandoned = abandoned;
+    this.from = from;
+    this.to = to;
+  }
+
+  /**
+   * Run @body for sources 0, ..., @count - 1
+   *
+   * @param weights the link weights the body searches with, which the engines are selected for
+   * @param parallel whether sources may be searched in parallel; small batches are always searched sequentially
+   * @return false if the batch was abandoned
+   */
+  static boolean run(@NotNull CompactGraph graph, @NotNull double[] weights, int count, boolean parallel, @NotNull Body body) {
+    return run(graph, weights, count, parallel, Double.NaN, body);
+  }
+
+  /**
+   * Same as {@link #run(CompactGraph, double[], int, boolean, Body)}
+   *
+   * @param bucketWidth the bucket width of delta-stepping if a small batch is searched with it, or NaN to derive it from @weights
+   */
+  static boolean run(@NotNull CompactGraph graph, @NotNull double[] weights, int count, boolean parallel, double bucketWidth, @NotNull Body body) {
+    boolean acrossSources = parallel && shouldRunInParallel(graph, count);
+    Supplier<ShortestPathEngine> engines = acrossSources ? SsspEngine.engines(graph, weights)
+                                                         : SsspEngine.singleSourceEngines(graph, weights, parallel, bucketWidth);
+    SourceSearch task = new SourceSearch(graph, engines, body, new AtomicBoolean(false), 0, count);
+    if (acrossSources) {
+      // forks into the pool of the calling thread if it is a ForkJoin worker (e.g., the experiment pool of Simulation), otherwise into the common pool
+      task.invoke();
+    } else {
+      task.searchSources();
+    }
+    return !task.abandoned.get();
+  }
+
+  static boolean shouldRunInParallel(@NotNull CompactGraph graph, int numSources) {
+    return Runtime.getRuntime().availableProcessors() > 1 && (long) numSources * (long) graph.numArcs() >= PARALLEL_WORK_THRESHOLD
+        && numSources > SOURCES_PER_TASK;
+  }
+
+  @Override protected void compute() {
+    if (to - from <= SOURCES_PER_TASK) {
+      searchSources();
+    } else {
+      int mid = (from + to) >>> 1;
+      invokeAll(new SourceSearch(graph, engines, body, abandoned, from, mid), new SourceSearch(graph, engines, body, abandoned, mid, to));
+    }
+  }
+
+  private void searchSources() {
+    ShortestPathEngine engine = engines.get();
+    ShortestPathTree tree = new ShortestPathTree(graph.size());
+    for (int i = from; i < to && !abandoned.get(); i++) {
+      if (!body.search(i, engine, tree)) {
+        abandoned.set(true);
+      }
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The single-source shortest path algorithms, and the choice between them from the structure of the link weights of a request.
+ * <p>
+ * The weights already reflect the cost function: {@link Algorithm.CostFunctions.LinCostFunction} gives every link the bandwidth of the request (BFS),
+ * {@link Algorithm.CostFunctions.OperationalCostFunction} gives static per-link costs, which are small integers in hand-built networks (Dial) and uniform
+ * random doubles on generated topologies (Dijkstra), and the exponential cost function gives arbitrary doubles (Dijkstra). Pruned links have an infinite
+ * weight and are ignored. All engines return the same costs and delays (see {@link ShortestPathEngine}), so the choice only affects the running time. The
+ * number of searches run by each engine is counted, see {@link #statistics()}.
+ */
+public enum SsspEngine {
+  BFS, // all usable links have the same positive weight, O(m)
+  DIAL, // all usable links weigh 1, ..., MAX_DIAL_MULTIPLE times a power of two, O(m + largest cost in quanta)
+  DIJKSTRA, // anything else, O(m log n)
+  DELTA_STEPPING; // instead of Dijkstra for searches run one at a time on large graphs, split across cores
+
+  // Below this many arcs, one search takes less time than forking tasks for its phases
+  static final int MIN_DELTA_STEPPING_ARCS = 1 << 17;
+
+  // Dial scans one bucket per quantum of the largest cost, so it only pays off for a few distinct weights
+  static final int MAX_DIAL_MULTIPLE = 255;
+
+  @NotNull private final LongAdder searches = new LongAdder();
+
+  /**
+   * @param weights the weight of each link, indexed by link; links with an infinite weight are ignored
+   * @return the fastest engine that is correct for @weights
+   */
+  public static @NotNull SsspEngine select(@NotNull CompactGraph graph, @NotNull double[] weights) {
+    return profile(graph, weights).engine;
+  }
+
+  /**
+   * @return a supplier of engines for @weights, e.g., one per thread
+   */
+  static @NotNull Supplier<ShortestPathEngine> engines(@NotNull CompactGraph graph, @NotNull double[] weights) {
+    WeightProfile profile = profile(graph, weights);
+    switch (profile.engine) {
+      case BFS:
+        return () -> new BfsEngine(graph);
+      case DIAL:
+        return () -> new DialEngine(graph, profile.quantum, profile.maxMultiple);
+      default:
+        return () -> new DijkstraEngine(graph);
+    }
+  }
+
+  /**
+   * @return a supplier of engines for searches that run one at a time: if @parallel is set and the graph is large enough, {@link DeltaSteppingEngine}
+   * replaces Dijkstra to split each search across cores, otherwise the same engines as {@link #engines(CompactGraph, double[])}
+   * @param bucketWidth the bucket width of delta-stepping, or NaN to derive it from @weights
+   */
+  static @NotNull Supplier<ShortestPathEngine> singleSourceEngines(@NotNull CompactGraph graph, @NotNull double[] weights, boolean parallel,
+                                                                  double bucketWidth) {
+    if (parallel && Runtime.getRuntime().availableProcessors() > 1 && graph.numArcs() >= MIN_DELTA_STEPPING_ARCS
+        && profile(graph, weights).engine == DIJKSTRA) {
+      return () -> new DeltaSteppingEngine(graph, bucketWidth);
+    }
+    return engines(graph, weights);
+  }
+
+  private static @NotNull WeightProfile profile(@NotNull CompactGraph graph, @NotNull double[] weights) {
+    double first = Double.NaN;
+    boolean uniform = true;
+    int minExponent = Integer.MAX_VALUE; // of the lowest set bit of all weights
+    for (int e = 0; e < weights.length; e++) {
+      double w = weights[e];
+      if (!graph.isRoutable(e) || w == Double.POSITIVE_INFINITY) {
+        continue;
+      }
+      if (!(w > 0d) || w < Double.MIN_NORMAL) { // zero, negative, NaN or subnormal: only Dijkstra handles it (or rejects it)
+        return new WeightProfile(DIJKSTRA, Double.NaN, 0);
+      }
+      if (Double.isNaN(first)) {
+        first = w;
+      }
+      uniform &= w == first;
+      long mantissa = (Double.doubleToRawLongBits(w) & 0xfffffffffffffL) | 0x10000000000000L;
+      minExponent = Math.min(minExponent, Math.getExponent(w) - 52 + Long.numberOfTrailingZeros(mantissa));
+    }
+    if (uniform) {
+      return new WeightProfile(BFS, Double.NaN, 0);
+    }
+    double quantum = Math.scalb(1d, minExponent);
+    long maxMultiple = 0L;
+    for (int e = 0; e < weights.length; e++) {
+      if (graph.isRoutable(e) && weights[e] != Double.POSITIVE_INFINITY) {
+        maxMultiple = Math.max(maxMultiple, (long) (weights[e] / quantum));
+        if (maxMultiple > MAX_DIAL_MULTIPLE) {
+          return new WeightProfile(DIJKSTRA, Double.NaN, 0);
+        }
+      }
+    }
+    return new WeightProfile(DIAL, quantum, (int) maxMultiple);
+  }
+
+  void countSearch() {
+    searches.increment();
+  }
+
+  /**
+   * @return the number of searches this engine ran, in this JVM
+   */
+  public long getSearches() {
+    return searches.sum();
+  }
+
+  /**
+   * @return the number of searches run by each engine, e.g., "BFS=120, DIAL=0, DIJKSTRA=4000, DELTA_STEPPING=0"
+   */
+  public static @NotNull String statistics() {
+    StringBuilder statistics = new StringBuilder();
+    for (SsspEngine engine : values()) {
+      statistics.append(statistics.length() == 0 ? "" : ", ").append(engine).append('=').append(engine.getSearches());
+    }
+    return statistics.toString();
+  }
+
+  private static class WeightProfile {
+    @NotNull final SsspEngine engine;
+    final double quantum;
+    final int maxMultiple;
+
+    WeightProfile(@NotNull SsspEngine engine, double quantum, int maxMultiple) {
+      this.engine = engine;
+      this.quantum = quantum;
+      this.maxMultiple = maxMultiple;
+    }
+  }
+}
@@ -0,0 +1,227 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The 2-core of a topology with its chains of degree-2 vertices merged into super-edges, which {@link ReducedShortestPaths} computes shortest paths on.
+ * <p>
+ * Vertices of degree 1 are peeled off until none is left, which leaves trees hanging from the remaining vertices: a peeled vertex keeps the link towards
+ * its parent, and only reaches the rest of the network through the root of its tree. Among the remaining vertices, those of degree 2 form chains between
+ * the others, the core vertices, and each chain becomes one super-edge between its ends: a vertex inside a chain only reaches the rest of the network
+ * through these two ends. A cycle of degree-2 vertices keeps one of them as a core vertex. Terminals, i.e., the servers that can host VNFs, are neither
+ * peeled nor merged, so that they are all core vertices.
+ * <p>
+ * The reduction only depends on the topology and the terminals, and is built once per network.
+ */
+public class TopologyReduction {
+  @NotNull final CompactGraph graph;
+  @NotNull final int[] parentLink; // the link from a peeled vertex to its parent, or -1 if the vertex is not peeled
+  @NotNull final int[] root; // the remaining vertex the tree of a peeled vertex hangs from, or the vertex itself if it is not peeled
+  @NotNull final int[] depth; // the number of links between a peeled vertex and its root
+  @NotNull final int[] peeled; // the peeled vertices, each after its parent
+  @NotNull final int[] coreIndex; // the index of a core vertex among the core vertices, or -1
+  @NotNull final int[] coreVertices;
+  @NotNull final int[] chainOf; // the chain a vertex is inside of, or -1
+  @NotNull final int[] positionInChain; // a vertex inside chain c at position i lies between links chainOffsets[c] + i and chainOffsets[c] + i + 1
+  @NotNull final int[] chainEnds; // chain c runs from vertex chainEnds[2c] to vertex chainEnds[2c + 1]
+  @NotNull final int[] chainOffsets; // the links of chain c are chainLinks[chainOffsets[c]], ..., chainLinks[chainOffsets[c + 1] - 1], in order
+  @NotNull final int[] chainLinks;
+  // the super-edges between core vertices: the arcs of core vertex i are coreOffsets[i], ..., coreOffsets[i + 1] - 1, and arc a runs to core vertex
+  // coreHeads[a] over chain coreArcChains[a] if it is not negative, or backwards over chain ~coreArcChains[a] otherwise
+  @NotNull final int[] coreOffsets;
+  @NotNull final int[] coreHeads;
+  @NotNull final int[] coreArcChains;
+
+  /**
+   * @param terminals the vertices to keep as core vertices
+   */
+  public TopologyReduction(@NotNull CompactGraph graph, @NotNull boolean[] terminals) {
+    this.graph = graph;
+    int n = graph.size();
+    int[] offsets = graph.offsets();
+    int[] neighbours = graph.neighbours();
+    int[] arcLinks = graph.arcLinks();
+
+    // peel off vertices of degree 1, which leaves every tree hanging from a vertex of higher degree, a terminal, or the last vertex of a tree component
+    int[] degree = new int[n];
+    int[] queue = new int[n];
+    int tail = 0;
+    for (int v = 0; v < n; v++) {
+      degree[v] = offsets[v + 1] - offsets[v];
+      if (degree[v] == 1 && !terminals[v]) {
+        queue[tail++] = v;
+      }
+    }
+    boolean[] isPeeled = new boolean[n];
+    parentLink = new int[n];
+    Arrays.fill(parentLink, -1);
+    for (int head = 0; head < tail; head++) {
+      int v = queue[head];
+      if (degree[v] == 0) { // the last vertex of its component
+        continue;
+      }
+      isPeeled[v] = true;
+      for (int arc = offsets[v]; arc < offsets[v + 1]; arc++) {
+        int u = neighbours[arc];
+        if (!isPeeled[u]) {
+          parentLink[v] = arcLinks[arc];
+          --degree[v];
+          if (--degree[u] == 1 && !terminals[u]) {
+            queue[tail++] = u;
+          }
+          break;
+        }
+      }
+    }
+    int numPeeled = 0;
+    for (int v = 0; v < n; v++) {
+      if (isPeeled[v]) {
+        numPeeled++;
+      }
+    }
+    peeled = new int[numPeeled];
+    root = new int[n];
+    depth = new int[n];
+    for (int v = 0; v < n; v++) {
+      root[v] = v;
+    }
+    for (int head = tail - 1, i = 0; head >= 0; head--) { // parents were peeled after their children
+      int v = queue[head];
+      if (isPeeled[v]) {
+        int parent = graph.otherEnd(parentLink[v], v);
+        root[v] = root[parent];
+        depth[v] = depth[parent] + 1;
+        peeled[i++] = v;
+      }
+    }
+
+    // merge the chains of remaining vertices of degree 2
+    boolean[] inside = new boolean[n];
+    for (int v = 0; v < n; v++) {
+      inside[v] = !isPeeled[v] && !terminals[v] && degree[v] == 2;
+    }
+    chainOf = new int[n];
+    Arrays.fill(chainOf, -1);
+    positionInChain = new int[n];
+    boolean[] linkInChain = new boolean[graph.numLinks()];
+    IntList ends = new IntList();
+    IntList linkOffsets = new IntList();
+    IntList links = new IntList();
+    linkOffsets.add(0);
+    for (int pass = 0; pass < 2; pass++) { // the second pass keeps one vertex of each cycle of vertices inside chains
+      for (int a = 0; a < n; a++) {
+        if (isPeeled[a] || (pass == 0 ? inside[a] : !inside[a] || chainOf[a] >= 0)) {
+          continue;
+        }
+        inside[a] = false;
+        for (int arc = offsets[a]; arc < offsets[a + 1]; arc++) {
+          if (isPeeled[neighbours[arc]] || linkInChain[arcLinks[arc]]) {
+            continue;
+          }
+          int chain = ends.size / 2;
+          int link = arcLinks[arc];
+          int v = neighbours[arc];
+          linkInChain[link] = true;
+          links.add(link);
+          for (int position = 0; inside[v]; position++) {
+            chainOf[v] = chain;
+            positionInChain[v] = position;
+            for (int next = offsets[v]; next < offsets[v + 1]; next++) {
+              if (!isPeeled[neighbours[next]] && arcLinks[next] != link) {
+                link = arcLinks[next];
+                break;
+              }
+            }
+            linkInChain[link] = true;
+            links.add(link);
+            v = graph.otherEnd(link, v);
+          }
+          ends.add(a);
+          ends.add(v);
+          linkOffsets.add(links.size);
+        }
+      }
+    }
+    chainEnds = Arrays.copyOf(ends.data, ends.size);
+    chainOffsets = Arrays.copyOf(linkOffsets.data, linkOffsets.size);
+    chainLinks = Arrays.copyOf(links.data, links.size);
+
+    coreIndex = new int[n];
+    Arrays.fill(coreIndex, -1);
+    int numCore = 0;
+    for (int v = 0; v < n; v++) {
+      if (!isPeeled[v] && chainOf[v] < 0) {
+        coreIndex[v] = numCore++;
+      }
+    }
+    coreVertices = new int[numCore];
+    for (int v = 0; v < n; v++) {
+      if (coreIndex[v] >= 0) {
+        coreVertices[coreIndex[v]] = v;
+      }
+    }
+    coreOffsets = new int[numCore + 1];
+    int numChains = numChains();
+    for (int c = 0; c < numChains; c++) {
+      if (chainEnds[2 * c] != chainEnds[2 * c + 1]) { // a chain coming back to where it started never shortens a path
+        coreOffsets[coreIndex[chainEnds[2 * c]] + 1]++;
+        coreOffsets[coreIndex[chainEnds[2 * c + 1]] + 1]++;
+      }
+    }
+    for (int i = 0; i < numCore; i++) {
+      coreOffsets[i + 1] += coreOffsets[i];
+    }
+    coreHeads = new int[coreOffsets[numCore]];
+    coreArcChains = new int[coreOffsets[numCore]];
+    int[] next = Arrays.copyOf(coreOffsets, numCore);
+    for (int c = 0; c < numChains; c++) {
+      int a = coreIndex[chainEnds[2 * c]];
+      int b = coreIndex[chainEnds[2 * c + 1]];
+      if (a != b) {
+        coreHeads[next[a]] = b;
+        coreArcChains[next[a]++] = c;
+        coreHeads[next[b]] = a;
+        coreArcChains[next[b]++] = ~c;
+      }
+    }
+  }
+
+  public int numCoreVertices() {
+    return coreVertices.length;
+  }
+
+  public int numPeeledVertices() {
+    return peeled.length;
+  }
+
+  /**
+   * @return the number of super-edges, including those standing for a single link between core vertices
+   */
+  public int numChains() {
+    return chainEnds.length / 2;
+  }
+
+  @Override public String toString() {
+    return "TopologyReduction{" +
+        "vertices=" + graph.size() +
+        ", coreVertices=" + numCoreVertices() +
+        ", peeledVertices=" + numPeeledVertices() +
+        ", chainVertices=" + (graph.size() - numCoreVertices() - numPeeledVertices()) +
+        ", chains=" + numChains() +
+        '}';
+  }
+
+  private static class IntList {
+    @NotNull int[] data = new int[16];
+    int size = 0;
+
+    void add(int value) {
+      if (size == data.length) {
+        data = Arrays.copyOf(data, 2 * size);
+      }
+      data[size++] = value;
+    }
+  }
+}
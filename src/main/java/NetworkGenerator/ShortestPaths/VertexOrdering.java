@@ -0,0 +1,102 @@
+package NetworkGenerator.ShortestPaths;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The orders the vertices of a {@link CompactGraph} can be numbered in, which is also the order of the rows and columns of every table indexed by vertex.
+ * <p>
+ * Server ids come from the topology files, where neighbours may be far apart. Reverse Cuthill-McKee numbers the vertices of each component in
+ * breadth-first order from a vertex of low degree, visiting neighbours by increasing degree, and reverses the result, so that the neighbours of a vertex get
+ * nearby indices: searches then touch nearby entries of the per-vertex arrays, and the shortest paths between close servers lie in nearby rows and columns.
+ * With COMPUTING_FIRST, the servers with computing capacity, i.e., those service layers are made of, come first (in reverse Cuthill-McKee order among them),
+ * so that the rows and columns read between service layers form one dense block.
+ * <p>
+ * The ids of the servers do not change, {@link CompactGraph#getServer} and {@link CompactGraph#indexOf} map indices and ids both ways.
+ */
+public enum VertexOrdering {
+  NETWORK, // the order of the servers of the network
+  REVERSE_CUTHILL_MCKEE,
+  COMPUTING_FIRST;
+
+  /**
+   * @param graph a graph numbered in network order
+   * @return the vertices of @graph in this order
+   */
+  @NotNull int[] order(@NotNull CompactGraph graph) {
+    int n = graph.size();
+    int[] order = new int[n];
+    for (int v = 0; v < n; v++) {
+      order[v] = v;
+    }
+    if (this == NETWORK) {
+      return order;
+    }
+    order = reverseCuthillMcKee(graph);
+    if (this == COMPUTING_FIRST) {
+      int[] partitioned = new int[n];
+      int next = 0;
+      for (int v : order) {
+        if (graph.getServer(v).getComputingCapacity() > 0d) {
+          partitioned[next++] = v;
+        }
+      }
+      for (int v : order) {
+        if (!(graph.getServer(v).getComputingCapacity() > 0d)) {
+          partitioned[next++] = v;
+        }
+      }
+      order = partitioned;
+    }
+    return order;
+  }
+
+  private static @NotNull int[] reverseCuthillMcKee(@NotNull CompactGraph graph) {
+    int n = graph.size();
+    int[] offsets = graph.offsets();
+    int[] neighbours = graph.neighbours();
+    Integer[] byDegree = new Integer[n];
+    for (int v = 0; v < n; v++) {
+      byDegree[v] = v;
+    }
+    Arrays.sort(byDegree, (u, v) -> Integer.compare(offsets[u + 1] - offsets[u], offsets[v + 1] - offsets[v])); // stable, so ties keep network order
+    int[] rank = new int[n]; // the position of each vertex by degree
+    for (int i = 0; i < n; i++) {
+      rank[byDegree[i]] = i;
+    }
+
+    int[] order = new int[n];
+    boolean[] visited = new boolean[n];
+    int tail = 0;
+    int[] scratch = new int[n];
+    for (Integer start : byDegree) { // each component starts at its vertex of lowest degree
+      if (visited[start]) {
+        continue;
+      }
+      visited[start] = true;
+      order[tail++] = start;
+      for (int head = tail - 1; head < tail; head++) {
+        int u = order[head];
+        int count = 0;
+        for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+          int v = neighbours[arc];
+          if (!visited[v]) {
+            visited[v] = true;
+            scratch[count++] = rank[v];
+          }
+        }
+        Arrays.sort(scratch, 0, count);
+        for (int i = 0; i < count; i++) {
+          order[tail++] = byDegree[scratch[i]];
+        }
+      }
+    }
+    for (int i = 0, j = n - 1; i < j; i++, j--) {
+      int v = order[i];
+      order[i] = order[j];
+      order[j] = v;
+    }
+    return order;
+  }
+}
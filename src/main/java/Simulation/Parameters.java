@@ -4,6 +4,12 @@ import java.util.Arrays;
 
 import Algorithm.CostFunctions.CostFunction;
 import Algorithm.CostFunctions.ExponentialCostFunction;
+import NetworkGenerator.ShortestPaths.ApspEngine;
+import NetworkGenerator.ShortestPaths.MatrixFormat;
+import NetworkGenerator.ShortestPaths.MatrixStorage;
+import NetworkGenerator.ShortestPaths.VertexOrdering;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 @SuppressWarnings("WeakerAccess") public class Parameters {
   public final int networkSize;
@@ -38,11 +44,46 @@ import Algorithm.CostFunctions.ExponentialCostFunction;
   public final double[] nfvInitCosts; //initialization cost of vnf service
   public final double[] nfvInitDelays; //initialization cost of vnf service
   public final double[] nfvProcessingDelays; //initialization cost of vnf service
+  public final boolean parallelShortestPaths; // run the per-source searches of APSP, or a single search on a large graph, on a ForkJoin pool
+  public final boolean incrementalShortestPaths; // in online mode, only recompute the source trees affected by the last reservation
+  public final boolean targetRestrictedShortestPaths; // in online mode, only search between the servers an auxiliary graph reads
+  public final ApspEngine apspEngine; // engine of full APSP computations; AUTO picks Floyd-Warshall on small dense topologies
+  public final long linkValueSeed; // seed of the random link values of each topology file, or -1 to draw new ones every time
+  public final String apspArtifactDirectory; // directory of the APSP artifacts of offline requests, or null to not persist them
+  public final MatrixStorage matrixStorage; // where APSP tables are kept: on the heap, in direct buffers, or in file-backed mappings
+  public final boolean symmetricDistances; // only store the upper triangle of APSP costs and delays
+  public final boolean singlePrecisionDistances; // store APSP costs and delays as floats, see MatrixFormat for the error bound
+  public final MatrixFormat matrixFormat; // the three settings above
+  public final long shortestPathRowCacheBytes; // if positive, compute shortest path rows on demand and keep this many bytes of them instead of APSP
+  public final int numLandmarks; // if positive, estimate server-to-server costs from this many landmark trees instead of APSP
+  public final double landmarkMaxError; // relative error of a landmark estimate beyond which the pair is searched exactly
+  public final int numRegions; // if positive, split the servers into this many regions by coordinates and compute two-level shortest paths instead of APSP
+  public final double deltaSteppingBucketWidth; // bucket width of single-source searches split across cores, NaN to derive it from the link costs
+  public final int numBandwidthClasses; // if positive, compute shortest paths at the request bandwidth rounded up to one of this many classes
+  public final boolean backgroundShortestPaths; // in online mode, recompute all-pair shortest paths on a worker thread after each reservation
+  public final long maxSnapshotLag; // the number of reservations background shortest paths may be behind the network before they are computed in place
+  public final boolean reduceTopology; // compute shortest paths on the topology with its trees peeled off and its chains merged instead of APSP
+  public final VertexOrdering vertexOrdering; // the order servers are numbered in by the shortest path engines and tables
+  public final boolean implicitAuxiliaryGraph; // search the auxiliary graph layer by layer, reading its arcs from the shortest paths, instead of building it
+  public final boolean pruneDominatedCandidates; // drop the servers of service layers that another server of the layer dominates on every arc
+  // search the service layers with a beam of this many servers per layer, which may miss the shortest path, or exactly if 0. Requires
+  // implicitAuxiliaryGraph, and only applies to the search without delays, as LARAC needs exact searches
+  public final int beamWidth;
+  // prune the partial paths of the delay-aware search that cannot meet the delay requirement or beat the best path found, with lower bounds on their rest.
+  // Requires implicitAuxiliaryGraph, as only the layered search applies the bounds
+  public final boolean branchAndBound;
 
   private Parameters(int networkSize, int[] networkSizes, boolean offline, int numTrials, double alpha, double beta, double threshold, CostFunction costFunc,
                      double serverRatio, double linkBWCapMin, double linkBWCapMax, double linkDelayMin, double linkDelayMax, double linkCostMax, double linkCostMin, int numRequests, int L,
                      double reqBWReqMin, double reqBWReqMax, double reqDelayReqMin, double reqDelayReqMax, double nfvProb, double[] nfvComputingReqs,
-                     double[] nfvRates, double[] nfvOperationalCosts, double[] nfvInitCosts, double[] nfvInitDelays, double[] nfvProcessingDelays) {
+                     double[] nfvRates, double[] nfvOperationalCosts, double[] nfvInitCosts, double[] nfvInitDelays, double[] nfvProcessingDelays,
+                     boolean parallelShortestPaths, boolean incrementalShortestPaths, boolean targetRestrictedShortestPaths, ApspEngine apspEngine,
+                     long linkValueSeed, String apspArtifactDirectory, MatrixStorage matrixStorage, boolean symmetricDistances,
+                     boolean singlePrecisionDistances, long shortestPathRowCacheBytes, int numLandmarks, double landmarkMaxError,
+                     int numRegions, double deltaSteppingBucketWidth, int numBandwidthClasses,
+                     boolean backgroundShortestPaths, long maxSnapshotLag, boolean reduceTopology,
+                     VertexOrdering vertexOrdering, boolean implicitAuxiliaryGraph,
+                     boolean pruneDominatedCandidates, int beamWidth, boolean branchAndBound) {
 
     this.nfvInitDelays = nfvInitDelays;
     this.nfvProcessingDelays = nfvProcessingDelays;
@@ -72,6 +113,30 @@ import Algorithm.CostFunctions.ExponentialCostFunction;
     this.costFunc = costFunc;
     this.nfvProb = nfvProb;
     this.offline = offline;
+    this.parallelShortestPaths = parallelShortestPaths;
+    this.incrementalShortestPaths = incrementalShortestPaths;
+    this.targetRestrictedShortestPaths = targetRestrictedShortestPaths;
+    this.apspEngine = apspEngine;
+    this.linkValueSeed = linkValueSeed;
+    this.apspArtifactDirectory = apspArtifactDirectory;
+    this.matrixStorage = matrixStorage;
+    this.symmetricDistances = symmetricDistances;
+    this.singlePrecisionDistances = singlePrecisionDistances;
+    this.matrixFormat = new MatrixFormat(matrixStorage, symmetricDistances, singlePrecisionDistances);
+    this.shortestPathRowCacheBytes = shortestPathRowCacheBytes;
+    this.numLandmarks = numLandmarks;
+    this.landmarkMaxError = landmarkMaxError;
+    this.numRegions = numRegions;
+    this.deltaSteppingBucketWidth = deltaSteppingBucketWidth;
+    this.numBandwidthClasses = numBandwidthClasses;
+    this.backgroundShortestPaths = backgroundShortestPaths;
+    this.maxSnapshotLag = maxSnapshotLag;
+    this.reduceTopology = reduceTopology;
+    this.vertexOrdering = vertexOrdering;
+    this.implicitAuxiliaryGraph = implicitAuxiliaryGraph;
+    this.pruneDominatedCandidates = pruneDominatedCandidates;
+    this.beamWidth = beamWidth;
+    this.branchAndBound = branchAndBound;
   }
 
   @Override public String toString() {
@@ -104,6 +169,29 @@ import Algorithm.CostFunctions.ExponentialCostFunction;
         ", nfvInitCosts=" + Arrays.toString(nfvInitCosts) +
         ", nfvInitDelays=" + Arrays.toString(nfvInitDelays) +
         ", nfvProcessingDelays=" + Arrays.toString(nfvProcessingDelays) +
+        ", parallelShortestPaths=" + parallelShortestPaths +
+        ", incrementalShortestPaths=" + incrementalShortestPaths +
+        ", targetRestrictedShortestPaths=" + targetRestrictedShortestPaths +
+        ", apspEngine=" + apspEngine +
+        ", linkValueSeed=" + linkValueSeed +
+        ", apspArtifactDirectory=" + apspArtifactDirectory +
+        ", matrixStorage=" + matrixStorage +
+        ", symmetricDistances=" + symmetricDistances +
+        ", singlePrecisionDistances=" + singlePrecisionDistances +
+        ", shortestPathRowCacheBytes=" + shortestPathRowCacheBytes +
+        ", numLandmarks=" + numLandmarks +
+        ", landmarkMaxError=" + landmarkMaxError +
+        ", numRegions=" + numRegions +
+        ", deltaSteppingBucketWidth=" + deltaSteppingBucketWidth +
+        ", numBandwidthClasses=" + numBandwidthClasses +
+        ", backgroundShortestPaths=" + backgroundShortestPaths +
+        ", maxSnapshotLag=" + maxSnapshotLag +
+        ", reduceTopology=" + reduceTopology +
+        ", vertexOrdering=" + vertexOrdering +
+        ", implicitAuxiliaryGraph=" + implicitAuxiliaryGraph +
+        ", pruneDominatedCandidates=" + pruneDominatedCandidates +
+        ", beamWidth=" + beamWidth +
+        ", branchAndBound=" + branchAndBound +
         '}';
   }
 
@@ -171,6 +259,72 @@ import Algorithm.CostFunctions.ExponentialCostFunction;
     // I don't think rate is considered in this paper
     private double[] nfvRates = new double[] {3, 5, 6, 7, 8, 5};  //nfv vm service rate
 
+    /**
+     * Shortest path related parameters
+     */
+    private boolean parallelShortestPaths = false; // run the per-source searches of APSP, or a single search on a large graph, on a ForkJoin pool
+
+    private boolean incrementalShortestPaths = false; // in online mode, only recompute the source trees affected by the last reservation
+
+    private boolean targetRestrictedShortestPaths = false; // in online mode, only search between the servers an auxiliary graph reads
+
+    private ApspEngine apspEngine = ApspEngine.AUTO; // engine of full APSP computations; AUTO picks Floyd-Warshall on small dense topologies
+
+    private long linkValueSeed = -1L; // seed of the random link values of each topology file, or -1 to draw new ones every time
+
+    // directory of the APSP artifacts of offline requests, or null to not persist them. With a cost function whose link costs depend on the bandwidth, only
+    // the shortest paths of bandwidth classes are persisted (see numBandwidthClasses)
+    private String apspArtifactDirectory = null;
+
+    private MatrixStorage matrixStorage = MatrixStorage.HEAP; // where APSP tables are kept: on the heap, in direct buffers, or in file-backed mappings
+
+    private boolean symmetricDistances = false; // only store the upper triangle of APSP costs and delays
+
+    private boolean singlePrecisionDistances = false; // store APSP costs and delays as floats, see MatrixFormat for the error bound
+
+    private long shortestPathRowCacheBytes = 0L; // if positive, compute shortest path rows on demand and keep this many bytes of them instead of APSP
+
+    private int numLandmarks = 0; // if positive, estimate server-to-server costs from this many landmark trees instead of APSP
+
+    private double landmarkMaxError = 0.1; // relative error of a landmark estimate beyond which the pair is searched exactly
+
+    // if positive, split the servers into this many regions by coordinates and compute two-level shortest paths instead of APSP. This only saves memory
+    // when most links stay within a region: in the generated topologies of data/, links join random vertices and almost every vertex is a boundary one.
+    private int numRegions = 0;
+
+    // bucket width of single-source searches split across cores, NaN to derive it from the link costs
+    private double deltaSteppingBucketWidth = Double.NaN;
+
+    // if positive, compute shortest paths at the request bandwidth rounded up to one of this many log-spaced classes between reqBWReqMin and reqBWReqMax,
+    // so that requests of a class share them within a network epoch; 0 computes them at the exact bandwidth. See AuxiliaryGraphBuilder for the error bound
+    private int numBandwidthClasses = 0;
+
+    // in online mode, recompute all-pair shortest paths on a worker thread after each reservation, so that the next request finds them ready if it arrives
+    // late enough. Requests use the last snapshot if it is at most maxSnapshotLag reservations behind, and compute shortest paths in place otherwise; with a
+    // positive lag, paths may cross links that ran out of bandwidth since, and such requests are rejected when their path cost is evaluated
+    private boolean backgroundShortestPaths = false;
+
+    private long maxSnapshotLag = 0L;
+
+    // compute shortest paths on the topology with its degree-1 trees peeled off and its degree-2 chains merged into super-edges instead of APSP; the servers
+    // with computing capacity are always kept. Exact, and only pays off on sparse topologies such as the AS ones of data/
+    private boolean reduceTopology = false;
+
+    // the order servers are numbered in by the shortest path engines and tables, see VertexOrdering; ids and results do not depend on it, only the memory
+    // access patterns (and the order ties between equally good candidates are met in) do
+    private VertexOrdering vertexOrdering = VertexOrdering.NETWORK;
+
+    // search the auxiliary graph layer by layer, reading the weight and delay of each arc from the shortest paths when relaxing it, instead of building a
+    // Link per arc and cloned Servers per layer; the paths found have the same costs, ties between equally good candidates aside
+    private boolean implicitAuxiliaryGraph = false;
+
+    // before searching the auxiliary graph, drop the servers of service layers that another server of the layer with the same VM reuse status dominates,
+    // i.e., whose arcs from the previous layer and to the next one all weigh and delay at least as much. Optimal paths keep their weight and delay. Finding
+    // the dominated servers costs about two relaxations of the layers, so it pays off for the delay-aware search, which relaxes them once per LARAC iteration
+    private boolean pruneDominatedCandidates = false;
+    private int beamWidth = 0;
+    private boolean branchAndBound = false;
+
     Builder alpha(double alpha) {
       this.alpha = alpha;
       return this;
@@ -301,10 +455,138 @@ import Algorithm.CostFunctions.ExponentialCostFunction;
       return this;
     }
 
+    public Builder parallelShortestPaths(boolean parallelShortestPaths) {
+      this.parallelShortestPaths = parallelShortestPaths;
+      return this;
+    }
+
+    public Builder incrementalShortestPaths(boolean incrementalShortestPaths) {
+      this.incrementalShortestPaths = incrementalShortestPaths;
+      return this;
+    }
+
+    public Builder targetRestrictedShortestPaths(boolean targetRestrictedShortestPaths) {
+      this.targetRestrictedShortestPaths = targetRestrictedShortestPaths;
+      return this;
+    }
+
+    public Builder apspEngine(ApspEngine apspEngine) {
+      this.apspEngine = apspEngine;
+      return this;
+    }
+
+    public Builder linkValueSeed(long linkValueSeed) {
+      this.linkValueSeed = linkValueSeed;
+      return this;
+    }
+
+    public Builder apspArtifactDirectory(String apspArtifactDirectory) {
+      this.apspArtifactDirectory = apspArtifactDirectory;
+      return this;
+    }
+
+    public Builder matrixStorage(MatrixStorage matrixStorage) {
+      this.matrixStorage = matrixStorage;
+      return this;
+    }
+
+    public Builder symmetricDistances(boolean symmetricDistances) {
+      this.symmetricDistances = symmetricDistances;
+      return this;
+    }
+
+    public Builder singlePrecisionDistances(boolean singlePrecisionDistances) {
+      this.singlePrecisionDistances = singlePrecisionDistances;
+      return this;
+    }
+
+    public Builder shortestPathRowCacheBytes(long shortestPathRowCacheBytes) {
+      this.shortestPathRowCacheBytes = shortestPathRowCacheBytes;
+      return this;
+    }
+
+    public Builder numLandmarks(int numLandmarks) {
+      this.numLandmarks = numLandmarks;
+      return this;
+    }
+
+    public Builder landmarkMaxError(double landmarkMaxError) {
+      this.landmarkMaxError = landmarkMaxError;
+      return this;
+    }
+
+    public Builder numRegions(int numRegions) {
+      this.numRegions = numRegions;
+      return this;
+    }
+
+    public Builder deltaSteppingBucketWidth(double deltaSteppingBucketWidth) {
+      this.deltaSteppingBucketWidth = deltaSteppingBucketWidth;
+      return this;
+    }
+
+    public Builder numBandwidthClasses(int numBandwidthClasses) {
+      this.numBandwidthClasses = numBandwidthClasses;
+      return this;
+    }
+
+    public Builder backgroundShortestPaths(boolean backgroundShortestPaths) {
+      this.backgroundShortestPaths = backgroundShortestPaths;
+      return this;
+    }
+
+    public Builder maxSnapshotLag(long maxSnapshotLag) {
+      this.maxSnapshotLag = maxSnapshotLag;
+      return this;
+    }
+
+    public Builder reduceTopology(boolean reduceTopology) {
+      this.reduceTopology = reduceTopology;
+      return this;
+    }
+
+    public Builder vertexOrdering(VertexOrdering vertexOrdering) {
+      this.vertexOrdering = vertexOrdering;
+      return this;
+    }
+
+    public Builder implicitAuxiliaryGraph(boolean implicitAuxiliaryGraph) {
+      this.implicitAuxiliaryGraph = implicitAuxiliaryGraph;
+      return this;
+    }
+
+    public Builder pruneDominatedCandidates(boolean pruneDominatedCandidates) {
+      this.pruneDominatedCandidates = pruneDominatedCandidates;
+      return this;
+    }
+
+    public Builder beamWidth(int beamWidth) {
+      this.beamWidth = beamWidth;
+      return this;
+    }
+
+    public Builder branchAndBound(boolean branchAndBound) {
+      this.branchAndBound = branchAndBound;
+      return this;
+    }
+
     public Parameters build() {
+      checkArgument(beamWidth >= 0, "The beam width cannot be negative: %s", beamWidth);
+      checkArgument(beamWidth == 0 || implicitAuxiliaryGraph, "A beam only applies to the implicit auxiliary graph");
+      checkArgument(!branchAndBound || implicitAuxiliaryGraph, "Branch and bound only applies to the implicit auxiliary graph");
+      // each of these replaces the all-pair shortest paths of the auxiliary graph by another distance oracle, so they cannot be combined
+      int numDistanceOracles = (numLandmarks > 0 ? 1 : 0) + (numRegions > 0 ? 1 : 0) + (reduceTopology ? 1 : 0) + (shortestPathRowCacheBytes > 0L ? 1 : 0)
+          + (backgroundShortestPaths ? 1 : 0) + (targetRestrictedShortestPaths ? 1 : 0) + (incrementalShortestPaths ? 1 : 0);
+      checkArgument(numDistanceOracles <= 1, "At most one of numLandmarks, numRegions, reduceTopology, shortestPathRowCacheBytes, "
+          + "backgroundShortestPaths, targetRestrictedShortestPaths and incrementalShortestPaths can be set");
       return new Parameters(networkSize, networkSizes, offline, numTrials, alpha, beta, threshold, costFunc, serverRatio, linkBWCapMin, linkBWCapMax,
                             linkDelayReqMin, linkDelayReqMax, linkCostMax, linkCostMin, numRequests, L, reqBWReqMin, reqBWReqMax, reqDelayMin, reqDelayMax, nfvProb, nfvComputingReqs,
-                            nfvRates, nfvOperationalCosts, nfvInitCosts, nfvInitDelays, nfvProcessingDelays
+                            nfvRates, nfvOperationalCosts, nfvInitCosts, nfvInitDelays, nfvProcessingDelays, parallelShortestPaths, incrementalShortestPaths,
+                            targetRestrictedShortestPaths, apspEngine, linkValueSeed, apspArtifactDirectory, matrixStorage,
+                            symmetricDistances, singlePrecisionDistances, shortestPathRowCacheBytes, numLandmarks, landmarkMaxError,
+                            numRegions, deltaSteppingBucketWidth, numBandwidthClasses, backgroundShortestPaths, maxSnapshotLag,
+                            reduceTopology, vertexOrdering, implicitAuxiliaryGraph,
+                            pruneDominatedCandidates, beamWidth, branchAndBound
       );
     }
   }
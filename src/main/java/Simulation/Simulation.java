@@ -5,6 +5,7 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Objects;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -22,6 +23,8 @@ import Network.Request;
 import Network.Server;
 import NetworkGenerator.NetworkGenerator;
 import NetworkGenerator.NetworkValueSetter;
+import NetworkGenerator.ShortestPaths.ShortestPathRefresher;
+import NetworkGenerator.ShortestPaths.SsspEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -45,6 +48,30 @@ import org.slf4j.MDC;
                                                    .numTrials(3)
                                                    .build();
           break;
+        case "a": // after "d", if both are given
+          logger.info("Enabled APSP artifacts of the offline experiments");
+          baseParameters = new Parameters.Builder().networkSizes(baseParameters.networkSizes)
+                                                   .numRequests(baseParameters.numRequests)
+                                                   .numTrials(baseParameters.numTrials)
+                                                   .linkValueSeed(0L)
+                                                   .apspArtifactDirectory("apsp")
+                                                   .numBandwidthClasses(8)
+                                                   .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                   .maxSnapshotLag(baseParameters.maxSnapshotLag)
+                                                   .build();
+          break;
+        case "b": // after "d", if both are given
+          logger.info("Enabled background shortest paths in the online experiments");
+          baseParameters = new Parameters.Builder().networkSizes(baseParameters.networkSizes)
+                                                   .numRequests(baseParameters.numRequests)
+                                                   .numTrials(baseParameters.numTrials)
+                                                   .linkValueSeed(baseParameters.linkValueSeed)
+                                                   .apspArtifactDirectory(baseParameters.apspArtifactDirectory)
+                                                   .numBandwidthClasses(baseParameters.numBandwidthClasses)
+                                                   .backgroundShortestPaths(true)
+                                                   .maxSnapshotLag(1L)
+                                                   .build();
+          break;
         case "0":
           listOfTasks.add(new Thread(() -> LEffectWithoutDelays()));
           break;
@@ -69,6 +96,15 @@ import org.slf4j.MDC;
         case "7":
           listOfTasks.add(new Thread(() -> CompareCostFnsWithDelays()));
           break;
+        case "8":
+          listOfTasks.add(new Thread(() -> BandwidthClassesEffectWithoutDelays()));
+          break;
+        case "9":
+          listOfTasks.add(new Thread(() -> BeamSearchEffectWithoutDelays()));
+          break;
+        case "10":
+          listOfTasks.add(new Thread(() -> PruningEffectWithDelays()));
+          break;
         default:
           System.out.println("Unknown argument: " + arg);
           System.exit(1);
@@ -83,6 +119,7 @@ import org.slf4j.MDC;
     } catch (InterruptedException ie) {
       ie.printStackTrace();
     }
+    logger.info("Single-source searches by engine: " + SsspEngine.statistics());
   }
 
   public static void prepareTopologies() {
@@ -110,13 +147,19 @@ import org.slf4j.MDC;
     for (int networkSize : baseParameters.networkSizes) {
       Parameters parametersWithExpCostFn = new Parameters.Builder().networkSize(networkSize)
                                                                    .costFunc(new ExponentialCostFunction())
+                                                                   .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                                   .maxSnapshotLag(baseParameters.maxSnapshotLag)
                                                                    .offline(false)
                                                                    .build();
       Parameters parametersWithLinearCostFn = new Parameters.Builder().networkSize(networkSize)
                                                                       .costFunc(new LinCostFunction())
+                                                                      .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                                      .maxSnapshotLag(baseParameters.maxSnapshotLag)
                                                                       .offline(false)
                                                                       .threshold(Double.MAX_VALUE)
                                                                       .build();
+      ShortestPathStatistics expStatistics = new ShortestPathStatistics();
+      ShortestPathStatistics linearStatistics = new ShortestPathStatistics();
 
       for (int trial = 0; trial < baseParameters.numTrials; ++trial) {
         Network network = generateAndInitializeNetwork(networkSize, trial, parametersWithExpCostFn);
@@ -137,6 +180,7 @@ import org.slf4j.MDC;
           Instant end = Instant.now();
           expRunningTimes[trial][i] = (double) Duration.between(start, end).toNanos();
         }
+        expStatistics.add(network, parametersWithExpCostFn);
         logger.debug(String.format("Network size: %d\texp cost\ttrial: %d finished", networkSize, trial));
 
         network.wipeLinks();
@@ -150,6 +194,7 @@ import org.slf4j.MDC;
           Instant end = Instant.now();
           linearRunningTimes[trial][i] = (double) Duration.between(start, end).toNanos();
         }
+        linearStatistics.add(networkAlt, parametersWithLinearCostFn);
         logger.debug(String.format("Network size: %d\tlinear cost\ttrial: %d finished", networkSize, trial));
       }
 
@@ -182,6 +227,7 @@ import org.slf4j.MDC;
       logger.info(String.format("%d %f %f", networkSize, expAdmittedCount, linearAdmittedCount));
       logger.info(String.format("%d %f %f", networkSize, expPathCost, linearPathCost));
       logger.info(String.format("%d %f %f", networkSize, expRunningTime, linearRunningTime));
+      logger.info(String.format("%d %s %s", networkSize, expStatistics, linearStatistics));
     }
   }
 
@@ -194,13 +240,19 @@ import org.slf4j.MDC;
     for (int networkSize : baseParameters.networkSizes) {
       Parameters parametersWithExpCostFn = new Parameters.Builder().networkSize(networkSize)
                                                                    .costFunc(new ExponentialCostFunction())
+                                                                   .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                                   .maxSnapshotLag(baseParameters.maxSnapshotLag)
                                                                    .offline(false)
                                                                    .build();
       Parameters parametersWithLinearCostFn = new Parameters.Builder().networkSize(networkSize)
                                                                       .costFunc(new LinCostFunction())
+                                                                      .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                                      .maxSnapshotLag(baseParameters.maxSnapshotLag)
                                                                       .offline(false)
                                                                       .threshold(Double.MAX_VALUE)
                                                                       .build();
+      ShortestPathStatistics expStatistics = new ShortestPathStatistics();
+      ShortestPathStatistics linearStatistics = new ShortestPathStatistics();
 
       for (int trial = 0; trial < baseParameters.numTrials; ++trial) {
         Network network = generateAndInitializeNetwork(networkSize, trial, parametersWithExpCostFn);
@@ -221,6 +273,7 @@ import org.slf4j.MDC;
           Instant end = Instant.now();
           expRunningTimes[trial][i] = (double) Duration.between(start, end).toNanos();
         }
+        expStatistics.add(network, parametersWithExpCostFn);
         logger.debug(String.format("Network size: %d\texp cost\ttrial: %d finished", networkSize, trial));
 
         network.wipeLinks();
@@ -234,6 +287,7 @@ import org.slf4j.MDC;
           Instant end = Instant.now();
           linearRunningTimes[trial][i] = (double) Duration.between(start, end).toNanos();
         }
+        linearStatistics.add(networkAlt, parametersWithLinearCostFn);
         logger.debug(String.format("Network size: %d\tlinear cost\ttrial: %d finished", networkSize, trial));
       }
 
@@ -266,6 +320,7 @@ import org.slf4j.MDC;
       logger.info(String.format("%d %f %f", networkSize, expAdmittedCount, linearAdmittedCount));
       logger.info(String.format("%d %f %f", networkSize, expPathCost, linearPathCost));
       logger.info(String.format("%d %f %f", networkSize, expRunningTime, linearRunningTime));
+      logger.info(String.format("%d %s %s", networkSize, expStatistics, linearStatistics));
     }
   }
 
@@ -276,10 +331,14 @@ import org.slf4j.MDC;
       Result[][][] results = new Result[betas.length][baseParameters.numTrials][baseParameters.numRequests];
       double[][][] runningTimes = new double[betas.length][baseParameters.numTrials][baseParameters.numRequests];
 
+      ShortestPathStatistics[] statistics = new ShortestPathStatistics[betas.length];
       for (int betaIdx = 0; betaIdx < betas.length; ++betaIdx) {
         double beta = betas[betaIdx];
+        statistics[betaIdx] = new ShortestPathStatistics();
         Parameters parameters = new Parameters.Builder().networkSize(networkSize)
                                                         .beta(beta)
+                                                        .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                        .maxSnapshotLag(baseParameters.maxSnapshotLag)
                                                         .offline(false)
                                                         .build();
 
@@ -296,6 +355,7 @@ import org.slf4j.MDC;
             Instant end = Instant.now();
             runningTimes[betaIdx][trial][i] = (double) Duration.between(start, end).toNanos();
           }
+          statistics[betaIdx].add(network, parameters);
           logger.debug(String.format("Network size: %d\tbeta: %f\ttrial: %d finished", networkSize, beta, trial));
         }
       }
@@ -303,9 +363,11 @@ import org.slf4j.MDC;
       StringBuilder count = new StringBuilder();
       StringBuilder cost = new StringBuilder();
       StringBuilder time = new StringBuilder();
+      StringBuilder cache = new StringBuilder();
       count.append(networkSize).append(" ");
       cost.append(networkSize).append(" ");
       time.append(networkSize).append(" ");
+      cache.append(networkSize).append(" ");
 
       for (int betaIdx = 0; betaIdx < betas.length; ++betaIdx) {
         double beta = betas[betaIdx];
@@ -327,10 +389,12 @@ import org.slf4j.MDC;
         cost.append(expPathCost).append(" ");
         runningTime /= (double) baseParameters.numTrials;
         time.append(runningTime).append(" ");
+        cache.append(statistics[betaIdx]).append(" ");
       }
       logger.info(count.toString());
       logger.info(cost.toString());
       logger.info(time.toString());
+      logger.info(cache.toString());
     }
   }
 
@@ -341,10 +405,14 @@ import org.slf4j.MDC;
       Result[][][] results = new Result[betas.length][baseParameters.numTrials][baseParameters.numRequests];
       Double[][][] runningTimes = new Double[betas.length][baseParameters.numTrials][baseParameters.numRequests];
 
+      ShortestPathStatistics[] statistics = new ShortestPathStatistics[betas.length];
       for (int betaIdx = 0; betaIdx < betas.length; ++betaIdx) {
         double beta = betas[betaIdx];
+        statistics[betaIdx] = new ShortestPathStatistics();
         Parameters parameters = new Parameters.Builder().networkSize(networkSize)
                                                         .beta(beta)
+                                                        .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                        .maxSnapshotLag(baseParameters.maxSnapshotLag)
                                                         .offline(false)
                                                         .build();
 
@@ -361,6 +429,7 @@ import org.slf4j.MDC;
             Instant end = Instant.now();
             runningTimes[betaIdx][trial][i] = (double) Duration.between(start, end).toNanos();
           }
+          statistics[betaIdx].add(network, parameters);
           logger.debug(String.format("Network size: %d\tbeta: %f\ttrial: %d finished", networkSize, beta, trial));
         }
       }
@@ -368,9 +437,11 @@ import org.slf4j.MDC;
       StringBuilder count = new StringBuilder();
       StringBuilder cost = new StringBuilder();
       StringBuilder time = new StringBuilder();
+      StringBuilder cache = new StringBuilder();
       count.append(networkSize).append(" ");
       cost.append(networkSize).append(" ");
       time.append(networkSize).append(" ");
+      cache.append(networkSize).append(" ");
 
       for (int betaIdx = 0; betaIdx < betas.length; ++betaIdx) {
         double beta = betas[betaIdx];
@@ -392,10 +463,12 @@ import org.slf4j.MDC;
         cost.append(expPathCost).append(" ");
         runningTime /= (double) baseParameters.numTrials;
         time.append(runningTime).append(" ");
+        cache.append(statistics[betaIdx]).append(" ");
       }
       logger.info(count.toString());
       logger.info(cost.toString());
       logger.info(time.toString());
+      logger.info(cache.toString());
     }
   }
 
@@ -411,12 +484,18 @@ import org.slf4j.MDC;
 
     for (int networkSize : baseParameters.networkSizes) {
       Parameters parametersWithThreshold = new Parameters.Builder().networkSize(networkSize)
+                                                                   .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                                   .maxSnapshotLag(baseParameters.maxSnapshotLag)
                                                                    .offline(false)
                                                                    .build();
       Parameters parametersWithOutThreshold = new Parameters.Builder().threshold(Double.MAX_VALUE)
                                                                       .networkSize(networkSize)
+                                                                      .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                                      .maxSnapshotLag(baseParameters.maxSnapshotLag)
                                                                       .offline(false)
                                                                       .build();
+      ShortestPathStatistics withThresholdStatistics = new ShortestPathStatistics();
+      ShortestPathStatistics withoutThresholdStatistics = new ShortestPathStatistics();
 
       for (int trial = 0; trial < baseParameters.numTrials; ++trial) {
         Network network = generateAndInitializeNetwork(networkSize, trial, parametersWithThreshold);
@@ -435,6 +514,7 @@ import org.slf4j.MDC;
           Instant end = Instant.now();
           withThresholdRunningTimes[trial][i] = (double) Duration.between(start, end).toNanos();
         }
+        withThresholdStatistics.add(network, parametersWithThreshold);
         logger.debug(String.format("Network size: %d\tw/ threshold\ttrial: %d finished", networkSize, trial));
 
         network.wipeLinks();
@@ -446,6 +526,7 @@ import org.slf4j.MDC;
           Instant end = Instant.now();
           withoutThresholdRunningTimes[trial][i] = (double) Duration.between(start, end).toNanos();
         }
+        withoutThresholdStatistics.add(networkAlt, parametersWithOutThreshold);
         logger.debug(String.format("Network size: %d\tw/o threshold\ttrial: %d finished", networkSize, trial));
       }
 
@@ -478,6 +559,7 @@ import org.slf4j.MDC;
       logger.info(String.format("%d %f %f", networkSize, withThresholdAdmissionCount, withoutThresholdAdmissionCount));
       logger.info(String.format("%d %f %f", networkSize, withThresholdPathCost, withoutThresholdPathCost));
       logger.info(String.format("%d %f %f", networkSize, withThresholdRunningTime, withoutThresholdRunningTime));
+      logger.info(String.format("%d %s %s", networkSize, withThresholdStatistics, withoutThresholdStatistics));
     }
   }
 
@@ -490,12 +572,18 @@ import org.slf4j.MDC;
 
     for (int networkSize : baseParameters.networkSizes) {
       Parameters parametersWithThreshold = new Parameters.Builder().networkSize(networkSize)
+                                                                   .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                                   .maxSnapshotLag(baseParameters.maxSnapshotLag)
                                                                    .offline(false)
                                                                    .build();
       Parameters parametersWithOutThreshold = new Parameters.Builder().threshold(Double.MAX_VALUE)
                                                                       .networkSize(networkSize)
+                                                                      .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                                      .maxSnapshotLag(baseParameters.maxSnapshotLag)
                                                                       .offline(false)
                                                                       .build();
+      ShortestPathStatistics withThresholdStatistics = new ShortestPathStatistics();
+      ShortestPathStatistics withoutThresholdStatistics = new ShortestPathStatistics();
 
       for (int trial = 0; trial < baseParameters.numTrials; ++trial) {
         Network network = generateAndInitializeNetwork(networkSize, trial, parametersWithThreshold);
@@ -514,6 +602,7 @@ import org.slf4j.MDC;
           Instant end = Instant.now();
           withThresholdRunningTimes[trial][i] = (double) Duration.between(start, end).toNanos();
         }
+        withThresholdStatistics.add(network, parametersWithThreshold);
         logger.debug(String.format("Network size: %d\tw/ threshold\ttrial: %d finished", networkSize, trial));
 
         network.wipeLinks();
@@ -525,6 +614,7 @@ import org.slf4j.MDC;
           Instant end = Instant.now();
           withoutThresholdRunningTimes[trial][i] = (double) Duration.between(start, end).toNanos();
         }
+        withoutThresholdStatistics.add(networkAlt, parametersWithOutThreshold);
         logger.debug(String.format("Network size: %d\tw/o threshold\ttrial: %d finished", networkSize, trial));
       }
 
@@ -557,6 +647,250 @@ import org.slf4j.MDC;
       logger.info(String.format("%d %f %f", networkSize, withThresholdAdmissionCount, withoutThresholdAdmissionCount));
       logger.info(String.format("%d %f %f", networkSize, withThresholdPathCost, withoutThresholdPathCost));
       logger.info(String.format("%d %f %f", networkSize, withThresholdRunningTime, withoutThresholdRunningTime));
+      logger.info(String.format("%d %s %s", networkSize, withThresholdStatistics, withoutThresholdStatistics));
+    }
+  }
+
+  /**
+   * We compare the admission count, path cost and running time of the proposed online algorithms when shortest paths are computed at the exact request
+   * bandwidth and when they are computed at the bandwidth of its class (see Parameters.numBandwidthClasses)
+   */
+  private static void BandwidthClassesEffectWithoutDelays() {
+    prepareLogging();
+    final int numBandwidthClasses = 8;
+    Result[][] exactResults = new Result[baseParameters.numTrials][baseParameters.numRequests];
+    Double[][] exactRunningTimes = new Double[baseParameters.numTrials][baseParameters.numRequests];
+    Result[][] classResults = new Result[baseParameters.numTrials][baseParameters.numRequests];
+    Double[][] classRunningTimes = new Double[baseParameters.numTrials][baseParameters.numRequests];
+
+    for (int networkSize : baseParameters.networkSizes) {
+      Parameters exactParameters = new Parameters.Builder().networkSize(networkSize)
+                                                           .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                           .maxSnapshotLag(baseParameters.maxSnapshotLag)
+                                                           .offline(false)
+                                                           .build();
+      Parameters classParameters = new Parameters.Builder().numBandwidthClasses(numBandwidthClasses)
+                                                           .networkSize(networkSize)
+                                                           .backgroundShortestPaths(baseParameters.backgroundShortestPaths)
+                                                           .maxSnapshotLag(baseParameters.maxSnapshotLag)
+                                                           .offline(false)
+                                                           .build();
+      ShortestPathStatistics exactStatistics = new ShortestPathStatistics();
+      ShortestPathStatistics classStatistics = new ShortestPathStatistics();
+
+      for (int trial = 0; trial < baseParameters.numTrials; ++trial) {
+        Network network = generateAndInitializeNetwork(networkSize, trial, exactParameters);
+        ArrayList<Request> requests = generateRequests(exactParameters, network, exactParameters.numRequests);
+
+        HashMap<Server, Server> serverMap = new HashMap<>();
+        Network networkAlt = network.newNetwork(serverMap);
+        ArrayList<Request> requestsAlt = mapRequestsToNewNetwork(requests, serverMap);
+
+        network.wipeLinks();
+        logger.debug(String.format("Network size: %d\texact bandwidth\ttrial: %d started", networkSize, trial));
+        for (int i = 0; i < baseParameters.numRequests; ++i) {
+          Instant start = Instant.now();
+          Algorithm alg = new Algorithm(network, requests.get(i), exactParameters);
+          exactResults[trial][i] = alg.maxThroughputWithoutDelay();
+          Instant end = Instant.now();
+          exactRunningTimes[trial][i] = (double) Duration.between(start, end).toNanos();
+        }
+        exactStatistics.add(network, exactParameters);
+        logger.debug(String.format("Network size: %d\texact bandwidth\ttrial: %d finished", networkSize, trial));
+
+        networkAlt.wipeLinks();
+        logger.debug(String.format("Network size: %d\t%d bandwidth classes\ttrial: %d started", networkSize, numBandwidthClasses, trial));
+        for (int i = 0; i < baseParameters.numRequests; ++i) {
+          Instant start = Instant.now();
+          Algorithm alg = new Algorithm(networkAlt, requestsAlt.get(i), classParameters);
+          classResults[trial][i] = alg.maxThroughputWithoutDelay();
+          Instant end = Instant.now();
+          classRunningTimes[trial][i] = (double) Duration.between(start, end).toNanos();
+        }
+        classStatistics.add(networkAlt, classParameters);
+        logger.debug(String.format("Network size: %d\t%d bandwidth classes\ttrial: %d finished", networkSize, numBandwidthClasses, trial));
+      }
+
+      double exactAdmissionCount = 0d;
+      double exactPathCost = 0d;
+      double exactRunningTime = 0d;
+      double classAdmissionCount = 0d;
+      double classPathCost = 0d;
+      double classRunningTime = 0d;
+      for (int trial = 0; trial < baseParameters.numTrials; ++trial) {
+        for (int i = 0; i < baseParameters.numRequests; ++i) {
+          if (exactResults[trial][i].isAdmitted()) {
+            ++exactAdmissionCount;
+            exactPathCost += exactResults[trial][i].getPathCost();
+          }
+          exactRunningTime += exactRunningTimes[trial][i];
+          if (classResults[trial][i].isAdmitted()) {
+            ++classAdmissionCount;
+            classPathCost += classResults[trial][i].getPathCost();
+          }
+          classRunningTime += classRunningTimes[trial][i];
+        }
+      }
+      exactAdmissionCount /= (double) baseParameters.numTrials;
+      exactPathCost /= (double) baseParameters.numTrials;
+      exactRunningTime /= (double) baseParameters.numTrials;
+      classAdmissionCount /= (double) baseParameters.numTrials;
+      classPathCost /= (double) baseParameters.numTrials;
+      classRunningTime /= (double) baseParameters.numTrials;
+      logger.info(String.format("%d %f %f", networkSize, exactAdmissionCount, classAdmissionCount));
+      logger.info(String.format("%d %f %f", networkSize, exactPathCost, classPathCost));
+      logger.info(String.format("%d %f %f", networkSize, exactRunningTime, classRunningTime));
+      logger.info(String.format("%d %s %s", networkSize, exactStatistics, classStatistics));
+    }
+  }
+
+  /**
+   * We compare the path cost and running time of the proposed offline algorithm when the service layers are searched exactly and with a beam of a few
+   * servers per layer (see Parameters.beamWidth). Offline requests reserve nothing, so both searches see the same network for each request, and the cost gap
+   * of the beam is measured request by request
+   */
+  private static void BeamSearchEffectWithoutDelays() {
+    prepareLogging();
+    final int[] beamWidths = {2, 4, 8, 16};
+    for (int networkSize : baseParameters.networkSizes) {
+      Parameters exactParameters = new Parameters.Builder().implicitAuxiliaryGraph(true)
+                                                           .networkSize(networkSize)
+                                                           .linkValueSeed(baseParameters.linkValueSeed)
+                                                           .apspArtifactDirectory(baseParameters.apspArtifactDirectory)
+                                                           .numBandwidthClasses(baseParameters.numBandwidthClasses)
+                                                           .offline(true)
+                                                           .build();
+      for (int beamWidth : beamWidths) {
+        Parameters beamParameters = new Parameters.Builder().beamWidth(beamWidth)
+                                                            .implicitAuxiliaryGraph(true)
+                                                            .networkSize(networkSize)
+                                                            .linkValueSeed(baseParameters.linkValueSeed)
+                                                            .apspArtifactDirectory(baseParameters.apspArtifactDirectory)
+                                                            .numBandwidthClasses(baseParameters.numBandwidthClasses)
+                                                            .offline(true)
+                                                            .build();
+        double exactRunningTime = 0d;
+        double beamRunningTime = 0d;
+        double meanCostGap = 0d;
+        double maxCostGap = 0d;
+        int numCompared = 0;
+        int numMissed = 0; // requests with a path the beam did not find
+
+        for (int trial = 0; trial < baseParameters.numTrials; ++trial) {
+          Network network = generateAndInitializeNetwork(networkSize, trial, exactParameters);
+          ArrayList<Request> requests = generateRequests(exactParameters, network, exactParameters.numRequests);
+
+          HashMap<Server, Server> serverMap = new HashMap<>();
+          Network networkAlt = network.newNetwork(serverMap);
+          ArrayList<Request> requestsAlt = mapRequestsToNewNetwork(requests, serverMap);
+
+          logger.debug(String.format("Network size: %d\tbeam width: %d\ttrial: %d started", networkSize, beamWidth, trial));
+          for (int i = 0; i < baseParameters.numRequests; ++i) {
+            Instant start = Instant.now();
+            Result exactResult = new Algorithm(network, requests.get(i), exactParameters).minOpCostWithoutDelay();
+            Instant end = Instant.now();
+            exactRunningTime += (double) Duration.between(start, end).toNanos();
+
+            start = Instant.now();
+            Result beamResult = new Algorithm(networkAlt, requestsAlt.get(i), beamParameters).minOpCostWithoutDelay();
+            end = Instant.now();
+            beamRunningTime += (double) Duration.between(start, end).toNanos();
+
+            if (!exactResult.isAdmitted() || exactResult.getPathCost() == Double.MAX_VALUE) {
+              continue;
+            }
+            if (!beamResult.isAdmitted() || beamResult.getPathCost() == Double.MAX_VALUE) {
+              ++numMissed;
+              continue;
+            }
+            double costGap = exactResult.getPathCost() > 0d ? beamResult.getPathCost() / exactResult.getPathCost() - 1d : 0d;
+            meanCostGap += costGap;
+            maxCostGap = Math.max(maxCostGap, costGap);
+            ++numCompared;
+          }
+          logger.debug(String.format("Network size: %d\tbeam width: %d\ttrial: %d finished", networkSize, beamWidth, trial));
+        }
+
+        meanCostGap /= (double) Math.max(1, numCompared);
+        exactRunningTime /= (double) baseParameters.numTrials;
+        beamRunningTime /= (double) baseParameters.numTrials;
+        logger.info(String.format("%d %d %f %f %d", networkSize, beamWidth, meanCostGap, maxCostGap, numMissed));
+        logger.info(String.format("%d %d %f %f %f", networkSize, beamWidth, exactRunningTime, beamRunningTime, exactRunningTime / beamRunningTime));
+      }
+    }
+  }
+
+  /**
+   * We compare the running time of the proposed offline algorithm with delays when dominated servers are pruned from the service layers (see
+   * Parameters.pruneDominatedCandidates) and when they are not, and report the mean number of servers pruned from each service layer. Pruning keeps every
+   * optimal path, so the path costs of both runs are compared request by request, and the requests on which they differ are counted
+   */
+  private static void PruningEffectWithDelays() {
+    prepareLogging();
+    for (int networkSize : baseParameters.networkSizes) {
+      Parameters exactParameters = new Parameters.Builder().implicitAuxiliaryGraph(true)
+                                                           .networkSize(networkSize)
+                                                           .linkValueSeed(baseParameters.linkValueSeed)
+                                                           .apspArtifactDirectory(baseParameters.apspArtifactDirectory)
+                                                           .numBandwidthClasses(baseParameters.numBandwidthClasses)
+                                                           .offline(true)
+                                                           .build();
+      Parameters prunedParameters = new Parameters.Builder().pruneDominatedCandidates(true)
+                                                            .implicitAuxiliaryGraph(true)
+                                                            .networkSize(networkSize)
+                                                            .linkValueSeed(baseParameters.linkValueSeed)
+                                                            .apspArtifactDirectory(baseParameters.apspArtifactDirectory)
+                                                            .numBandwidthClasses(baseParameters.numBandwidthClasses)
+                                                            .offline(true)
+                                                            .build();
+      double exactRunningTime = 0d;
+      double prunedRunningTime = 0d;
+      double[] meanPruned = new double[prunedParameters.L];
+      int[] numPruned = new int[prunedParameters.L]; // requests with a service chain long enough to have each layer
+      int numDiffering = 0; // requests with a different path cost after pruning
+
+      for (int trial = 0; trial < baseParameters.numTrials; ++trial) {
+        Network network = generateAndInitializeNetwork(networkSize, trial, exactParameters);
+        ArrayList<Request> requests = generateRequests(exactParameters, network, exactParameters.numRequests);
+
+        HashMap<Server, Server> serverMap = new HashMap<>();
+        Network networkAlt = network.newNetwork(serverMap);
+        ArrayList<Request> requestsAlt = mapRequestsToNewNetwork(requests, serverMap);
+
+        logger.debug(String.format("Network size: %d\ttrial: %d started", networkSize, trial));
+        for (int i = 0; i < baseParameters.numRequests; ++i) {
+          Instant start = Instant.now();
+          Result exactResult = new Algorithm(network, requests.get(i), exactParameters).minOpCostWithDelay();
+          Instant end = Instant.now();
+          exactRunningTime += (double) Duration.between(start, end).toNanos();
+
+          start = Instant.now();
+          Result prunedResult = new Algorithm(networkAlt, requestsAlt.get(i), prunedParameters).minOpCostWithDelay();
+          end = Instant.now();
+          prunedRunningTime += (double) Duration.between(start, end).toNanos();
+
+          int[] pruned = prunedResult.getPrunedCandidates();
+          if (pruned != null) {
+            for (int layer = 0; layer < pruned.length; layer++) {
+              meanPruned[layer] += (double) pruned[layer];
+              ++numPruned[layer];
+            }
+          }
+          if (Math.abs(exactResult.getPathCost() - prunedResult.getPathCost()) > 1e-9 * Math.abs(exactResult.getPathCost())) {
+            ++numDiffering;
+          }
+        }
+        logger.debug(String.format("Network size: %d\ttrial: %d finished", networkSize, trial));
+      }
+
+      StringBuilder prunedPerLayer = new StringBuilder();
+      for (int layer = 0; layer < meanPruned.length; layer++) {
+        prunedPerLayer.append(layer == 0 ? "" : " ").append(String.format("%f", meanPruned[layer] / (double) Math.max(1, numPruned[layer])));
+      }
+      exactRunningTime /= (double) baseParameters.numTrials;
+      prunedRunningTime /= (double) baseParameters.numTrials;
+      logger.info(String.format("%d %s %d", networkSize, prunedPerLayer, numDiffering));
+      logger.info(String.format("%d %f %f %f", networkSize, exactRunningTime, prunedRunningTime, exactRunningTime / prunedRunningTime));
     }
   }
 
@@ -578,6 +912,8 @@ import org.slf4j.MDC;
         Parameters parameters = new Parameters.Builder().networkSize(networkSize)
                                                         .L(L)
                                                         .costFunc(new OperationalCostFunction())
+                                                        .linkValueSeed(baseParameters.linkValueSeed)
+                                                        .apspArtifactDirectory(baseParameters.apspArtifactDirectory)
                                                         .offline(true)
                                                         .build();
         int accepted = 0; //number of accepted requests
@@ -682,6 +1018,8 @@ import org.slf4j.MDC;
       	 Parameters parameters = new Parameters.Builder().networkSize(networkSize)
                  .L(L)
                  .costFunc(new OperationalCostFunction())
+                 .linkValueSeed(baseParameters.linkValueSeed)
+                 .apspArtifactDirectory(baseParameters.apspArtifactDirectory)
                  .offline(true)
                  .build();
 
@@ -795,24 +1133,29 @@ import org.slf4j.MDC;
     logger.info("Parameters: " + baseParameters); // dump the parameters to the output file for our reference.
   }
 
-  private static void initializeNetwork(Network network, Parameters parameters) {
-    NetworkValueSetter networkValueSetter = new NetworkValueSetter(network, parameters);
+  /**
+   * @param topologyName the topology file @network was read from; with a link value seed, it determines the link values of @network
+   */
+  private static void initializeNetwork(Network network, Parameters parameters, String topologyName) {
+    Random linkRandom = parameters.linkValueSeed >= 0L ? new Random(Objects.hash(parameters.linkValueSeed, topologyName)) : null;
+    NetworkValueSetter networkValueSetter = new NetworkValueSetter(network, parameters, linkRandom);
     networkValueSetter.setConstantServerCapacity(Double.MAX_VALUE, parameters.serverRatio);
     networkValueSetter.setRandomLinkCapacity(parameters.linkBWCapMin, parameters.linkBWCapMax);
     networkValueSetter.setRandomLinkDelay(parameters.linkDelayMin, parameters.linkDelayMax);
     networkValueSetter.setRandomLinkCost(parameters.linkCostMax, parameters.linkCostMin);
     networkValueSetter.placeNFVs(parameters.nfvProb);
+    network.setVertexOrdering(parameters.vertexOrdering); // after the computing capacities are set
   }
 
   private static Network generateAndInitializeNetwork(int networkSize, int trial, Parameters parameters) {
     Network network = NetworkGenerator.generateRealNetworks(networkSize, String.valueOf(trial % 10)); //Since we only have 10 topology files and we do not have time for code elegance
-    initializeNetwork(network, parameters);
+    initializeNetwork(network, parameters, networkSize + "-" + trial % 10);
     return network;
   }
 
   private static Network generateAndInitializeNetwork(TopologyFile topologyFile, Parameters parameters) {
     Network network = NetworkGenerator.generateRealNetworks(topologyFile.getPrefix(), topologyFile.getSuffix());
-    initializeNetwork(network, parameters);
+    initializeNetwork(network, parameters, topologyFile.getPrefix() + "-" + topologyFile.getSuffix());
     return network;
   }
 
@@ -849,4 +1192,43 @@ import org.slf4j.MDC;
           '}';
     }
   }
+
+  /**
+   * Shortest path statistics of the networks of an online experiment, summed over its trials: the hits and misses of the shortest path cache (see
+   * Network.getShortestPathCache), and if shortest paths are recomputed in the background (see Parameters.backgroundShortestPaths), the snapshot hits,
+   * the fallbacks to computing them in place, the average lag of the snapshots used in epochs, the average and largest time a refresh took in nanoseconds,
+   * and the number of refreshes abandoned
+   */
+  private static class ShortestPathStatistics {
+    private long cacheHits = 0L;
+    private long cacheMisses = 0L;
+    private long snapshotHits = 0L;
+    private long fallbacks = 0L;
+    private double lagEpochs = 0d;
+    private long refreshes = 0L;
+    private double refreshNanos = 0d;
+    private long maxRefreshNanos = 0L;
+    private long abandonedRefreshes = 0L;
+
+    void add(Network network, Parameters parameters) {
+      cacheHits += network.getShortestPathCache().getHits();
+      cacheMisses += network.getShortestPathCache().getMisses();
+      if (parameters.backgroundShortestPaths) {
+        ShortestPathRefresher refresher = network.getShortestPathRefresher();
+        snapshotHits += refresher.getHits();
+        fallbacks += refresher.getFallbacks();
+        lagEpochs += refresher.getAverageLagEpochs() * (double) refresher.getHits();
+        refreshes += refresher.getRefreshes();
+        refreshNanos += refresher.getAverageRefreshNanos() * (double) refresher.getRefreshes();
+        maxRefreshNanos = Math.max(maxRefreshNanos, refresher.getMaxRefreshNanos());
+        abandonedRefreshes += refresher.getAbandonedRefreshes();
+        refresher.shutdown();
+      }
+    }
+
+    @Override public String toString() {
+      return cacheHits + " " + cacheMisses + " " + snapshotHits + " " + fallbacks + " " + (snapshotHits == 0L ? 0d : lagEpochs / (double) snapshotHits)
+          + " " + (refreshes == 0L ? 0d : refreshNanos / (double) refreshes) + " " + maxRefreshNanos + " " + abandonedRefreshes;
+    }
+  }
 }
@@ -1,16 +1,22 @@
 import java.util.ArrayList;
 
 import Algorithm.Algorithm;
+import Algorithm.CostFunctions.OperationalCostFunction;
 import Algorithm.Result;
+import Network.AuxiliaryNetwork;
 import Network.Link;
 import Network.Network;
 import Network.Request;
 import Network.Server;
+import NetworkGenerator.AuxiliaryGraphBuilder;
 import NetworkGenerator.NetworkValueSetter;
+import NetworkGenerator.ShortestPaths.ShortestPathRowCache;
 import Simulation.Parameters;
 import Simulation.Simulation;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class AlgorithmTest {
 
@@ -69,4 +75,114 @@ public class AlgorithmTest {
     assertEquals(3, path.get(3).getId());
     assertEquals(22, res.getPathCost(), 0.01);
   }
+
+  @Test
+  public void testImplicitSearchesMatchExplicitGraph() {
+    assertSearchesMatchExplicitGraph(12, 80);
+  }
+
+  @Test
+  public void testParallelLayerSearchMatchesExplicitGraph() {
+    //200 servers per layer, so that every layer has more arcs than the implicit search relaxes on one thread
+    assertSearchesMatchExplicitGraph(200, 150);
+  }
+
+  @Test
+  public void testBranchAndBoundKeepsDelayAwareCosts() {
+    int size = 100;
+    Network n = ringNetwork(size);
+    OperationalCostFunction costFunction = new OperationalCostFunction();
+    //with exact costs, and with landmark estimates, which the bounds are scaled down for
+    for (int numLandmarks : new int[] {0, 4}) {
+      Parameters exhaustive = new Parameters.Builder().L(3).reqBWReqMin(1).reqBWReqMax(1).reqDelayMin(85).reqDelayMax(85)
+          .implicitAuxiliaryGraph(true).numLandmarks(numLandmarks).build();
+      Parameters bounded = new Parameters.Builder().L(3).reqBWReqMin(1).reqBWReqMax(1).reqDelayMin(85).reqDelayMax(85)
+          .implicitAuxiliaryGraph(true).numLandmarks(numLandmarks).branchAndBound(true).build();
+      Request r = new Request(n.getServers().get(0), n.getServers().get(size / 2), exhaustive);
+      r.setServiceChain(new int[] {0, 1, 2});
+      AuxiliaryNetwork expected = AuxiliaryGraphBuilder.buildAuxiliaryGraph(n, r, costFunction, exhaustive);
+      double cost = expected.calculatePathCost(expected.findShortestPath(), costFunction);
+      ArrayList<Server> delayAwarePath = expected.findDelayAwareShortestPath();
+      double delayAwareCost = expected.calculatePathCost(delayAwarePath, costFunction);
+      assertTrue(delayAwareCost > cost && delayAwareCost < Double.MAX_VALUE); //the delay requirement is binding
+
+      AuxiliaryNetwork auxnet = AuxiliaryGraphBuilder.buildAuxiliaryGraph(n, r, costFunction, bounded);
+      assertEquals(cost, auxnet.calculatePathCost(auxnet.findShortestPath(), costFunction), 1e-9);
+      ArrayList<Server> path = auxnet.findDelayAwareShortestPath();
+      assertEquals(delayAwareCost, auxnet.calculatePathCost(path, costFunction), 1e-9);
+      assertEquals(delayAwarePath.size(), path.size());
+      for (int i = 0; i < path.size(); i++) {
+        assertEquals(delayAwarePath.get(i).getId(), path.get(i).getId());
+      }
+      assertTrue(auxnet.getRelaxedArcs() < expected.getRelaxedArcs()); //the bounds do cut the search
+    }
+  }
+
+  /**
+   * Search a ring of @size servers with chords for a request across it, on the explicit auxiliary graph and layer by layer, with all-pair shortest
+   * paths, with a few cached rows and with dominated candidates pruned, and check that the paths found cost the same with and without the delay requirement
+   */
+  private static void assertSearchesMatchExplicitGraph(int size, double delayReq) {
+    Network n = ringNetwork(size);
+    ArrayList<Server> servers = n.getServers();
+
+    Parameters explicit = new Parameters.Builder().L(3).reqBWReqMin(1).reqBWReqMax(1).reqDelayMin(delayReq).reqDelayMax(delayReq).build();
+    Parameters implicit = new Parameters.Builder().L(3).reqBWReqMin(1).reqBWReqMax(1).reqDelayMin(delayReq).reqDelayMax(delayReq)
+        .implicitAuxiliaryGraph(true).build();
+    Parameters rows = new Parameters.Builder().L(3).reqBWReqMin(1).reqBWReqMax(1).reqDelayMin(delayReq).reqDelayMax(delayReq)
+        .implicitAuxiliaryGraph(true).shortestPathRowCacheBytes(8 * ShortestPathRowCache.rowBytes(size)).build();
+    Parameters pruned = new Parameters.Builder().L(3).reqBWReqMin(1).reqBWReqMax(1).reqDelayMin(delayReq).reqDelayMax(delayReq)
+        .implicitAuxiliaryGraph(true).pruneDominatedCandidates(true).build();
+    Request r = new Request(servers.get(0), servers.get(size / 2), explicit);
+    r.setServiceChain(new int[] {0, 1, 2});
+
+    OperationalCostFunction costFunction = new OperationalCostFunction();
+    AuxiliaryNetwork expected = AuxiliaryGraphBuilder.buildAuxiliaryGraph(n, r, costFunction, explicit);
+    double cost = expected.calculatePathCost(expected.findShortestPath(), costFunction);
+    double delayAwareCost = expected.calculatePathCost(expected.findDelayAwareShortestPath(), costFunction);
+    assertTrue(cost < Double.MAX_VALUE);
+    assertTrue(delayAwareCost > cost && delayAwareCost < Double.MAX_VALUE); //the cheapest path is too slow
+    assertNull(expected.getPrunedCandidates());
+    for (Parameters parameters : new Parameters[] {implicit, rows, pruned}) {
+      AuxiliaryNetwork auxnet = AuxiliaryGraphBuilder.buildAuxiliaryGraph(n, r, costFunction, parameters);
+      assertEquals(cost, auxnet.calculatePathCost(auxnet.findShortestPath(), costFunction), 1e-9);
+      assertEquals(delayAwareCost, auxnet.calculatePathCost(auxnet.findDelayAwareShortestPath(), costFunction), 1e-9);
+      if (parameters.pruneDominatedCandidates) {
+        assertEquals(r.getSC().length, auxnet.getPrunedCandidates().length);
+      }
+    }
+  }
+
+  /**
+   * @return a ring of @size servers with chords every three servers, where every server can host every service and every fourth one already has a VM
+   */
+  private static Network ringNetwork(int size) {
+    ArrayList<Server> servers = new ArrayList<>();
+    ArrayList<Link> links = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      servers.add(new Server(i));
+    }
+    for (int i = 0; i < size; i++) {
+      Link ring = new Link(servers.get(i), servers.get((i + 1) % size));
+      ring.setOperationalCost(1 + (i * 7) % 11);
+      links.add(ring);
+      if (i % 3 == 0) {
+        Link chord = new Link(servers.get(i), servers.get((i + size / 3 + 1) % size));
+        chord.setOperationalCost(2 + i % 13);
+        links.add(chord);
+      }
+    }
+
+    Network n = new Network(servers, links);
+    NetworkValueSetter nvs = new NetworkValueSetter(n, Simulation.baseParameters);
+    nvs.setConstantLinkCapacity(1000);
+    nvs.setConstantServerCapacity(10000, 1d);
+    for (int i = 0; i < links.size(); i++) {
+      links.get(i).setDelay(1 + (i * 5) % 7);
+    }
+    for (int i = 0; i < size; i += 4) {
+      servers.get(i).addVM(i % 3);
+    }
+    return n;
+  }
 }
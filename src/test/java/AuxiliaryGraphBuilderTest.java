@@ -1,5 +1,14 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.stream.Stream;
 
+import Algorithm.CostFunctions.ExponentialCostFunction;
 import Algorithm.CostFunctions.OperationalCostFunction;
 import Network.AuxiliaryNetwork;
 import Network.Link;
@@ -7,11 +16,48 @@ import Network.Network;
 import Network.Request;
 import Network.Server;
 import NetworkGenerator.AuxiliaryGraphBuilder;
+import NetworkGenerator.NetworkGenerator;
+import NetworkGenerator.ShortestPaths.AllPairShortestPaths;
+import NetworkGenerator.ShortestPaths.ApspArtifactStore;
+import NetworkGenerator.ShortestPaths.ApspEngine;
+import NetworkGenerator.ShortestPaths.CompactGraph;
+import NetworkGenerator.ShortestPaths.ContractionHierarchy;
+import NetworkGenerator.ShortestPaths.DeltaSteppingEngine;
+import NetworkGenerator.ShortestPaths.DijkstraEngine;
+import NetworkGenerator.ShortestPaths.DistanceOracle;
+import NetworkGenerator.ShortestPaths.DynamicShortestPaths;
+import NetworkGenerator.ShortestPaths.LandmarkOracle;
+import NetworkGenerator.ShortestPaths.MatrixFormat;
+import NetworkGenerator.ShortestPaths.MatrixStorage;
+import NetworkGenerator.ShortestPaths.PartitionedShortestPaths;
+import NetworkGenerator.ShortestPaths.ReducedShortestPaths;
+import NetworkGenerator.ShortestPaths.RestrictedShortestPaths;
+import NetworkGenerator.ShortestPaths.ShortestPathCache;
+import NetworkGenerator.ShortestPaths.ShortestPathEngine;
+import NetworkGenerator.ShortestPaths.ShortestPathRowCache;
+import NetworkGenerator.ShortestPaths.ShortestPathTree;
+import NetworkGenerator.ShortestPaths.SsspEngine;
+import NetworkGenerator.ShortestPaths.TopologyReduction;
+import NetworkGenerator.ShortestPaths.VertexOrdering;
 import Simulation.Parameters;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class AuxiliaryGraphBuilderTest {
+  //servers 0-3 form a cycle with chord 0-2, servers 4 and 5 hang from server 1, and servers 6 and 7 form a chain between servers 3 and 2
+  private static final int NUM_SERVERS = 8;
+  private static final int[][] ENDS = {{0, 1}, {1, 2}, {2, 3}, {3, 0}, {0, 2}, {1, 4}, {4, 5}, {3, 6}, {6, 7}, {7, 2}};
+  private static final double[] DELAYS = {3, 1, 4, 1, 5, 9, 2, 6, 5, 3};
+  private static final double[] FRACTIONAL_COSTS = {1.3, 2.9, 0.7, 3.1, 4.1, 1.1, 0.3, 0.9, 1.7, 0.2};
+  private static final double[] UNIT_COSTS = {1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+  private static final double[] INTEGER_COSTS = {1, 3, 2, 2, 3, 1, 4, 1, 1, 1};
+
   @Test
   public void testShortestPathsByCost() {
     //simple diamond shaped graph
@@ -62,4 +108,645 @@ public class AuxiliaryGraphBuilderTest {
     assertEquals(l1_3, path.get(0));
     assertEquals(l2_3, path.get(1));
   }
+
+  @Test
+  public void testRoutingBandwidthRoundsUpToItsClass() {
+    Parameters parameters = new Parameters.Builder().reqBWReqMin(2)
+                                                    .reqBWReqMax(50)
+                                                    .numBandwidthClasses(5)
+                                                    .build();
+    double rho = Math.pow(50d / 2d, 1d / 5d);
+    HashSet<Double> classes = new HashSet<>();
+    for (double b = 2d; b <= 50d; b += 0.125) {
+      double routed = AuxiliaryGraphBuilder.routingBandwidth(b, parameters);
+      assertTrue(b <= routed);
+      assertTrue(routed <= rho * b * (1d + 1e-12));
+      classes.add(routed);
+    }
+    assertEquals(5, classes.size());
+    assertEquals(50d, AuxiliaryGraphBuilder.routingBandwidth(50d, parameters), 0d);
+
+    //bandwidths outside the range, and any bandwidth without classes, are used as they are
+    assertEquals(1.5, AuxiliaryGraphBuilder.routingBandwidth(1.5, parameters), 0d);
+    assertEquals(60d, AuxiliaryGraphBuilder.routingBandwidth(60d, parameters), 0d);
+    Parameters exact = new Parameters.Builder().reqBWReqMin(2)
+                                               .reqBWReqMax(50)
+                                               .build();
+    assertEquals(7.3, AuxiliaryGraphBuilder.routingBandwidth(7.3, exact), 0d);
+  }
+
+  @Test
+  public void testAllPairShortestPathsMatchReference() {
+    for (double[] costs : new double[][] {FRACTIONAL_COSTS, UNIT_COSTS, INTEGER_COSTS}) {
+      Network n = testNetwork(costs);
+      CompactGraph graph = n.getCompactGraph();
+      AllPairShortestPaths apsp = AllPairShortestPaths.compute(graph, linkValues(graph, n, costs), linkValues(graph, n, DELAYS), false);
+      assertNotNull(apsp);
+      double[][][] reference = referenceShortestPaths(costs);
+      for (int s = 0; s < NUM_SERVERS; s++) {
+        for (int t = 0; t < NUM_SERVERS; t++) {
+          assertEquals(reference[0][s][t], apsp.getCost(s, t), 1e-9);
+          assertEquals(reference[1][s][t], apsp.getDelay(s, t), 1e-9);
+        }
+      }
+      assertConsistentPaths(apsp, n, costs);
+    }
+  }
+
+  @Test
+  public void testApspEnginesAgreeWithDijkstra() {
+    double[][] costVariants = {FRACTIONAL_COSTS, UNIT_COSTS, INTEGER_COSTS};
+    SsspEngine[] engines = {SsspEngine.DIJKSTRA, SsspEngine.BFS, SsspEngine.DIAL};
+    for (int i = 0; i < costVariants.length; i++) {
+      double[] costs = costVariants[i];
+      Network n = testNetwork(costs);
+      CompactGraph graph = n.getCompactGraph();
+      double[] weights = linkValues(graph, n, costs);
+      double[] delays = linkValues(graph, n, DELAYS);
+      assertEquals(engines[i], SsspEngine.select(graph, weights));
+      AllPairShortestPaths searched = AllPairShortestPaths.compute(graph, weights, delays, false, ApspEngine.DIJKSTRA, MatrixFormat.DEFAULT);
+      AllPairShortestPaths floydWarshall = AllPairShortestPaths.compute(graph, weights, delays, false, ApspEngine.FLOYD_WARSHALL, MatrixFormat.DEFAULT);
+      assertMatchesDijkstra(graph, weights, delays, searched);
+      assertMatchesDijkstra(graph, weights, delays, floydWarshall);
+      assertConsistentPaths(floydWarshall, n, costs);
+      //delta-stepping, with the derived bucket width, with buckets narrower than most links, and with a single bucket
+      for (double bucketWidth : new double[] {Double.NaN, 0.25, 100d}) {
+        ShortestPathEngine deltaStepping = new DeltaSteppingEngine(graph, bucketWidth);
+        ShortestPathTree tree = new ShortestPathTree(graph.size());
+        for (int s = 0; s < graph.size(); s++) {
+          deltaStepping.search(s, weights, delays, tree, null, 0);
+          for (int t = 0; t < graph.size(); t++) {
+            assertEquals(searched.getCost(graph.getServer(s).getId(), graph.getServer(t).getId()), tree.getCost(t), 1e-9);
+            assertEquals(searched.getDelay(graph.getServer(s).getId(), graph.getServer(t).getId()), tree.getDelay(t), 1e-9);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCompactMatrixFormatsMatchDoubles() {
+    MatrixFormat[] formats = {new MatrixFormat(MatrixStorage.HEAP, true, false), new MatrixFormat(MatrixStorage.HEAP, false, true),
+        new MatrixFormat(MatrixStorage.HEAP, true, true), new MatrixFormat(MatrixStorage.OFF_HEAP, true, true)};
+    for (double[] costs : new double[][] {FRACTIONAL_COSTS, INTEGER_COSTS}) {
+      Network n = testNetwork(costs);
+      CompactGraph graph = n.getCompactGraph();
+      double[] weights = linkValues(graph, n, costs);
+      double[] delays = linkValues(graph, n, DELAYS);
+      AllPairShortestPaths doubles = AllPairShortestPaths.compute(graph, weights, delays, false, ApspEngine.DIJKSTRA, MatrixFormat.DEFAULT);
+      assertNotNull(doubles);
+      for (MatrixFormat format : formats) {
+        AllPairShortestPaths apsp = AllPairShortestPaths.compute(graph, weights, delays, false, ApspEngine.DIJKSTRA, format);
+        assertNotNull(apsp);
+        double relativeError = format.isSinglePrecision() ? MatrixFormat.SINGLE_PRECISION_ERROR : 0d;
+        for (int s = 0; s < NUM_SERVERS; s++) {
+          for (int t = 0; t < NUM_SERVERS; t++) {
+            //the upper triangle holds the sums of the reversed paths, which may round differently
+            assertEquals(doubles.getCost(s, t), apsp.getCost(s, t), 1e-9 + relativeError * doubles.getCost(s, t));
+            assertEquals(doubles.getDelay(s, t), apsp.getDelay(s, t), 1e-9 + relativeError * doubles.getDelay(s, t));
+          }
+        }
+        //symmetric tables serve the paths below the diagonal reversed
+        assertConsistentPaths(apsp, n, costs, relativeError);
+      }
+    }
+  }
+
+  @Test
+  public void testIncrementalShortestPathsMatchFullRecomputation() {
+    Network n = testNetwork(FRACTIONAL_COSTS);
+    CompactGraph graph = n.getCompactGraph();
+    double[] delays = linkValues(graph, n, DELAYS);
+    DynamicShortestPaths dynamicShortestPaths = new DynamicShortestPaths(graph);
+    assertNotNull(dynamicShortestPaths.update(linkValues(graph, n, FRACTIONAL_COSTS), delays, false, ApspEngine.DIJKSTRA, MatrixFormat.DEFAULT));
+
+    double[] costs = FRACTIONAL_COSTS.clone();
+    costs[4] = Double.POSITIVE_INFINITY; //the chord runs out of bandwidth
+    costs[8] = 0.1;
+    double[] weights = linkValues(graph, n, costs);
+    AllPairShortestPaths incremental = dynamicShortestPaths.update(weights, delays, false, ApspEngine.DIJKSTRA, MatrixFormat.DEFAULT);
+    assertEquals(1, dynamicShortestPaths.getIncrementalUpdates());
+    assertSameShortestPaths(AllPairShortestPaths.compute(graph, weights, delays, false), incremental, 1e-9);
+    assertConsistentPaths(incremental, n, costs);
+  }
+
+  @Test
+  public void testVertexOrderingsKeepShortestPaths() {
+    for (double[] costs : new double[][] {FRACTIONAL_COSTS, INTEGER_COSTS}) {
+      Network reference = testNetwork(costs);
+      CompactGraph referenceGraph = reference.getCompactGraph();
+      AllPairShortestPaths expected = AllPairShortestPaths.compute(referenceGraph, linkValues(referenceGraph, reference, costs),
+                                                                   linkValues(referenceGraph, reference, DELAYS), false);
+      for (VertexOrdering ordering : new VertexOrdering[] {VertexOrdering.REVERSE_CUTHILL_MCKEE, VertexOrdering.COMPUTING_FIRST}) {
+        Network n = testNetwork(costs);
+        //servers 5 and 7 lie at the far ends of the network order, computing first puts them in the first rows
+        n.getServers().get(5).setComputingCapacity(1d);
+        n.getServers().get(7).setComputingCapacity(1d);
+        n.setVertexOrdering(ordering);
+        CompactGraph graph = n.getCompactGraph();
+        boolean renumbered = false;
+        for (int v = 0; v < graph.size(); v++) {
+          renumbered |= graph.getServer(v).getId() != referenceGraph.getServer(v).getId();
+        }
+        assertTrue(renumbered);
+        if (ordering == VertexOrdering.COMPUTING_FIRST) {
+          assertTrue(graph.indexOf(5) < 2 && graph.indexOf(7) < 2);
+        }
+        AllPairShortestPaths apsp = AllPairShortestPaths.compute(graph, linkValues(graph, n, costs), linkValues(graph, n, DELAYS), false);
+        assertSameShortestPaths(expected, apsp, 1e-9);
+        //the same links, by the ids of their ends, as the links of the other network are other objects
+        for (int s = 0; s < NUM_SERVERS; s++) {
+          for (int t = 0; t < NUM_SERVERS; t++) {
+            ArrayList<Link> expectedPath = expected.getPath(s, t);
+            ArrayList<Link> path = apsp.getPath(s, t);
+            assertEquals(expectedPath.size(), path.size());
+            for (int i = 0; i < path.size(); i++) {
+              assertEquals(expectedPath.get(i).getS1().getId(), path.get(i).getS1().getId());
+              assertEquals(expectedPath.get(i).getS2().getId(), path.get(i).getS2().getId());
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testContractionHierarchyIsExact() {
+    for (double[] costs : new double[][] {FRACTIONAL_COSTS, INTEGER_COSTS}) {
+      Network n = testNetwork(costs);
+      CompactGraph graph = n.getCompactGraph();
+      double[] weights = linkValues(graph, n, costs);
+      double[] delays = linkValues(graph, n, DELAYS);
+      ContractionHierarchy hierarchy = n.getContractionHierarchy();
+      hierarchy.customize(weights, delays);
+      AllPairShortestPaths apsp = AllPairShortestPaths.compute(graph, weights, delays, false);
+      assertSameShortestPaths(apsp, hierarchy, 1e-9);
+      assertConsistentPaths(hierarchy, n, costs);
+      //whole rows, as the layers of an implicit auxiliary graph read them
+      int[] ids = new int[NUM_SERVERS];
+      for (int t = 0; t < NUM_SERVERS; t++) {
+        ids[t] = t;
+      }
+      double[] rowCosts = new double[NUM_SERVERS];
+      double[] rowDelays = new double[NUM_SERVERS];
+      for (int s = 0; s < NUM_SERVERS; s++) {
+        hierarchy.getCostsAndDelays(s, ids, rowCosts, rowDelays);
+        for (int t = 0; t < NUM_SERVERS; t++) {
+          assertEquals(apsp.getCost(s, t), rowCosts[t], 1e-9);
+          assertEquals(apsp.getDelay(s, t), rowDelays[t], 1e-9);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testReducedTopologyIsExact() {
+    Network n = testNetwork(FRACTIONAL_COSTS);
+    CompactGraph graph = n.getCompactGraph();
+    double[] weights = linkValues(graph, n, FRACTIONAL_COSTS);
+    double[] delays = linkValues(graph, n, DELAYS);
+    boolean[] terminals = new boolean[graph.size()];
+    terminals[graph.indexOf(0)] = true;
+    terminals[graph.indexOf(3)] = true;
+    TopologyReduction reduction = new TopologyReduction(graph, terminals);
+    assertEquals(3, reduction.numCoreVertices()); //servers 0, 2 and 3
+    assertEquals(2, reduction.numPeeledVertices()); //servers 4 and 5
+    assertEquals(5, reduction.numChains()); //through server 1, through servers 6 and 7, and three single links
+    ReducedShortestPaths reduced = ReducedShortestPaths.compute(reduction, weights, delays, false);
+    assertNotNull(reduced);
+    assertSameShortestPaths(AllPairShortestPaths.compute(graph, weights, delays, false), reduced, 1e-9);
+    assertConsistentPaths(reduced, n, FRACTIONAL_COSTS);
+  }
+
+  @Test
+  public void testShortestPathRowCacheIsExact() {
+    for (double[] costs : new double[][] {FRACTIONAL_COSTS, UNIT_COSTS, INTEGER_COSTS}) {
+      Network n = testNetwork(costs);
+      CompactGraph graph = n.getCompactGraph();
+      double[] weights = linkValues(graph, n, costs);
+      double[] delays = linkValues(graph, n, DELAYS);
+      AllPairShortestPaths apsp = AllPairShortestPaths.compute(graph, weights, delays, false);
+      //with room for all rows, and with room for a single one
+      for (long memoryLimit : new long[] {NUM_SERVERS * ShortestPathRowCache.rowBytes(NUM_SERVERS), 1L}) {
+        ShortestPathRowCache rows = new ShortestPathRowCache(graph, memoryLimit);
+        assertTrue(rows.update(weights, delays, false, Double.NaN));
+        assertSameShortestPaths(apsp, rows, 1e-9);
+        assertConsistentPaths(rows, n, costs);
+      }
+    }
+  }
+
+  @Test
+  public void testShortestPathRowCacheEvictsLeastRecentlyUsedRows() {
+    Network n = testNetwork(FRACTIONAL_COSTS);
+    CompactGraph graph = n.getCompactGraph();
+    ShortestPathRowCache rows = new ShortestPathRowCache(graph, 3 * ShortestPathRowCache.rowBytes(NUM_SERVERS));
+    assertEquals(3, rows.getMaxRows());
+    assertTrue(rows.update(linkValues(graph, n, FRACTIONAL_COSTS), linkValues(graph, n, DELAYS), false, Double.NaN));
+
+    for (int s = 0; s < 3; s++) {
+      rows.getCost(s, 7);
+    }
+    rows.getCost(0, 7);
+    assertEquals(1, rows.getHits());
+    assertEquals(3, rows.getMisses());
+
+    rows.getCost(3, 7); //evicts the row of server 1, the least recently used one
+    assertEquals(3, rows.size());
+    assertEquals(1, rows.getEvictions());
+    rows.getCost(0, 7);
+    assertEquals(2, rows.getHits());
+    rows.getCost(1, 7);
+    assertEquals(5, rows.getMisses());
+    assertEquals(2, rows.getEvictions());
+  }
+
+  @Test
+  public void testShortestPathRowCacheDropsRowsAffectedByWeightChanges() {
+    Network n = testNetwork(FRACTIONAL_COSTS);
+    CompactGraph graph = n.getCompactGraph();
+    double[] delays = linkValues(graph, n, DELAYS);
+    ShortestPathRowCache rows = new ShortestPathRowCache(graph, NUM_SERVERS * ShortestPathRowCache.rowBytes(NUM_SERVERS));
+    assertTrue(rows.update(linkValues(graph, n, FRACTIONAL_COSTS), delays, false, Double.NaN));
+    for (int s = 0; s < NUM_SERVERS; s++) {
+      rows.getCost(s, 0);
+    }
+    assertEquals(NUM_SERVERS, rows.size());
+
+    double[] costs = FRACTIONAL_COSTS.clone();
+    costs[8] = 2.0; //the link between servers 6 and 7, which two of the shortest path trees use, gets more expensive
+    double[] weights = linkValues(graph, n, costs);
+    assertTrue(rows.update(weights, delays, false, Double.NaN));
+    assertEquals(NUM_SERVERS - 2, rows.size());
+    assertEquals(2, rows.getInvalidations());
+    assertSameShortestPaths(AllPairShortestPaths.compute(graph, weights, delays, false), rows, 1e-9);
+
+    costs[4] = Double.POSITIVE_INFINITY; //the chord runs out of bandwidth, and the link between servers 6 and 7 gets cheaper
+    costs[8] = 0.1;
+    weights = linkValues(graph, n, costs);
+    assertTrue(rows.update(weights, delays, false, Double.NaN));
+    assertTrue(rows.getInvalidations() > 2);
+    assertSameShortestPaths(AllPairShortestPaths.compute(graph, weights, delays, false), rows, 1e-9);
+    assertConsistentPaths(rows, n, costs);
+  }
+
+  @Test
+  public void testLandmarkEstimatesAreBounded() {
+    for (double[] costs : new double[][] {FRACTIONAL_COSTS, INTEGER_COSTS}) {
+      Network n = testNetwork(costs);
+      CompactGraph graph = n.getCompactGraph();
+      double[] weights = linkValues(graph, n, costs);
+      double[] delays = linkValues(graph, n, DELAYS);
+      AllPairShortestPaths apsp = AllPairShortestPaths.compute(graph, weights, delays, false);
+      assertNotNull(apsp);
+      for (double maxError : new double[] {0d, 0.5d, 4d}) { //without slack, every cost is exact
+        LandmarkOracle landmarks = LandmarkOracle.compute(graph, weights, delays, 2, maxError);
+        LandmarkOracle pathsFirst = LandmarkOracle.compute(graph, weights, delays, 2, maxError);
+        assertNotNull(landmarks);
+        assertNotNull(pathsFirst);
+        for (int s = 0; s < NUM_SERVERS; s++) {
+          for (int t = 0; t < NUM_SERVERS; t++) {
+            double exact = apsp.getCost(s, t);
+            double estimate = landmarks.getCost(s, t);
+            assertTrue(exact <= estimate + 1e-9);
+            assertTrue(estimate <= (1d + maxError) * exact + 1e-9);
+            //building the path first does not change the estimates
+            pathsFirst.getPath(s, t);
+            assertEquals(estimate, pathsFirst.getCost(s, t), 0d);
+            assertEquals(landmarks.getDelay(s, t), pathsFirst.getDelay(s, t), 0d);
+          }
+        }
+        //paths cost and delay at most the estimates
+        for (int s = 0; s < NUM_SERVERS; s++) {
+          for (int t = 0; t < NUM_SERVERS; t++) {
+            double cost = 0d;
+            double delay = 0d;
+            for (Link l : landmarks.getPath(s, t)) {
+              for (int i = 0; i < ENDS.length; i++) {
+                if (l.getS1().getId() == ENDS[i][0] && l.getS2().getId() == ENDS[i][1]) {
+                  cost += costs[i];
+                  delay += DELAYS[i];
+                }
+              }
+            }
+            assertTrue(cost <= landmarks.getCost(s, t) + 1e-9);
+            assertTrue(delay <= landmarks.getDelay(s, t) + 1e-9);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testPartitionedShortestPathsAreExact() {
+    Network n = NetworkGenerator.generateRealNetworks(50, "0");
+    Random random = new Random(11L);
+    for (Link l : n.getLinks()) {
+      l.setOperationalCost(0.1 + random.nextDouble() * 10d);
+      l.setDelay(1 + random.nextInt(10));
+    }
+    CompactGraph graph = n.getCompactGraph();
+    double[] weights = new double[graph.numLinks()];
+    double[] delays = new double[graph.numLinks()];
+    for (int e = 0; e < graph.numLinks(); e++) {
+      weights[e] = graph.getLink(e).getOperationalCost();
+      delays[e] = graph.getLink(e).getDelay();
+    }
+    AllPairShortestPaths apsp = AllPairShortestPaths.compute(graph, weights, delays, false);
+    assertNotNull(apsp);
+    for (int numRegions : new int[] {1, 4, 7}) {
+      PartitionedShortestPaths partitioned = PartitionedShortestPaths.compute(graph, weights, delays, numRegions, false);
+      assertNotNull(partitioned);
+      for (Server s : n.getServers()) {
+        for (Server t : n.getServers()) {
+          assertEquals(apsp.getCost(s.getId(), t.getId()), partitioned.getCost(s.getId(), t.getId()), 1e-9);
+          assertEquals(apsp.getDelay(s.getId(), t.getId()), partitioned.getDelay(s.getId(), t.getId()), 1e-9);
+          Server at = s;
+          double cost = 0d;
+          double delay = 0d;
+          for (Link l : partitioned.getPath(s.getId(), t.getId())) {
+            at = l.getS1() == at ? l.getS2() : l.getS1();
+            cost += l.getOperationalCost();
+            delay += l.getDelay();
+          }
+          assertSame(t, at);
+          assertEquals(partitioned.getCost(s.getId(), t.getId()), cost, 1e-9);
+          assertEquals(partitioned.getDelay(s.getId(), t.getId()), delay, 1e-9);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRestrictedShortestPathsMatchAllPairShortestPaths() {
+    Network n = testNetwork(FRACTIONAL_COSTS);
+    CompactGraph graph = n.getCompactGraph();
+    double[] weights = linkValues(graph, n, FRACTIONAL_COSTS);
+    double[] delays = linkValues(graph, n, DELAYS);
+    AllPairShortestPaths apsp = AllPairShortestPaths.compute(graph, weights, delays, false);
+    //the source, the destination and the servers of the service layers of a request
+    int[] targets = {graph.indexOf(0), graph.indexOf(7), graph.indexOf(5), graph.indexOf(2)};
+    RestrictedShortestPaths restricted = RestrictedShortestPaths.compute(graph, targets, weights, delays, false, Double.NaN);
+    assertNotNull(apsp);
+    assertNotNull(restricted);
+    for (int s : targets) {
+      for (int t : targets) {
+        assertEquals(apsp.getCost(s, t), restricted.getCost(s, t), 1e-9);
+        assertEquals(apsp.getDelay(s, t), restricted.getDelay(s, t), 1e-9);
+      }
+    }
+    //pairs involving other servers fall back to full searches
+    assertSameShortestPaths(apsp, restricted, 1e-9);
+    assertConsistentPaths(restricted, n, FRACTIONAL_COSTS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConflictingShortestPathOptionsAreRejected() {
+    new Parameters.Builder().targetRestrictedShortestPaths(true)
+                            .numLandmarks(4)
+                            .build();
+  }
+
+  @Test
+  public void testApspArtifactsRoundTrip() throws IOException {
+    Network n = testNetwork(FRACTIONAL_COSTS);
+    CompactGraph graph = n.getCompactGraph();
+    double[] weights = linkValues(graph, n, FRACTIONAL_COSTS);
+    double[] delays = linkValues(graph, n, DELAYS);
+    AllPairShortestPaths apsp = AllPairShortestPaths.compute(graph, weights, delays, false);
+    assertNotNull(apsp);
+    ApspArtifactStore store = new ApspArtifactStore(Files.createTempDirectory("apsp").toString());
+    String key = ApspArtifactStore.key(graph, weights, delays);
+    assertNull(store.load(graph, key, MatrixFormat.DEFAULT));
+
+    store.save(key, apsp);
+    for (MatrixFormat format : new MatrixFormat[] {MatrixFormat.DEFAULT, new MatrixFormat(MatrixStorage.MAPPED, false, false)}) {
+      AllPairShortestPaths loaded = store.load(graph, key, format);
+      assertSameShortestPaths(apsp, loaded, 0d);
+      assertConsistentPaths(loaded, n, FRACTIONAL_COSTS);
+    }
+  }
+
+  @Test
+  public void testStaleApspArtifactsAreRejected() throws IOException {
+    Network n = testNetwork(FRACTIONAL_COSTS);
+    CompactGraph graph = n.getCompactGraph();
+    double[] weights = linkValues(graph, n, FRACTIONAL_COSTS);
+    double[] delays = linkValues(graph, n, DELAYS);
+    Path directory = Files.createTempDirectory("apsp");
+    ApspArtifactStore store = new ApspArtifactStore(directory.toString());
+    String key = ApspArtifactStore.key(graph, weights, delays);
+    store.save(key, AllPairShortestPaths.compute(graph, weights, delays, false));
+
+    //other link values, e.g., once bandwidth was reserved, are stored under another key
+    double[] otherWeights = weights.clone();
+    otherWeights[0] += 1d;
+    String otherKey = ApspArtifactStore.key(graph, otherWeights, delays);
+    assertNotEquals(key, otherKey);
+    assertNull(store.load(graph, otherKey, MatrixFormat.DEFAULT));
+
+    //an artifact written by another version of the store
+    Path artifact = directory.resolve(key + ".apsp");
+    byte[] bytes = Files.readAllBytes(artifact);
+    bytes[Integer.BYTES + 3] ^= 1;
+    Files.write(artifact, bytes);
+    assertNull(store.load(graph, key, MatrixFormat.DEFAULT));
+
+    //a truncated artifact
+    Files.write(artifact, Arrays.copyOf(bytes, bytes.length / 2));
+    assertNull(store.load(graph, key, MatrixFormat.DEFAULT));
+  }
+
+  @Test
+  public void testOfflineShortestPathsArePersistedPerBandwidthClass() throws IOException {
+    ExponentialCostFunction costFunction = new ExponentialCostFunction(); //its link costs depend on the bandwidth
+    for (int numBandwidthClasses : new int[] {0, 4}) {
+      Path directory = Files.createTempDirectory("apsp");
+      Parameters parameters = new Parameters.Builder().L(2)
+                                                      .reqBWReqMin(2)
+                                                      .reqBWReqMax(8)
+                                                      .numBandwidthClasses(numBandwidthClasses)
+                                                      .apspArtifactDirectory(directory.toString())
+                                                      .build();
+      Network n = testNetwork(FRACTIONAL_COSTS);
+      Request r = new Request(n.getServers().get(0), n.getServers().get(7), parameters);
+      assertNotNull(AuxiliaryGraphBuilder.buildAuxiliaryGraphOffline(n, r, costFunction, parameters));
+      try (Stream<Path> artifacts = Files.list(directory)) {
+        assertEquals(numBandwidthClasses > 0 ? 1 : 0, artifacts.count());
+      }
+    }
+  }
+
+  @Test
+  public void testShortestPathCacheFollowsNetworkEpoch() {
+    Parameters parameters = new Parameters.Builder().L(2)
+                                                    .reqBWReqMin(2)
+                                                    .reqBWReqMax(2)
+                                                    .offline(false)
+                                                    .build();
+    OperationalCostFunction costFunction = new OperationalCostFunction();
+    Network n = testNetwork(FRACTIONAL_COSTS);
+    Request r = new Request(n.getServers().get(0), n.getServers().get(7), parameters);
+    ShortestPathCache cache = n.getShortestPathCache();
+
+    assertNotNull(AuxiliaryGraphBuilder.buildAuxiliaryGraph(n, r, costFunction, parameters));
+    assertEquals(0, cache.getHits());
+    assertEquals(1, cache.getMisses());
+
+    //nothing was reserved for the request (e.g., it was rejected), so the next one reuses its shortest paths
+    assertNotNull(AuxiliaryGraphBuilder.buildAuxiliaryGraph(n, r, costFunction, parameters));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+
+    //wiping the links bumps the epoch of the network, which invalidates the cache
+    long epoch = n.getEpoch();
+    n.wipeLinks();
+    assertNotEquals(epoch, n.getEpoch());
+    assertNotNull(AuxiliaryGraphBuilder.buildAuxiliaryGraph(n, r, costFunction, parameters));
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void testShortestPathCacheDropsEntriesOfPreviousEpochs() {
+    Parameters parameters = new Parameters.Builder().build();
+    OperationalCostFunction costFunction = new OperationalCostFunction();
+    Network n = testNetwork(FRACTIONAL_COSTS);
+    CompactGraph graph = n.getCompactGraph();
+    AllPairShortestPaths apsp = AllPairShortestPaths.compute(graph, linkValues(graph, n, FRACTIONAL_COSTS), linkValues(graph, n, DELAYS), false);
+    ShortestPathCache cache = new ShortestPathCache();
+    ShortestPathCache.Key key = new ShortestPathCache.Key(0L, costFunction, parameters, 1d, new BitSet(), null);
+    ShortestPathCache.Key nextEpochKey = new ShortestPathCache.Key(1L, costFunction, parameters, 1d, new BitSet(), null);
+
+    cache.put(key, apsp);
+    assertTrue(cache.contains(key));
+    assertSame(apsp, cache.get(key));
+    assertFalse(cache.contains(nextEpochKey));
+    assertFalse(cache.contains(key)); //going back to an old epoch does not bring its entries back
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  private static Network testNetwork(double[] costs) {
+    ArrayList<Server> servers = new ArrayList<>();
+    ArrayList<Link> links = new ArrayList<>();
+    for (int i = 0; i < NUM_SERVERS; i++) {
+      servers.add(new Server(i));
+    }
+    for (int i = 0; i < ENDS.length; i++) {
+      Link l = new Link(servers.get(ENDS[i][0]), servers.get(ENDS[i][1]));
+      l.setBandwidthCapacity(Integer.MAX_VALUE);
+      l.setOperationalCost(costs[i]);
+      l.setDelay(DELAYS[i]);
+      links.add(l);
+    }
+    return new Network(servers, links);
+  }
+
+  /**
+   * @return @values, given in the order of ENDS, indexed by the links of @graph
+   */
+  private static double[] linkValues(CompactGraph graph, Network n, double[] values) {
+    double[] ret = new double[graph.numLinks()];
+    for (int e = 0; e < ret.length; e++) {
+      Link l = graph.getLink(e);
+      for (int i = 0; i < ENDS.length; i++) {
+        if (l.getS1().getId() == ENDS[i][0] && l.getS2().getId() == ENDS[i][1]) {
+          ret[e] = values[i];
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @return the costs and delays of the shortest paths with the lowest delay between every two servers, by Floyd-Warshall on (cost, delay) pairs
+   */
+  private static double[][][] referenceShortestPaths(double[] costs) {
+    int n = NUM_SERVERS;
+    double[][] cost = new double[n][n];
+    double[][] delay = new double[n][n];
+    for (int s = 0; s < n; s++) {
+      for (int t = 0; t < n; t++) {
+        cost[s][t] = s == t ? 0d : Double.POSITIVE_INFINITY;
+        delay[s][t] = s == t ? 0d : Double.POSITIVE_INFINITY;
+      }
+    }
+    for (int i = 0; i < ENDS.length; i++) {
+      for (int[] arc : new int[][] {{ENDS[i][0], ENDS[i][1]}, {ENDS[i][1], ENDS[i][0]}}) {
+        cost[arc[0]][arc[1]] = costs[i];
+        delay[arc[0]][arc[1]] = DELAYS[i];
+      }
+    }
+    for (int k = 0; k < n; k++) {
+      for (int s = 0; s < n; s++) {
+        for (int t = 0; t < n; t++) {
+          double alt = cost[s][k] + cost[k][t];
+          double altDelay = delay[s][k] + delay[k][t];
+          if (alt < cost[s][t] - 1e-9 || (alt <= cost[s][t] + 1e-9 && altDelay < delay[s][t])) {
+            cost[s][t] = alt;
+            delay[s][t] = altDelay;
+          }
+        }
+      }
+    }
+    return new double[][][] {cost, delay};
+  }
+
+
+  /**
+   * Check @oracle against the heap Dijkstra engine, which SsspEngine may have replaced by BFS or Dial
+   */
+  private static void assertMatchesDijkstra(CompactGraph graph, double[] weights, double[] delays, DistanceOracle oracle) {
+    assertNotNull(oracle);
+    DijkstraEngine dijkstra = new DijkstraEngine(graph);
+    ShortestPathTree tree = new ShortestPathTree(graph.size());
+    for (int s = 0; s < graph.size(); s++) {
+      dijkstra.search(s, weights, delays, tree, null, 0);
+      for (int t = 0; t < graph.size(); t++) {
+        assertEquals(tree.getCost(t), oracle.getCost(graph.getServer(s).getId(), graph.getServer(t).getId()), 1e-9);
+        assertEquals(tree.getDelay(t), oracle.getDelay(graph.getServer(s).getId(), graph.getServer(t).getId()), 1e-9);
+      }
+    }
+  }
+
+  private static void assertSameShortestPaths(DistanceOracle expected, DistanceOracle actual, double delta) {
+    assertNotNull(expected);
+    assertNotNull(actual);
+    for (int s = 0; s < NUM_SERVERS; s++) {
+      for (int t = 0; t < NUM_SERVERS; t++) {
+        assertEquals(expected.getCost(s, t), actual.getCost(s, t), delta);
+        assertEquals(expected.getDelay(s, t), actual.getDelay(s, t), delta);
+      }
+    }
+  }
+
+  private static void assertConsistentPaths(DistanceOracle oracle, Network n, double[] costs) {
+    assertConsistentPaths(oracle, n, costs, 0d);
+  }
+
+  /**
+   * Check that the path between every two servers runs between them, and costs and delays what @oracle says, up to a relative error of @relativeError
+   */
+  private static void assertConsistentPaths(DistanceOracle oracle, Network n, double[] costs, double relativeError) {
+    for (int s = 0; s < NUM_SERVERS; s++) {
+      for (int t = 0; t < NUM_SERVERS; t++) {
+        int at = s;
+        double cost = 0d;
+        double delay = 0d;
+        for (Link l : oracle.getPath(s, t)) {
+          at = l.getS1().getId() == at ? l.getS2().getId() : l.getS1().getId();
+          for (int i = 0; i < ENDS.length; i++) {
+            if (l.getS1().getId() == ENDS[i][0] && l.getS2().getId() == ENDS[i][1]) {
+              cost += costs[i];
+              delay += DELAYS[i];
+            }
+          }
+        }
+        assertEquals(t, at);
+        assertEquals(oracle.getCost(s, t), cost, 1e-9 + relativeError * cost);
+        assertEquals(oracle.getDelay(s, t), delay, 1e-9 + relativeError * delay);
+      }
+    }
+  }
 }
@@ -13,6 +13,7 @@ import Simulation.Parameters;
 import Simulation.Simulation;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class AuxiliaryNetworkTest {
 
@@ -91,6 +92,64 @@ public class AuxiliaryNetworkTest {
     assertEquals(2, s2_1.getLink(dest).getWeight(), 0.001);
   }
 
+  @Test
+  public void testBeamSearchIsBoundedByExactSearch() {
+    //ring of servers with chords, every server can host every service
+    int size = 30;
+    ArrayList<Server> servers = new ArrayList<>();
+    ArrayList<Link> links = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      servers.add(new Server(i));
+    }
+    for (int i = 0; i < size; i++) {
+      Link ring = new Link(servers.get(i), servers.get((i + 1) % size));
+      ring.setOperationalCost(1 + (i * 7) % 11);
+      links.add(ring);
+      if (i % 3 == 0) {
+        Link chord = new Link(servers.get(i), servers.get((i + size / 3 + 1) % size));
+        chord.setOperationalCost(2 + i % 13);
+        links.add(chord);
+      }
+    }
+
+    Network n = new Network(servers, links);
+    NetworkValueSetter nvs = new NetworkValueSetter(n, Simulation.baseParameters);
+    nvs.setConstantLinkCapacity(1000);
+    nvs.setConstantServerCapacity(10000, 1);
+    for (int i = 0; i < links.size(); i++) {
+      links.get(i).setDelay(1 + (i * 5) % 7);
+    }
+    for (int i = 0; i < size; i += 4) {
+      servers.get(i).addVM(i % 3);
+    }
+
+    Parameters exact = new Parameters.Builder().L(3).reqBWReqMin(1).reqBWReqMax(1).reqDelayMin(80).reqDelayMax(80)
+        .implicitAuxiliaryGraph(true).build();
+    Request r = new Request(servers.get(0), servers.get(size / 2), exact);
+    r.setServiceChain(new int[] {0, 1, 2});
+    OperationalCostFunction costFunction = new OperationalCostFunction();
+    AuxiliaryNetwork expected = AuxiliaryGraphBuilder.buildAuxiliaryGraph(n, r, costFunction, exact);
+    double cost = expected.calculatePathCost(expected.findShortestPath(), costFunction);
+    double delayAwareCost = expected.calculatePathCost(expected.findDelayAwareShortestPath(), costFunction);
+
+    //a layer has at most one server per server of the network, so a beam of that many servers is exact
+    for (int beamWidth : new int[] {1, 2, 4, 8, size, 2 * size}) {
+      Parameters beam = new Parameters.Builder().L(3).reqBWReqMin(1).reqBWReqMax(1).reqDelayMin(80).reqDelayMax(80)
+          .implicitAuxiliaryGraph(true).beamWidth(beamWidth).build();
+      AuxiliaryNetwork auxnet = AuxiliaryGraphBuilder.buildAuxiliaryGraph(n, r, costFunction, beam);
+      ArrayList<Server> path = auxnet.findShortestPath();
+      assertEquals(r.getSC().length + 2, path.size());
+      double beamCost = auxnet.calculatePathCost(path, costFunction);
+      if (beamWidth >= size) {
+        assertEquals(cost, beamCost, 1e-9);
+      } else {
+        assertTrue(beamCost >= cost - 1e-9);
+      }
+      //LARAC stays exact under a beam
+      assertEquals(delayAwareCost, auxnet.calculatePathCost(auxnet.findDelayAwareShortestPath(), costFunction), 1e-9);
+    }
+  }
+
   private Server getServer(HashSet<Server> servers, int id) {
     for (Server s : servers) {
       if (s.getId() == id) {
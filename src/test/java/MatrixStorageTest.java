@@ -0,0 +1,57 @@
+import java.util.Random;
+
+import NetworkGenerator.ShortestPaths.DistanceMatrix;
+import NetworkGenerator.ShortestPaths.IntMatrix;
+import NetworkGenerator.ShortestPaths.MatrixStorage;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MatrixStorageTest {
+  private static final int N = 37;
+
+  @Test
+  public void testStoragesRoundTripRowsLikeHeap() {
+    for (MatrixStorage storage : new MatrixStorage[] {MatrixStorage.OFF_HEAP, MatrixStorage.MAPPED}) {
+      Random random = new Random(7L);
+      DistanceMatrix heap = MatrixStorage.HEAP.newDistanceMatrix(N, false, false);
+      DistanceMatrix other = storage.newDistanceMatrix(N, false, false);
+      IntMatrix heapInts = MatrixStorage.HEAP.newIntMatrix(N);
+      IntMatrix otherInts = storage.newIntMatrix(N);
+      assertEquals(N, other.size());
+      assertEquals(N, otherInts.size());
+
+      //rows are written from an offset into longer arrays, as the searches of a batch of sources share them
+      double[] values = new double[N + 3];
+      int[] ints = new int[N + 3];
+      for (int row = 0; row < N; row++) {
+        for (int i = 0; i < values.length; i++) {
+          values[i] = i % 11 == 0 ? Double.POSITIVE_INFINITY : random.nextDouble() * 100d;
+          ints[i] = random.nextInt(N + 1) - 1; //-1 marks the source and unreachable vertices
+        }
+        int offset = row % 4;
+        heap.setRow(row, values, offset);
+        other.setRow(row, values, offset);
+        heapInts.setRow(row, ints, offset);
+        otherInts.setRow(row, ints, offset);
+      }
+
+      double[] expected = new double[N];
+      double[] actual = new double[N];
+      int[] expectedInts = new int[N];
+      int[] actualInts = new int[N];
+      for (int row = 0; row < N; row++) {
+        heap.getRow(row, expected);
+        other.getRow(row, actual);
+        assertArrayEquals(expected, actual, 0d);
+        heapInts.getRow(row, expectedInts);
+        otherInts.getRow(row, actualInts);
+        assertArrayEquals(expectedInts, actualInts);
+        for (int col = 0; col < N; col++) {
+          assertEquals(heap.get(row, col), other.get(row, col), 0d);
+          assertEquals(heapInts.get(row, col), otherInts.get(row, col));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,125 @@
+import java.util.Random;
+
+import NetworkGenerator.NetworkGenerator;
+import NetworkGenerator.ShortestPaths.AllPairShortestPaths;
+import NetworkGenerator.ShortestPaths.ApspEngine;
+import NetworkGenerator.ShortestPaths.CompactGraph;
+import NetworkGenerator.ShortestPaths.MatrixFormat;
+import NetworkGenerator.ShortestPaths.ShortestPathRefresher;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ShortestPathRefresherTest {
+  private static final String[] CONFIGURATIONS = {"exponential", "linear", "operational"};
+
+  @Test
+  public void testLookupWithinAndBeyondMaxLag() {
+    CompactGraph graph = NetworkGenerator.generateRealNetworks(50, "0").getCompactGraph();
+    double[] delays = linkValues(graph, 0L);
+    ShortestPathRefresher refresher = new ShortestPathRefresher(graph);
+    assertNull(refresher.lookup(CONFIGURATIONS[0], 0L, 0L)); //nothing was computed yet
+    assertEquals(1, refresher.getFallbacks());
+
+    AllPairShortestPaths computed = refresher.compute(CONFIGURATIONS[0], 0L, linkValues(graph, 1L), delays, false, ApspEngine.DIJKSTRA,
+                                                      MatrixFormat.DEFAULT);
+    assertNotNull(computed);
+    assertSame(computed, refresher.lookup(CONFIGURATIONS[0], 0L, 0L).getShortestPaths());
+    assertSame(computed, refresher.lookup(CONFIGURATIONS[0], 2L, 2L).getShortestPaths());
+    assertNull(refresher.lookup(CONFIGURATIONS[0], 2L, 1L)); //two reservations behind
+    assertNull(refresher.lookup(CONFIGURATIONS[1], 0L, 0L)); //another configuration
+    assertEquals(2, refresher.getHits());
+    assertEquals(3, refresher.getFallbacks());
+    assertEquals(1d, refresher.getAverageLagEpochs(), 0d);
+    refresher.shutdown();
+  }
+
+  @Test
+  public void testFallbackStartsFromTheLastSnapshot() {
+    CompactGraph graph = NetworkGenerator.generateRealNetworks(50, "0").getCompactGraph();
+    double[] delays = linkValues(graph, 0L);
+    double[] weights = linkValues(graph, 1L);
+    ShortestPathRefresher refresher = new ShortestPathRefresher(graph);
+    assertNotNull(refresher.compute(CONFIGURATIONS[0], 0L, weights, delays, false, ApspEngine.DIJKSTRA, MatrixFormat.DEFAULT));
+    assertEquals(graph.size(), refresher.getRecomputedSources());
+
+    //a reservation makes one link more expensive, and the reader computes the shortest paths in place
+    double[] newWeights = weights.clone();
+    newWeights[0] *= 2d;
+    assertNull(refresher.lookup(CONFIGURATIONS[0], 1L, 0L));
+    AllPairShortestPaths computed = refresher.compute(CONFIGURATIONS[0], 1L, newWeights, delays, false, ApspEngine.DIJKSTRA, MatrixFormat.DEFAULT);
+    assertSameShortestPaths(graph, AllPairShortestPaths.compute(graph, newWeights, delays, false), computed);
+    assertTrue(refresher.getRecomputedSources() < 2 * graph.size()); //only the sources whose tree used the link
+    assertEquals(1L, refresher.lookup(CONFIGURATIONS[0], 1L, 0L).getEpoch());
+    assertEquals(0, refresher.getRefreshes());
+    refresher.shutdown();
+  }
+
+  @Test
+  public void testLaterRefreshesSupersedeEarlierOnes() throws InterruptedException {
+    CompactGraph graph = NetworkGenerator.generateRealNetworks(200, "0").getCompactGraph();
+    double[] delays = linkValues(graph, 0L);
+    ShortestPathRefresher refresher = new ShortestPathRefresher(graph);
+    for (int c = 0; c < CONFIGURATIONS.length; c++) {
+      assertNotNull(refresher.compute(CONFIGURATIONS[c], 0L, weights(graph, 0L, c), delays, false, ApspEngine.DIJKSTRA, MatrixFormat.DEFAULT));
+    }
+
+    //every link changes, so each configuration is recomputed from scratch, and the first refresh is still running or queued when the second is requested
+    refresher.refresh(1L, configuration -> weights(graph, 1L, configurationIndex(configuration)), delays);
+    refresher.refresh(2L, configuration -> weights(graph, 2L, configurationIndex(configuration)), delays);
+    for (int i = 0; i < 1000 && refresher.getRefreshes() + refresher.getAbandonedRefreshes() < 2; i++) {
+      Thread.sleep(10L);
+    }
+    assertEquals(1, refresher.getRefreshes());
+    assertEquals(1, refresher.getAbandonedRefreshes());
+    for (int c = 0; c < CONFIGURATIONS.length; c++) {
+      ShortestPathRefresher.Snapshot snapshot = refresher.lookup(CONFIGURATIONS[c], 2L, 0L);
+      assertNotNull(snapshot);
+      assertEquals(2L, snapshot.getEpoch());
+      double[] weights = weights(graph, 2L, c);
+      assertSameShortestPaths(graph, AllPairShortestPaths.compute(graph, weights, delays, false), snapshot.getShortestPaths());
+    }
+    refresher.shutdown();
+  }
+
+  private static int configurationIndex(Object configuration) {
+    for (int c = 0; c < CONFIGURATIONS.length; c++) {
+      if (CONFIGURATIONS[c].equals(configuration)) {
+        return c;
+      }
+    }
+    throw new IllegalArgumentException(String.valueOf(configuration));
+  }
+
+  /**
+   * @return the link weights of configuration @c at @epoch
+   */
+  private static double[] weights(CompactGraph graph, long epoch, int c) {
+    return linkValues(graph, 1L + 31L * epoch + (long) c);
+  }
+
+  private static double[] linkValues(CompactGraph graph, long seed) {
+    Random random = new Random(seed);
+    double[] values = new double[graph.numLinks()];
+    for (int e = 0; e < values.length; e++) {
+      values[e] = 0.1 + random.nextDouble() * 10d;
+    }
+    return values;
+  }
+
+  private static void assertSameShortestPaths(CompactGraph graph, AllPairShortestPaths expected, AllPairShortestPaths actual) {
+    assertNotNull(expected);
+    assertNotNull(actual);
+    for (int s = 0; s < graph.size(); s++) {
+      for (int t = 0; t < graph.size(); t++) {
+        int src = graph.getServer(s).getId();
+        int dest = graph.getServer(t).getId();
+        assertEquals(expected.getCost(src, dest), actual.getCost(src, dest), 1e-9);
+        assertEquals(expected.getDelay(src, dest), actual.getDelay(src, dest), 1e-9);
+      }
+    }
+  }
+}